@@ -0,0 +1,63 @@
+package org.jax.mgi.app.refseqload;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.jax.mgi.shr.dla.input.genbank.GBOrganismChecker;
+import org.jax.mgi.shr.exception.MGIException;
+
+/**
+ * @is JMH benchmarks for RefSequenceInterpreter
+ * @has a RefSequenceInterpreter and a synthetic sequence record
+ * @does measures the throughput of isValid and interpret on records from a
+ *       short NM mRNA record to a multi-megabyte NT contig record
+ * @company The Jackson Laboratory
+ * @author sc
+ * @version 1.0
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InterpreterBenchmark {
+
+    // seqid prefix and sequence length in bp of the record
+    @Param({"NM:2000", "XM:6000", "NG:150000", "NT:2000000", "NT:8000000"})
+    public String record;
+
+    private RefSequenceInterpreter interp;
+    private String rcd;
+
+    @Setup(Level.Trial)
+    public void setup() throws MGIException {
+        interp = new RefSequenceInterpreter(new GBOrganismChecker(),
+            new RefSeqidPrefixChecker());
+        rcd = new GBRecordFactory().createRecord(record.substring(0, 2), 1,
+            Integer.parseInt(record.substring(3)));
+    }
+
+    @Benchmark
+    public boolean isValid() {
+        return interp.isValid(rcd);
+    }
+
+    @Benchmark
+    public Object interpret() throws MGIException {
+        return interp.interpret(rcd);
+    }
+}
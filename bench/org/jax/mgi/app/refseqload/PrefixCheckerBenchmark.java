@@ -0,0 +1,64 @@
+package org.jax.mgi.app.refseqload;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.jax.mgi.shr.exception.MGIException;
+
+/**
+ * @is JMH benchmarks for RefSeqidPrefixChecker
+ * @has a RefSeqidPrefixChecker and a synthetic sequence record
+ * @does measures the throughput of checkPrefix on records from a short NM
+ *       mRNA record to a multi-megabyte NT contig record, and of isPrefix
+ * @company The Jackson Laboratory
+ * @author sc
+ * @version 1.0
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrefixCheckerBenchmark {
+
+    // seqid prefix and sequence length in bp of the record
+    @Param({"NM:2000", "XM:6000", "NG:150000", "NT:2000000", "NT:8000000"})
+    public String record;
+
+    private RefSeqidPrefixChecker pc;
+    private String rcd;
+    private String seqid;
+
+    @Setup(Level.Trial)
+    public void setup() throws MGIException {
+        pc = new RefSeqidPrefixChecker();
+        String prefix = record.substring(0, 2);
+        int length = Integer.parseInt(record.substring(3));
+        rcd = new GBRecordFactory().createRecord(prefix, 1, length);
+        seqid = prefix + "_100001";
+    }
+
+    @Benchmark
+    public boolean checkPrefix() {
+        return pc.checkPrefix(rcd);
+    }
+
+    @Benchmark
+    public boolean isPrefix() {
+        return pc.isPrefix(seqid, "NM");
+    }
+}
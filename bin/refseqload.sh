@@ -124,15 +124,26 @@ run ()
     #
     echo "" >> ${LOG_PROC}
     echo "`date`" >> ${LOG_PROC}
-    echo "Files read from stdin: ${APP_CAT_METHOD} ${APP_INFILES}" | \
-	tee -a ${LOG_DIAG} ${LOG_PROC}
     #
     # run refseqload
     #
-    ${APP_CAT_METHOD}  ${APP_INFILES}  | \
+    if [ "${APP_INPUT_FROM_FILES}" = true ]
+    then
+	# expand any wildcards, the load reads the files itself
+	INFILES=`echo ${APP_INFILES}`
+	echo "Files read by the load: ${INFILES}" | \
+	    tee -a ${LOG_DIAG} ${LOG_PROC}
+	${JAVA} ${JAVARUNTIMEOPTS} -classpath ${CLASSPATH} \
+	-DCONFIG=${CONFIG_MASTER},${CONFIG_LOAD} \
+	-DJOBKEY=${JOBKEY} "-DAPP_INFILES=${INFILES}" ${DLA_START}
+    else
+	echo "Files read from stdin: ${APP_CAT_METHOD} ${APP_INFILES}" | \
+	    tee -a ${LOG_DIAG} ${LOG_PROC}
+	${APP_CAT_METHOD}  ${APP_INFILES}  | \
 	${JAVA} ${JAVARUNTIMEOPTS} -classpath ${CLASSPATH} \
 	-DCONFIG=${CONFIG_MASTER},${CONFIG_LOAD} \
 	-DJOBKEY=${JOBKEY} ${DLA_START}
+    fi
 
     STAT=$?
     checkStatus ${STAT} "${REFSEQLOAD}"
@@ -153,9 +164,15 @@ preload ${OUTPUTDIR}
 
 
 #
-# rm all files/dirs from OUTPUTDIR and RPTDIR
+# rm all files/dirs from OUTPUTDIR and RPTDIR; a load resumed from its
+# checkpoint needs the BCP and repeat files of the load which failed
 #
-cleanDir ${OUTPUTDIR} ${RPTDIR}
+if [ "${APP_RESUME}" = true ]
+then
+    cleanDir ${RPTDIR}
+else
+    cleanDir ${OUTPUTDIR} ${RPTDIR}
+fi
 
 # if we are processing the non-cums (incremental mode)
 # get a set of files, 1 file or set < configured value in MB (compressed)
@@ -203,7 +220,8 @@ fi
 run
 
 #
-# run any repeat files if configured to do so
+# run any repeat files if configured to do so; when DLA_START is
+# RefSeqloadStart the load has already processed them in the same JVM
 #
 ctr=1
 if [ ${APP_PROCESS_REPEATS} = true ]
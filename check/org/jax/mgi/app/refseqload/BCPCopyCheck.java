@@ -0,0 +1,290 @@
+package org.jax.mgi.app.refseqload;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Vector;
+
+/**
+ * @is A check of the copy of BCP files into the database by BCPCopyLoader
+ *     and PostLoadStage, run against a stand-in for psql
+ * @has
+ *   <UL>
+ *   <LI>A work directory for the BCP files, the checkpoint and the tables
+ *       written by the stand-in
+ *   <LI>The psql stand-in, check/psql_standin.py
+ *   </UL>
+ * @does
+ *   <UL>
+ *   <LI>Checks that only files named table.bcp are found, and deleted, as
+ *       BCP files
+ *   <LI>Checks the indexes of a table without statistics are dropped or
+ *       kept by its counted rows
+ *   <LI>Fails a copy part way through a file, then resumes it from its
+ *       LoadCheckpoint as a new JVM would, and checks each row is in its
+ *       table once, in order, and the indexes dropped are rebuilt
+ *   <LI>Exits with status 1 on the first check which fails
+ *   </UL>
+ * @notes Run by the check target of build.xml; needs python3 on the PATH
+ * @company The Jackson Laboratory
+ * @author sc
+ * @version 1.0
+ */
+
+public class BCPCopyCheck {
+
+    // the work directory and the psql stand-in command line
+    private static File dir;
+    private static String[] psql;
+
+    /**
+     * Runs the checks
+     * @assumes Nothing
+     * @effects creates and deletes files in the work directory; exits the
+     *          JVM with status 1 if a check fails
+     * @param args the psql stand-in script and the work directory
+     * @throws Exception if error running a check
+     */
+
+    public static void main(String[] args) throws Exception {
+        dir = new File(args[1]);
+        psql = new String[] {"python3", args[0], dir.getPath()};
+        clean();
+        dir.mkdirs();
+        checkFind();
+        clean();
+        dir.mkdirs();
+        checkUnanalyzed();
+        clean();
+        dir.mkdirs();
+        checkResume();
+        clean();
+        System.out.println("BCPCopyCheck: all checks passed");
+    }
+
+    /**
+     * Checks findBCPFiles, deleteBCPFiles and getTable
+     * @assumes the work directory is empty
+     * @effects creates and deletes files
+     * @throws Exception if error writing a file
+     */
+
+    private static void checkFind() throws Exception {
+        writeRows("SEQ_Sequence.bcp", 2);
+        writeRows("SEQ_Source_Assoc.bcp.copied", 2);
+        writeRows("ACC_Accession.bcp.bak", 2);
+        writeRows("MRK_Marker.bcpx", 2);
+        writeRows(".bcp", 2);
+        writeRows("SEQ_Allele_Assoc.bcp", 0);
+
+        File[] found = BCPCopyLoader.findBCPFiles(dir.getPath());
+        check("findBCPFiles finds only non-empty table.bcp files",
+            found.length == 1 &&
+            found[0].getName().equals("SEQ_Sequence.bcp"));
+        check("getTable is the name before .bcp",
+            BCPCopyLoader.getTable(found[0]).equals("SEQ_Sequence"));
+
+        int deleted = BCPCopyLoader.deleteBCPFiles(dir.getPath());
+        check("deleteBCPFiles deletes only table.bcp files, empty or not",
+            deleted == 2 &&
+            !new File(dir, "SEQ_Sequence.bcp").exists() &&
+            !new File(dir, "SEQ_Allele_Assoc.bcp").exists() &&
+            new File(dir, "SEQ_Source_Assoc.bcp.copied").exists() &&
+            new File(dir, "ACC_Accession.bcp.bak").exists() &&
+            new File(dir, "MRK_Marker.bcpx").exists() &&
+            new File(dir, ".bcp").exists());
+    }
+
+    /**
+     * Checks the indexes of a table which has never been analyzed, i.e.
+     * whose reltuples is 0 or -1, are dropped only if its counted rows
+     * are few enough
+     * @assumes the work directory is empty
+     * @effects creates files
+     * @throws Exception if error writing a file or executing SQL
+     */
+
+    private static void checkUnanalyzed() throws Exception {
+        writeRows("T_B.bcp", 10);
+        File[] files = BCPCopyLoader.findBCPFiles(dir.getPath());
+        String[] reltuples = {"0", "-1"};
+        for (int i = 0; i < reltuples.length; i++) {
+            writeNumber("reltuples", reltuples[i]);
+            writeNumber("count", "1000");
+            PostLoadStage stage =
+                new PostLoadStage(new BCPCopyLoader(psql, 3), 20, 2);
+            Vector report = stage.dropIndexes(files);
+            check("the indexes of a large table with reltuples " +
+                reltuples[i] + " are kept",
+                ((String)report.get(0)).startsWith("T_B: keeping indexes"));
+
+            writeNumber("count", "20");
+            stage = new PostLoadStage(new BCPCopyLoader(psql, 3), 20, 2);
+            report = stage.dropIndexes(files);
+            check("the indexes of a small table with reltuples " +
+                reltuples[i] + " are dropped",
+                ((String)report.get(0)).startsWith("T_B: dropped"));
+        }
+    }
+
+    /**
+     * Fails a copy after 6 of 10 rows, committed 3 at a time, and resumes
+     * it from the checkpoint
+     * @assumes the work directory is empty
+     * @effects creates files
+     * @throws Exception if error writing a file or copying other than
+     *         where the stand-in fails
+     */
+
+    private static void checkResume() throws Exception {
+        writeRows("T_A.bcp", 10);
+        String cpFile = new File(dir, "checkpoint").getPath();
+        LoadCheckpoint cp = new LoadCheckpoint(cpFile);
+        cp.startSegment(new String[] {"f1"});
+        cp.startPass("[f1]");
+        cp.passLoaded();
+        BCPCopyLoader copier = new BCPCopyLoader(psql, 3);
+        copier.setCheckpoint(cp);
+        PostLoadStage stage = new PostLoadStage(copier, 1, 2);
+        stage.setCheckpoint(cp);
+        File[] files = BCPCopyLoader.findBCPFiles(dir.getPath());
+        stage.dropIndexes(files);
+
+        FileWriter failat = new FileWriter(new File(dir, "failat"));
+        failat.write("6");
+        failat.close();
+        boolean failed = false;
+        try {
+            copier.copyAll(files, 1);
+        }
+        catch (IOException e) {
+            failed = true;
+        }
+        check("the copy fails where the stand-in fails", failed);
+        check("the rows committed are recorded",
+            new LoadCheckpoint(cpFile).getCopiedRows(files[0]) == 6);
+        new File(dir, "failat").delete();
+
+        // as the new JVM of a resumed load
+        LoadCheckpoint cp2 = new LoadCheckpoint(cpFile);
+        BCPCopyLoader copier2 = new BCPCopyLoader(psql, 3);
+        copier2.setCheckpoint(cp2);
+        PostLoadStage stage2 = new PostLoadStage(copier2, 1, 2);
+        stage2.setCheckpoint(cp2);
+        check("the dropped indexes are restored",
+            stage2.restoreDropped(cp2) == 1);
+        copier2.copyAll(BCPCopyLoader.findBCPFiles(dir.getPath()), 1);
+        stage2.rebuildIndexes();
+
+        Vector rows = readLines("T_A.rows");
+        boolean inOrder = rows.size() == 10;
+        for (int i = 0; inOrder && i < rows.size(); i++) {
+            inOrder = rows.get(i).equals("row" + (i + 1) + "\tx");
+        }
+        check("each row is copied once, in order", inOrder);
+        check("the file copied is renamed",
+            !new File(dir, "T_A.bcp").exists() &&
+            new File(dir, "T_A.bcp.copied").exists());
+        check("the checkpoint no longer records the copy or the indexes",
+            new LoadCheckpoint(cpFile).getCopiedRows(files[0]) == 0 &&
+            new LoadCheckpoint(cpFile).getDroppedTables().isEmpty());
+        Vector sql = readLines("sql.log");
+        check("the index is dropped, rebuilt and its table analyzed",
+            sql.size() == 3 &&
+            ((String)sql.get(0)).startsWith("drop index mgd.t_a_idx1") &&
+            ((String)sql.get(1)).startsWith(
+                "CREATE INDEX IF NOT EXISTS t_a_idx1") &&
+            ((String)sql.get(2)).startsWith("analyze T_A"));
+    }
+
+    /**
+     * Fails the checks if a condition is false
+     * @assumes Nothing
+     * @effects exits the JVM with status 1 if 'ok' is false
+     * @param name what is checked
+     * @param ok the condition
+     * @throws Nothing
+     */
+
+    private static void check(String name, boolean ok) {
+        System.out.println((ok ? "ok     " : "FAILED ") + name);
+        if (!ok) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Writes a BCP file of two column rows, 'rowN<tab>x'
+     * @assumes Nothing
+     * @effects creates the file
+     * @param name the file name
+     * @param rows the number of rows
+     * @throws IOException if error writing the file
+     */
+
+    private static void writeRows(String name, int rows) throws IOException {
+        PrintWriter w = new PrintWriter(new FileWriter(new File(dir, name)));
+        for (int i = 1; i <= rows; i++) {
+            w.print("row" + i + "\tx\n");
+        }
+        w.close();
+    }
+
+    /**
+     * Writes a number for the psql stand-in, see check/psql_standin.py
+     * @assumes Nothing
+     * @effects creates or replaces the file
+     * @param name the file name
+     * @param number the number
+     * @throws IOException if error writing the file
+     */
+
+    private static void writeNumber(String name, String number)
+        throws IOException {
+        FileWriter w = new FileWriter(new File(dir, name));
+        w.write(number);
+        w.close();
+    }
+
+    /**
+     * Reads the lines of a file of the work directory
+     * @assumes Nothing
+     * @effects Nothing
+     * @param name the file name
+     * @return Vector of Strings, empty if there is no file
+     * @throws IOException if error reading the file
+     */
+
+    private static Vector readLines(String name) throws IOException {
+        Vector lines = new Vector();
+        File f = new File(dir, name);
+        if (!f.exists()) {
+            return lines;
+        }
+        BufferedReader in = new BufferedReader(new FileReader(f));
+        String line;
+        while ((line = in.readLine()) != null) {
+            lines.add(line);
+        }
+        in.close();
+        return lines;
+    }
+
+    /**
+     * Deletes the work directory and its files
+     * @assumes the work directory has no subdirectories
+     * @effects deletes files
+     * @throws Nothing
+     */
+
+    private static void clean() {
+        File[] files = dir.listFiles();
+        for (int i = 0; files != null && i < files.length; i++) {
+            files[i].delete();
+        }
+        dir.delete();
+    }
+}
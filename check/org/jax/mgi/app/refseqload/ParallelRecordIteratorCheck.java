@@ -0,0 +1,327 @@
+package org.jax.mgi.app.refseqload;
+
+import java.io.IOException;
+import java.util.Vector;
+
+import org.jax.mgi.shr.dla.input.SequenceInput;
+import org.jax.mgi.shr.ioutils.RecordDataIterator;
+import org.jax.mgi.shr.ioutils.RecordFormatException;
+
+/**
+ * @is A check of the seqid prefix slots of RefSeqidPrefixChecker and of the
+ *     order and errors of the sequences of a ParallelRecordIterator
+ * @has synthetic mouse records from a GBRecordFactory, of several seqid
+ *      prefixes of which NT is not loaded
+ * @does
+ *   <UL>
+ *   <LI>Checks the prefix slots of seqids, and that a seqid without a
+ *       RefSeq prefix at its offset has none
+ *   <LI>Checks a ParallelRecordIterator returns the sequences of the
+ *       prefixes loaded in input order on one worker thread and on
+ *       several, and counts the prefixes of every record
+ *   <LI>Checks a RecordFormatException of one record is thrown from next()
+ *       in its place and the records after it are still returned
+ *   <LI>Checks any other error reading the records is thrown from next()
+ *       after the sequences of the records before it
+ *   <LI>Exits with status 1 on the first check which fails
+ *   </UL>
+ * @notes Run by the check target of build.xml. The prefixes loaded are set
+ *        as system properties, from which configuration is read
+ * @company The Jackson Laboratory
+ * @author sc
+ * @version 1.0
+ */
+
+public class ParallelRecordIteratorCheck {
+
+    // the seqid prefixes of the records, and those loaded
+    private static final String[] PREFIXES = {"NM", "XM", "NP", "NR", "NT"};
+    private static final String[] LOADED = {"NM", "XM", "NP", "NR"};
+
+    // the number of records
+    private static final int RECORDS = 2000;
+
+    // the records, and their seqids
+    private static Vector records = new Vector();
+    private static Vector seqids = new Vector();
+
+    /**
+     * Runs the checks
+     * @assumes Nothing
+     * @effects sets system properties; exits the JVM with status 1 if a
+     *          check fails
+     * @param args not used
+     * @throws Exception if error running a check
+     */
+
+    public static void main(String[] args) throws Exception {
+        checkSlots();
+        for (int i = 0; i < LOADED.length; i++) {
+            System.setProperty(LOADED[i], "true");
+        }
+        createRecords();
+        checkOrder();
+        checkFormatError();
+        checkReadError();
+        System.out.println("ParallelRecordIteratorCheck: all checks passed");
+    }
+
+    /**
+     * Checks RefSeqidPrefixChecker.getSlot
+     * @assumes Nothing
+     * @effects Nothing
+     * @throws Nothing
+     */
+
+    private static void checkSlots() {
+        int nm = ('N' - 'A') * 26 + ('M' - 'A');
+        check("the slots of the first and last prefixes are 0 and 675",
+            RefSeqidPrefixChecker.getSlot("AA_1", 0) == 0 &&
+            RefSeqidPrefixChecker.getSlot("ZZ_1", 0) == 675);
+        check("the slot of a prefix is found at its offset",
+            RefSeqidPrefixChecker.getSlot("NM_100001", 0) == nm &&
+            RefSeqidPrefixChecker.getSlot("ACCESSION   NM_100001", 12) ==
+                nm);
+        check("a prefix may end the String or be followed by whitespace",
+            RefSeqidPrefixChecker.getSlot("NM", 0) == nm &&
+            RefSeqidPrefixChecker.getSlot("NM 1", 0) == nm &&
+            RefSeqidPrefixChecker.getSlot("NM\n", 0) == nm);
+        check("an offset out of the String has no slot",
+            RefSeqidPrefixChecker.getSlot("NM_1", -1) == -1 &&
+            RefSeqidPrefixChecker.getSlot("NM_1", 3) == -1 &&
+            RefSeqidPrefixChecker.getSlot("NM_1", 4) == -1 &&
+            RefSeqidPrefixChecker.getSlot("N", 0) == -1 &&
+            RefSeqidPrefixChecker.getSlot("", 0) == -1);
+        check("a seqid without a RefSeq prefix has no slot",
+            RefSeqidPrefixChecker.getSlot("nm_1", 0) == -1 &&
+            RefSeqidPrefixChecker.getSlot("N1_1", 0) == -1 &&
+            RefSeqidPrefixChecker.getSlot("NMX_1", 0) == -1 &&
+            RefSeqidPrefixChecker.getSlot("AB123456", 0) == -1);
+    }
+
+    /**
+     * Creates the records
+     * @assumes Nothing
+     * @effects Nothing
+     * @throws IOException if error creating a record
+     */
+
+    private static void createRecords() throws IOException {
+        GBRecordFactory factory = new GBRecordFactory();
+        for (int i = 0; i < RECORDS; i++) {
+            String prefix = PREFIXES[i % PREFIXES.length];
+            StringBuffer b = new StringBuffer();
+            factory.appendRecord(b, prefix, i, 1 + i * 37 % 300, "mouse",
+                i % 3);
+            records.add(b.toString());
+            seqids.add(prefix + "_" + (100000 + i));
+        }
+    }
+
+    /**
+     * Checks the sequences of the prefixes loaded are returned in input
+     * order, and the prefixes of all the records are counted
+     * @assumes the records have been created
+     * @effects Nothing
+     * @throws Exception if error reading the records
+     */
+
+    private static void checkOrder() throws Exception {
+        int[] threads = {1, 4};
+        for (int t = 0; t < threads.length; t++) {
+            RefSeqidPrefixChecker pc = new RefSeqidPrefixChecker();
+            Vector results = readAll(
+                newIterator(new FailingIterator(-1, false), pc, threads[t]));
+            Vector expected = expected(-1, RECORDS);
+            check("the sequences of the prefixes loaded are returned in " +
+                "input order on " + threads[t] + " thread(s)",
+                results.equals(expected));
+            check("the prefixes of all the records are counted on " +
+                threads[t] + " thread(s)",
+                pc.getTotalCount() == RECORDS &&
+                pc.getTrueCount() == expected.size());
+        }
+    }
+
+    /**
+     * Checks a RecordFormatException reading one record is thrown from
+     * next() in its place and reading goes on
+     * @assumes the records have been created
+     * @effects Nothing
+     * @throws Exception if error reading the records
+     */
+
+    private static void checkFormatError() throws Exception {
+        int bad = 10 * PREFIXES.length;
+        Vector results = readAll(newIterator(new FailingIterator(bad, true),
+            new RefSeqidPrefixChecker(), 4));
+        check("a RecordFormatException is thrown in the place of its " +
+            "record and the records after it are returned",
+            results.equals(expected(bad, RECORDS)));
+    }
+
+    /**
+     * Checks any other error reading the records is thrown from next()
+     * after the sequences of the records before it
+     * @assumes the records have been created
+     * @effects Nothing
+     * @throws Exception if error reading the records
+     */
+
+    private static void checkReadError() throws Exception {
+        int failAt = RECORDS / 2;
+        RecordDataIterator it = newIterator(
+            new FailingIterator(failAt, false), new RefSeqidPrefixChecker(),
+            4);
+        Vector results = new Vector();
+        RuntimeException error = null;
+        try {
+            while (it.hasNext()) {
+                results.add(getSeqid(it.next()));
+            }
+        }
+        catch (RuntimeException e) {
+            error = e;
+        }
+        check("an error reading the records is thrown from next()",
+            error instanceof IllegalStateException);
+        check("the sequences of the records before the error are returned " +
+            "first", results.equals(expected(-1, failAt)));
+    }
+
+    /**
+     * Creates a ParallelRecordIterator which checks prefixes
+     * @assumes Nothing
+     * @effects starts the reader and worker threads
+     * @param records the records
+     * @param pc the prefix checker
+     * @param threads number of worker threads
+     * @return the iterator
+     * @throws Exception if error creating the interpreters
+     */
+
+    private static RecordDataIterator newIterator(RecordDataIterator records,
+                                                  RefSeqidPrefixChecker pc,
+                                                  int threads)
+        throws Exception {
+        // the organisms of records are checked as they are split, not by
+        // the workers, so no organism checker is needed
+        return new ParallelRecordIterator(records, null, pc, null, null,
+            threads, 16, true);
+    }
+
+    /**
+     * Reads all the sequences of an iterator
+     * @assumes Nothing
+     * @effects reads the iterator
+     * @param it the iterator
+     * @return Vector of the seqids of the sequences, and 'format error' in
+     *         the place of each RecordFormatException
+     * @throws Exception if error reading the iterator
+     */
+
+    private static Vector readAll(RecordDataIterator it) throws Exception {
+        Vector v = new Vector();
+        while (it.hasNext()) {
+            try {
+                v.add(getSeqid(it.next()));
+            }
+            catch (RecordFormatException e) {
+                v.add("format error");
+            }
+        }
+        it.close();
+        return v;
+    }
+
+    /**
+     * Gets the seqids expected from records
+     * @assumes the records have been created
+     * @effects Nothing
+     * @param bad index of the record with a RecordFormatException, -1 if
+     *        none
+     * @param end index of the record after the last read
+     * @return Vector of the seqids of the records of prefixes loaded, and
+     *         'format error' in the place of the bad record
+     * @throws Nothing
+     */
+
+    private static Vector expected(int bad, int end) {
+        Vector v = new Vector();
+        for (int i = 0; i < end; i++) {
+            String seqid = (String)seqids.get(i);
+            if (i == bad) {
+                v.add("format error");
+            }
+            else if (!seqid.startsWith("NT")) {
+                v.add(seqid);
+            }
+        }
+        return v;
+    }
+
+    /**
+     * Gets the seqid of a sequence
+     * @assumes Nothing
+     * @effects Nothing
+     * @param seq a SequenceInput
+     * @return its primary seqid
+     * @throws Nothing
+     */
+
+    private static String getSeqid(Object seq) {
+        return ((SequenceInput)seq).getPrimaryAcc().getAccID();
+    }
+
+    /**
+     * Fails the checks if a condition is false
+     * @assumes Nothing
+     * @effects exits the JVM with status 1 if 'ok' is false
+     * @param name what is checked
+     * @param ok the condition
+     * @throws Nothing
+     */
+
+    private static void check(String name, boolean ok) {
+        RecordReaderCheck.check(name, ok);
+    }
+
+    /**
+     * @is a RecordDataIterator of the records which fails reading one
+     * @has the index of the record which fails, and how
+     * @does returns the records in order; throws a RecordFormatException
+     *       for the record which fails, or an IllegalStateException
+     * @company The Jackson Laboratory
+     * @author sc
+     * @version 1.0
+     */
+
+    private static class FailingIterator implements RecordDataIterator {
+        private int failAt;
+        private boolean formatError;
+        private int next = 0;
+
+        FailingIterator(int failAt, boolean formatError) {
+            this.failAt = failAt;
+            this.formatError = formatError;
+        }
+
+        public boolean hasNext() {
+            return next < records.size();
+        }
+
+        public Object next() throws RecordFormatException {
+            int i = next++;
+            if (i == failAt) {
+                if (formatError) {
+                    throw new RecordFormatException();
+                }
+                throw new IllegalStateException("Error reading record " + i);
+            }
+            return records.get(i);
+        }
+
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,596 @@
+package org.jax.mgi.app.refseqload;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Vector;
+import java.util.zip.GZIPOutputStream;
+
+import org.jax.mgi.shr.config.ConfigException;
+import org.jax.mgi.shr.dla.input.genbank.GBFormatInterpreter;
+import org.jax.mgi.shr.dla.input.genbank.GBInputFile;
+import org.jax.mgi.shr.ioutils.RecordDataInterpreter;
+import org.jax.mgi.shr.ioutils.RecordDataIterator;
+
+/**
+ * @is A check of the splitting and header filtering of sequence records by
+ *     the RecordSources of the load
+ * @has synthetic input from a GBRecordFactory: records of several
+ *      organisms, seqid prefixes and lengths, written to temporary plain
+ *      and gzipped files
+ * @does
+ *   <UL>
+ *   <LI>Reads the input with a GBRecordReader from an InputStream which
+ *       returns one byte per read, as a pipe or GZIPInputStream may, and
+ *       checks it returns the same records as from one read, with and
+ *       without residues
+ *   <LI>Reads the input with a MappedRecordReader through the smallest
+ *       window, which records larger than the window do not fit, and
+ *       through one window
+ *   <LI>Checks both readers return an unterminated record at the end of
+ *       the input as is if its header is valid
+ *   <LI>Reads several files, plain, gzipped and mapped, with a
+ *       MultiFileRecordSource on one thread and on several, in file order
+ *       and not, and checks a missing or truncated file fails it
+ *   <LI>Checks each reader returns the records of the GBInputFile the
+ *       loader reads by default, from the same file
+ *   <LI>Exits with status 1 on the first check which fails
+ *   </UL>
+ * @notes Run by the check target of build.xml. The GBInputFile reads the
+ *        file named by the INFILE_NAME system property
+ * @company The Jackson Laboratory
+ * @author sc
+ * @version 1.0
+ */
+
+public class RecordReaderCheck {
+
+    // the organisms of the records, mouse records are valid
+    private static final String[] ORGANISMS = {"mouse", "rat", "human"};
+
+    // the seqid prefixes and lengths of the records
+    private static final String[] PREFIXES = {"NM", "XM", "NP", "NR", "NT"};
+    private static final int[] LENGTHS = {1, 59, 60, 61, 2000, 70000};
+
+    // the smallest window of a MappedRecordReader
+    private static final int MIN_WINDOW = 64 * 1024;
+
+    // the records of the input, and the input
+    private static Vector records = new Vector();
+    private static byte[] input;
+
+    // records without a '//' terminator: mouse, mouse cut before its
+    // FEATURES and rat
+    private static String[] unterminated;
+
+    // the input as a file, gzipped, and followed by the unterminated mouse
+    // record
+    private static File file;
+    private static File gzFile;
+    private static File partFile;
+
+    /**
+     * Runs the checks
+     * @assumes Nothing
+     * @effects exits the JVM with status 1 if a check fails
+     * @param args not used
+     * @throws Exception if error running a check
+     */
+
+    public static void main(String[] args) throws Exception {
+        createInput();
+        writeFiles();
+        checkShortReads();
+        checkMapped();
+        checkUnterminated();
+        checkMultiFile();
+        checkMultiFileFailure();
+        checkBaseline();
+        System.out.println("RecordReaderCheck: all checks passed");
+    }
+
+    /**
+     * Creates the records of the input
+     * @assumes Nothing
+     * @effects Nothing
+     * @throws IOException if error creating a record
+     */
+
+    private static void createInput() throws IOException {
+        GBRecordFactory factory = new GBRecordFactory();
+        StringBuffer all = new StringBuffer();
+        int id = 0;
+        for (int p = 0; p < PREFIXES.length; p++) {
+            for (int l = 0; l < LENGTHS.length; l++) {
+                StringBuffer b = new StringBuffer();
+                factory.appendRecord(b, PREFIXES[p], ++id, LENGTHS[l],
+                    ORGANISMS[id % ORGANISMS.length], id % 3);
+                records.add(b.toString());
+                all.append(b);
+            }
+        }
+        input = all.toString().getBytes("ISO-8859-1");
+
+        String[] organisms = {"mouse", "mouse", "rat"};
+        unterminated = new String[organisms.length];
+        for (int i = 0; i < organisms.length; i++) {
+            StringBuffer b = new StringBuffer();
+            factory.appendRecord(b, "NM", ++id, 2000, organisms[i], 1);
+            String rcd = b.toString();
+            unterminated[i] = i == 1 ?
+                rcd.substring(0, rcd.indexOf("FEATURES")) :
+                rcd.substring(0, rcd.length() -
+                    GBRecordReader.END_LINE.length());
+        }
+    }
+
+    /**
+     * Writes the input files
+     * @assumes the input has been created
+     * @effects creates temporary files, deleted on exit
+     * @throws IOException if error writing a file
+     */
+
+    private static void writeFiles() throws IOException {
+        file = write(".gb", input, false);
+        gzFile = write(".gb.gz", input, true);
+        partFile = write(".gb", append(input, unterminated[0]), false);
+    }
+
+    /**
+     * Checks a GBRecordReader returns the same records from one byte
+     * reads as from the whole input, and the records expected
+     * @assumes the input has been created
+     * @effects Nothing
+     * @throws IOException if error reading the input
+     */
+
+    private static void checkShortReads() throws IOException {
+        for (int skip = 0; skip < 2; skip++) {
+            boolean skipResidues = skip == 1;
+            Vector expected = expected(MOUSE, skipResidues);
+            Vector whole = readAll(new GBRecordReader(
+                new ByteArrayInputStream(input), 1024, MOUSE,
+                skipResidues));
+            Vector oneByte = readAll(new GBRecordReader(
+                new OneByteInputStream(new ByteArrayInputStream(input)),
+                1024, MOUSE, skipResidues));
+            String mode = skipResidues ? " without residues" :
+                " with residues";
+            check("GBRecordReader returns the valid records" + mode,
+                whole.equals(expected));
+            check("GBRecordReader returns the same records from one byte " +
+                "reads" + mode, oneByte.equals(expected));
+        }
+    }
+
+    /**
+     * Checks a MappedRecordReader returns the records expected through
+     * the smallest window, remapped for each record it does not fit, and
+     * through a window of the whole input
+     * @assumes the input files have been written
+     * @effects Nothing
+     * @throws IOException if error reading the input
+     */
+
+    private static void checkMapped() throws IOException {
+        for (int skip = 0; skip < 2; skip++) {
+            boolean skipResidues = skip == 1;
+            String mode = skipResidues ? " without residues" :
+                " with residues";
+            check("MappedRecordReader returns the valid records through " +
+                "the smallest window" + mode,
+                readAll(new MappedRecordReader(file.getPath(), MIN_WINDOW,
+                MOUSE, skipResidues)).equals(
+                expected(MOUSE, skipResidues)));
+            check("MappedRecordReader returns the valid records through " +
+                "one window" + mode,
+                readAll(new MappedRecordReader(file.getPath(),
+                input.length, MOUSE, skipResidues)).equals(
+                expected(MOUSE, skipResidues)));
+            check("MappedRecordReader returns every record without a " +
+                "filter" + mode,
+                readAll(new MappedRecordReader(file.getPath(), MIN_WINDOW,
+                null, skipResidues)).equals(
+                expected(null, skipResidues)));
+        }
+        check("GBRecordReader returns every record without a filter",
+            readAll(new GBRecordReader(new ByteArrayInputStream(input),
+            1024, null, false)).equals(expected(null, false)));
+    }
+
+    /**
+     * Checks the readers return an unterminated record at the end of the
+     * input, without a terminator, if its header is valid
+     * @assumes the input has been created
+     * @effects creates temporary files, deleted on exit
+     * @throws IOException if error reading the input
+     */
+
+    private static void checkUnterminated() throws IOException {
+        String[] names = {"an unterminated record",
+            "a record cut before its FEATURES", "an invalid unterminated " +
+            "record"};
+        for (int i = 0; i < unterminated.length; i++) {
+            byte[] b = append(input, unterminated[i]);
+            File f = write(".gb", b, false);
+            for (int skip = 0; skip < 2; skip++) {
+                boolean skipResidues = skip == 1;
+                String mode = skipResidues ? " without residues" :
+                    " with residues";
+                Vector expected = expected(MOUSE, skipResidues);
+                String verb = " drops ";
+                if (MOUSE.isValid(unterminated[i])) {
+                    expected.add(cut(unterminated[i], skipResidues));
+                    verb = " returns ";
+                }
+                check("GBRecordReader" + verb + names[i] + " at the end of " +
+                    "the input" + mode,
+                    readAll(new GBRecordReader(new ByteArrayInputStream(b),
+                    1024, MOUSE, skipResidues)).equals(expected));
+                check("GBRecordReader" + verb + names[i] + " at the end of " +
+                    "one byte reads" + mode,
+                    readAll(new GBRecordReader(new OneByteInputStream(
+                    new ByteArrayInputStream(b)), 1024, MOUSE,
+                    skipResidues)).equals(expected));
+                check("MappedRecordReader" + verb + names[i] + " at the " +
+                    "end of the file" + mode,
+                    readAll(new MappedRecordReader(f.getPath(), MIN_WINDOW,
+                    MOUSE, skipResidues)).equals(expected));
+            }
+        }
+    }
+
+    /**
+     * Checks a MultiFileRecordSource returns the valid records of a plain,
+     * a gzipped and a plain file ending in an unterminated record: on one
+     * thread and on several, in file order or not, mapped or not
+     * @assumes the input files have been written
+     * @effects Nothing
+     * @throws IOException if error reading the input
+     */
+
+    private static void checkMultiFile() throws IOException {
+        String[] files = {file.getPath(), gzFile.getPath(),
+            partFile.getPath()};
+        int[] threads = {1, 3};
+        int[] windows = {0, MIN_WINDOW};
+        for (int skip = 0; skip < 2; skip++) {
+            boolean skipResidues = skip == 1;
+            Vector expected = new Vector();
+            for (int i = 0; i < files.length; i++) {
+                expected.addAll(expected(MOUSE, skipResidues));
+            }
+            expected.add(cut(unterminated[0], skipResidues));
+            Vector sorted = new Vector(expected);
+            Collections.sort(sorted);
+            for (int t = 0; t < threads.length; t++) {
+                for (int w = 0; w < windows.length; w++) {
+                    for (int o = 0; o < 2; o++) {
+                        boolean ordered = o == 0;
+                        Vector v = readAll(new MultiFileRecordSource(files,
+                            1024, MOUSE, threads[t], 4, ordered, windows[w],
+                            skipResidues));
+                        String mode = " on " + threads[t] + " thread(s)" +
+                            (windows[w] > 0 ? ", mapped" : "") +
+                            (skipResidues ? ", without residues" : "");
+                        if (!ordered && threads[t] > 1) {
+                            Collections.sort(v);
+                            check("MultiFileRecordSource returns the valid " +
+                                "records of the files" + mode,
+                                v.equals(sorted));
+                        }
+                        else {
+                            check("MultiFileRecordSource returns the valid " +
+                                "records of the files in order" + mode +
+                                (ordered ? "" : ", even unordered"),
+                                v.equals(expected));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks a MultiFileRecordSource fails with an IOException if a file is
+     * missing or a gzipped file is truncated
+     * @assumes the input files have been written
+     * @effects creates a temporary file, deleted on exit
+     * @throws IOException if error writing the truncated file or closing
+     *         a MultiFileRecordSource
+     */
+
+    private static void checkMultiFileFailure() throws IOException {
+        byte[] gz = new byte[(int)gzFile.length()];
+        FileInputStream in = new FileInputStream(gzFile);
+        int n = 0;
+        while (n < gz.length) {
+            n += in.read(gz, n, gz.length - n);
+        }
+        in.close();
+        byte[] half = new byte[gz.length / 2];
+        System.arraycopy(gz, 0, half, 0, half.length);
+        String[] bad = {file.getPath() + ".missing",
+            write(".gb.gz", half, false).getPath()};
+        String[] names = {"a missing file", "a truncated gzipped file"};
+        int[] threads = {1, 3};
+        for (int i = 0; i < bad.length; i++) {
+            for (int t = 0; t < threads.length; t++) {
+                String[] files = {file.getPath(), bad[i], file.getPath()};
+                RecordSource source = new MultiFileRecordSource(files, 1024,
+                    MOUSE, threads[t], 4, true, 0, false);
+                boolean failed = false;
+                try {
+                    readAll(source);
+                }
+                catch (IOException e) {
+                    failed = true;
+                    source.close();
+                }
+                check("MultiFileRecordSource fails on " + names[i] + " on " +
+                    threads[t] + " thread(s)", failed);
+            }
+        }
+    }
+
+    /**
+     * Checks each reader returns the records of a GBInputFile reading the
+     * same file, by their seqids, from one byte reads, through the
+     * smallest mapped window and from a gzipped file
+     * @assumes the input files have been written
+     * @effects sets the INFILE_NAME system property
+     * @throws Exception if error reading the input
+     */
+
+    private static void checkBaseline() throws Exception {
+        System.setProperty("INFILE_NAME", file.getPath());
+        RecordDataIterator it =
+            new GBInputFile().getIterator(new RecordTextInterpreter());
+        Vector baseline = new Vector();
+        while (it.hasNext()) {
+            baseline.add(getSeqid((String)it.next()));
+        }
+        it.close();
+        check("GBInputFile returns the valid records",
+            baseline.equals(getSeqids(expected(MOUSE, false))));
+        for (int skip = 0; skip < 2; skip++) {
+            boolean skipResidues = skip == 1;
+            String mode = skipResidues ? " without residues" :
+                " with residues";
+            check("GBRecordReader returns the records of GBInputFile from " +
+                "one byte reads" + mode,
+                getSeqids(readAll(new GBRecordReader(new OneByteInputStream(
+                new FileInputStream(file)), 1024, MOUSE,
+                skipResidues))).equals(baseline));
+            check("MappedRecordReader returns the records of GBInputFile " +
+                "through the smallest window" + mode,
+                getSeqids(readAll(new MappedRecordReader(file.getPath(),
+                MIN_WINDOW, MOUSE, skipResidues))).equals(baseline));
+            check("MultiFileRecordSource returns the records of GBInputFile " +
+                "from the gzipped file" + mode,
+                getSeqids(readAll(new MultiFileRecordSource(
+                new String[] {gzFile.getPath()}, 1024, MOUSE, 1, 4, true, 0,
+                skipResidues))).equals(baseline));
+        }
+    }
+
+    /**
+     * Gets the records of the input valid for a filter
+     * @assumes the input has been created
+     * @effects Nothing
+     * @param filter the filter, null if all records are valid
+     * @param skipResidues true if records are expected without the
+     *        residues after their ORIGIN line
+     * @return Vector of the record Strings
+     * @throws Nothing
+     */
+
+    static Vector expected(RecordDataInterpreter filter,
+                           boolean skipResidues) {
+        Vector v = new Vector();
+        for (int i = 0; i < records.size(); i++) {
+            String rcd = (String)records.get(i);
+            if (filter != null && !filter.isValid(rcd)) {
+                continue;
+            }
+            v.add(skipResidues ?
+                cut(rcd, true) + GBRecordReader.END_LINE : rcd);
+        }
+        return v;
+    }
+
+    /**
+     * Gets a record as expected from a reader without its terminator
+     * @assumes Nothing
+     * @effects Nothing
+     * @param rcd the record, without a '//' terminator
+     * @param skipResidues true if the record is expected without the
+     *        residues after its ORIGIN line
+     * @return the record up to and including its ORIGIN line if
+     *         'skipResidues' and it has one, else the record
+     * @throws Nothing
+     */
+
+    private static String cut(String rcd, boolean skipResidues) {
+        int origin = rcd.indexOf("\nORIGIN") + 1;
+        if (!skipResidues || origin == 0) {
+            return rcd;
+        }
+        return rcd.substring(0, rcd.indexOf('\n', origin) + 1);
+    }
+
+    /**
+     * Gets the primary seqids of records
+     * @assumes each record has an ACCESSION line
+     * @effects Nothing
+     * @param records Vector of record Strings
+     * @return Vector of the seqid Strings, in the same order
+     * @throws Nothing
+     */
+
+    private static Vector getSeqids(Vector records) {
+        Vector v = new Vector();
+        for (int i = 0; i < records.size(); i++) {
+            v.add(getSeqid((String)records.get(i)));
+        }
+        return v;
+    }
+
+    /**
+     * Gets the primary seqid of a record
+     * @assumes the record has an ACCESSION line
+     * @effects Nothing
+     * @param rcd the record
+     * @return the first seqid of its ACCESSION line
+     * @throws Nothing
+     */
+
+    private static String getSeqid(String rcd) {
+        int start = rcd.indexOf("\nACCESSION   ") + 13;
+        int end = start;
+        while (rcd.charAt(end) != ' ' && rcd.charAt(end) != '\n') {
+            end++;
+        }
+        return rcd.substring(start, end);
+    }
+
+    /**
+     * Appends a record to input bytes
+     * @assumes Nothing
+     * @effects Nothing
+     * @param bytes the input
+     * @param rcd the record
+     * @return a copy of 'bytes' followed by 'rcd'
+     * @throws IOException if error encoding the record
+     */
+
+    private static byte[] append(byte[] bytes, String rcd)
+        throws IOException {
+        byte[] r = rcd.getBytes("ISO-8859-1");
+        byte[] b = new byte[bytes.length + r.length];
+        System.arraycopy(bytes, 0, b, 0, bytes.length);
+        System.arraycopy(r, 0, b, bytes.length, r.length);
+        return b;
+    }
+
+    /**
+     * Writes bytes to a temporary file
+     * @assumes Nothing
+     * @effects creates a file, deleted on exit
+     * @param suffix the file name suffix
+     * @param bytes the bytes
+     * @param gzip true to gzip the bytes
+     * @return the file
+     * @throws IOException if error writing the file
+     */
+
+    private static File write(String suffix, byte[] bytes, boolean gzip)
+        throws IOException {
+        File f = File.createTempFile("refseqload", suffix);
+        f.deleteOnExit();
+        OutputStream out = new FileOutputStream(f);
+        if (gzip) {
+            out = new GZIPOutputStream(out);
+        }
+        out.write(bytes);
+        out.close();
+        return f;
+    }
+
+    /**
+     * Reads all the records of a RecordSource and closes it
+     * @assumes Nothing
+     * @effects reads the RecordSource
+     * @param source the records
+     * @return Vector of the record Strings
+     * @throws IOException if error reading the records
+     */
+
+    static Vector readAll(RecordSource source) throws IOException {
+        Vector v = new Vector();
+        String rcd;
+        while ((rcd = source.nextRecord()) != null) {
+            v.add(rcd);
+        }
+        source.close();
+        return v;
+    }
+
+    /**
+     * Fails the checks if a condition is false
+     * @assumes Nothing
+     * @effects exits the JVM with status 1 if 'ok' is false
+     * @param name what is checked
+     * @param ok the condition
+     * @throws Nothing
+     */
+
+    static void check(String name, boolean ok) {
+        System.out.println((ok ? "ok     " : "FAILED ") + name);
+        if (!ok) {
+            System.exit(1);
+        }
+    }
+
+    // a header filter which accepts mouse records
+    static final RecordDataInterpreter MOUSE = new RecordDataInterpreter() {
+        public boolean isValid(String header) {
+            return header.indexOf("  ORGANISM  Mus musculus\n") >= 0;
+        }
+
+        public Object interpret(String rcd) {
+            return rcd;
+        }
+    };
+
+    /**
+     * @is a GBFormatInterpreter which accepts mouse records and returns
+     *     them uninterpreted, so a GBInputFile splits them as for the load
+     * @has Nothing
+     * @does filters records as the MOUSE filter does
+     * @company The Jackson Laboratory
+     * @author sc
+     * @version 1.0
+     */
+
+    private static class RecordTextInterpreter extends GBFormatInterpreter {
+        RecordTextInterpreter() throws ConfigException {
+            // the organism checker is not used
+            super(null);
+        }
+
+        public boolean isValid(String rcd) {
+            return MOUSE.isValid(rcd);
+        }
+
+        public Object interpret(String rcd) {
+            return rcd;
+        }
+    }
+
+    /**
+     * @is an InputStream which returns at most one byte per read
+     * @has another InputStream
+     * @does reads the other InputStream one byte at a time
+     * @company The Jackson Laboratory
+     * @author sc
+     * @version 1.0
+     */
+
+    static class OneByteInputStream extends FilterInputStream {
+        OneByteInputStream(InputStream in) {
+            super(in);
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            return super.read(b, off, Math.min(len, 1));
+        }
+    }
+}
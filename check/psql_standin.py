@@ -0,0 +1,89 @@
+#!/usr/bin/env python3
+#
+#  psql_standin.py
+###########################################################################
+#
+#  Purpose:  A stand-in for psql used by BCPCopyCheck, so the copy of BCP
+#            files by BCPCopyLoader and the index stage of PostLoadStage
+#            can be checked without a database
+#
+#  Usage:
+#
+#      psql_standin.py dir [psql options]
+#
+#      The psql options are ignored.
+#
+#  Inputs:
+#
+#      - The script BCPCopyLoader writes to psql, on stdin
+#      - dir/failat, optional, a number of rows: the commit whose row
+#        count is over it fails, as a psql error would
+#      - dir/reltuples and dir/count, optional, the estimated and counted
+#        rows of every table; 1 if not given
+#
+#  Outputs:
+#
+#      - dir/<table>.rows, the rows committed to each table, in order
+#      - dir/sql.log, the drop index, create index and analyze statements
+#      - The psql output BCPCopyLoader and PostLoadStage read, on stdout
+#
+###########################################################################
+
+import os
+import re
+import sys
+
+dir = sys.argv[1]
+
+failat = -1
+if os.path.exists(os.path.join(dir, 'failat')):
+    failat = int(open(os.path.join(dir, 'failat')).read())
+
+def readNumber(name):
+    path = os.path.join(dir, name)
+    if os.path.exists(path):
+        return open(path).read().strip()
+    return '1'
+
+sqlLog = open(os.path.join(dir, 'sql.log'), 'a')
+
+# the table being copied to and its rows not yet committed
+table = None
+rows = []
+inCopy = False
+
+for line in sys.stdin:
+    line = line.rstrip('\n')
+    if inCopy:
+        if line == '\\.':
+            inCopy = False
+        else:
+            rows.append(line)
+    elif line.startswith('copy '):
+        table = line.split()[1]
+        inCopy = True
+    elif line.startswith('\\echo '):
+        committed = int(line.split()[-1])
+        if failat >= 0 and committed > failat:
+            print('ERROR:  simulated failure after %d rows' % failat)
+            sys.exit(3)
+        out = open(os.path.join(dir, table + '.rows'), 'a')
+        for r in rows:
+            out.write(r + '\n')
+        out.close()
+        rows = []
+        print(line[len('\\echo '):])
+        sys.stdout.flush()
+    elif 'reltuples' in line:
+        # every table is small unless configured, so its indexes are dropped
+        print(readNumber('reltuples'))
+    elif 'count(*)' in line:
+        print(readNumber('count'))
+    elif 'pg_index' in line:
+        t = re.search(r"'([^']*)'::regclass", line).group(1).lower()
+        print('mgd.%s_idx1|CREATE INDEX %s_idx1 ON mgd.%s USING btree (x)'
+            % (t, t, t))
+    elif line.lower().startswith(('drop ', 'create ', 'analyze ')):
+        sqlLog.write(line + '\n')
+
+sqlLog.close()
@@ -0,0 +1,566 @@
+package org.jax.mgi.app.refseqload;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * @is A loader of the BCP files written by a refseqload into PostgreSQL
+ *     with the COPY protocol, streamed through psql
+ * @has
+ *   <UL>
+ *   <LI>The psql command line of the load database
+ *   <LI>The number of rows committed per transaction
+ *   <LI>A LoadCheckpoint of the rows committed, null if none
+ *   </UL>
+ * @does
+ *   <UL>
+ *   <LI>Finds the BCP files of a directory not yet copied, one per table
+ *   <LI>Streams the rows of a BCP file to a psql process as COPY FROM STDIN
+ *       commands, one transaction per chunk of rows, so a failure rolls back
+ *       one chunk and reports the rows already committed
+ *   <LI>Copies the files of several tables at once, one psql process per
+ *       table, and renames each file copied so it is not copied again
+ *   <LI>Records the rows of each file committed in its LoadCheckpoint, if
+ *       any, and resumes the copy of a file after them
+ *   <LI>Executes SQL through psql, e.g. for the PostLoadStage
+ *   </UL>
+ * @notes BCP rows are tab delimited with empty fields for nulls, the
+ *        defaults of COPY text format but for nulls. Each chunk is committed
+ *        on its own, so a failed copy leaves earlier chunks of its table
+ *        loaded; its file is not renamed, and its copy resumes after them
+ *        only if they were recorded in a LoadCheckpoint
+ * @company The Jackson Laboratory
+ * @author sc
+ * @version 1.0
+ */
+
+public class BCPCopyLoader {
+
+    // a BCP file, and a BCP file already copied
+    private static final String BCP_SUFFIX = ".bcp";
+    private static final String COPIED_SUFFIX = ".copied";
+
+    // psql echoes this and the number of rows after each commit
+    private static final String COMMITTED = "committed ";
+
+    // number of lines of psql output kept for error messages
+    private static final int OUTPUT_LINES = 20;
+
+    // the psql command line, without the script
+    private String[] command;
+
+    // rows per transaction
+    private int chunkRows;
+
+    // records the rows committed, null if not recorded
+    private LoadCheckpoint checkpoint = null;
+
+    /**
+     * Constructs a BCPCopyLoader
+     * @assumes Nothing
+     * @effects Nothing
+     * @param command the psql command line of the load database e.g.
+     *        psql -h server -d database -U user
+     * @param chunkRows number of rows committed per transaction
+     * @throws Nothing
+     */
+
+    public BCPCopyLoader(String[] command, int chunkRows) {
+        this.command = command;
+        this.chunkRows = Math.max(chunkRows, 1);
+    }
+
+    /**
+     * Sets the LoadCheckpoint recording the rows of each file committed
+     * @assumes Nothing
+     * @effects the copy of a file resumes after the rows it records
+     * @param checkpoint the checkpoint, null for none
+     * @throws Nothing
+     */
+
+    public void setCheckpoint(LoadCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Finds the BCP files of a directory which have not been copied
+     * @assumes Nothing
+     * @effects Nothing
+     * @param dir the directory
+     * @return the non-empty BCP files, sorted by name
+     * @throws Nothing
+     */
+
+    public static File[] findBCPFiles(String dir) {
+        File[] files = new File(dir).listFiles();
+        Vector found = new Vector();
+        for (int i = 0; files != null && i < files.length; i++) {
+            if (isBCPFile(files[i]) && files[i].length() > 0) {
+                found.add(files[i]);
+            }
+        }
+        File[] result = (File[])found.toArray(new File[found.size()]);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Deletes the BCP files of a directory which have not been copied,
+     * empty or not
+     * @assumes Nothing
+     * @effects deletes files
+     * @param dir the directory
+     * @return the number of files deleted
+     * @throws IOException if a file cannot be deleted
+     */
+
+    public static int deleteBCPFiles(String dir) throws IOException {
+        File[] files = new File(dir).listFiles();
+        int deleted = 0;
+        for (int i = 0; files != null && i < files.length; i++) {
+            if (isBCPFile(files[i])) {
+                if (!files[i].delete()) {
+                    throw new IOException("Cannot delete " + files[i]);
+                }
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Gets the table of a BCP file
+     * @assumes Nothing
+     * @effects Nothing
+     * @param bcpFile the BCP file, named for its table e.g. SEQ_Sequence.bcp
+     * @return the table name
+     * @throws Nothing
+     */
+
+    public static String getTable(File bcpFile) {
+        String name = bcpFile.getName();
+        return name.substring(0, name.length() - BCP_SUFFIX.length());
+    }
+
+    /**
+     * Determines if a file is a BCP file not yet copied
+     * @assumes Nothing
+     * @effects Nothing
+     * @param file the file
+     * @return true if its name is a table name with a '.bcp' suffix; a
+     *         BCP file copied ends with '.bcp.copied'
+     * @throws Nothing
+     */
+
+    private static boolean isBCPFile(File file) {
+        String name = file.getName();
+        return name.endsWith(BCP_SUFFIX) &&
+            name.length() > BCP_SUFFIX.length() && file.isFile();
+    }
+
+    /**
+     * Copies BCP files, several tables at once
+     * @assumes no two files are for the same table
+     * @effects loads the database; renames each file copied with a
+     *          '.copied' suffix
+     * @param files the BCP files
+     * @param threads max number of tables copied at once
+     * @return Vector of Strings, one per table, reporting the rows copied
+     * @throws IOException if a file could not be copied; other files may
+     *         have been copied
+     */
+
+    public Vector copyAll(File[] files, int threads) throws IOException {
+        Vector results = new Vector();
+        if (files.length == 0) {
+            return results;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(
+            Math.max(Math.min(threads, files.length), 1),
+            new ParallelRecordIterator.DaemonThreadFactory(
+                "refseqload-copy"));
+        try {
+            Vector futures = new Vector();
+            for (int i = 0; i < files.length; i++) {
+                final File file = files[i];
+                futures.add(pool.submit(new Callable() {
+                    public Object call() throws IOException {
+                        return copyFile(file);
+                    }
+                }));
+            }
+            IOException error = null;
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(((Future)futures.get(i)).get());
+                }
+                catch (ExecutionException e) {
+                    if (error == null) {
+                        error = e.getCause() instanceof IOException ?
+                            (IOException)e.getCause() :
+                            new IOException(e.getCause().toString());
+                    }
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted copying BCP files");
+                }
+            }
+            if (error != null) {
+                throw error;
+            }
+        }
+        finally {
+            pool.shutdownNow();
+        }
+        return results;
+    }
+
+    /**
+     * Copies a BCP file to its table and renames it, resuming after the
+     * rows the checkpoint records as committed
+     * @assumes Nothing
+     * @effects loads the database; renames 'bcpFile' with a '.copied'
+     *          suffix; updates the checkpoint
+     * @param bcpFile the BCP file
+     * @return a String reporting the rows copied
+     * @throws IOException if the file could not be copied
+     */
+
+    public String copyFile(File bcpFile) throws IOException {
+        long start = System.currentTimeMillis();
+        String table = getTable(bcpFile);
+        long skipRows = checkpoint == null ? 0 :
+            checkpoint.getCopiedRows(bcpFile);
+        long rows = copy(table, bcpFile, skipRows);
+        File copied = new File(bcpFile.getPath() + COPIED_SUFFIX);
+        copied.delete();
+        if (!bcpFile.renameTo(copied)) {
+            throw new IOException("Cannot rename " + bcpFile + " to " +
+                copied);
+        }
+        if (checkpoint != null) {
+            checkpoint.setCopiedRows(bcpFile, -1);
+        }
+        return "Copied " + (rows - skipRows) + " rows to " + table +
+            (skipRows > 0 ? ", resumed after " + skipRows + " rows" : "") +
+            " in " + (System.currentTimeMillis() - start) / 1000.0 + " sec";
+    }
+
+    /**
+     * Streams the rows of a BCP file to a table through psql
+     * @assumes Nothing
+     * @effects loads the database
+     * @param table the table
+     * @param bcpFile the BCP file
+     * @return the number of rows copied
+     * @throws IOException if error reading the file or psql fails
+     */
+
+    public long copy(String table, File bcpFile) throws IOException {
+        return copy(table, bcpFile, 0);
+    }
+
+    /**
+     * Streams the rows of a BCP file after its first rows to a table
+     * through psql, recording the rows committed in the checkpoint if any
+     * @assumes the first 'skipRows' rows have been committed
+     * @effects loads the database; updates the checkpoint
+     * @param table the table
+     * @param bcpFile the BCP file
+     * @param skipRows the rows not to copy again
+     * @return the number of rows of the file
+     * @throws IOException if error reading the file or psql fails
+     */
+
+    public long copy(String table, File bcpFile, long skipRows)
+        throws IOException {
+        Process psql = new ProcessBuilder(command).redirectErrorStream(true)
+            .start();
+        OutputCollector output = new OutputCollector(psql.getInputStream(),
+            OUTPUT_LINES);
+        output.setCommitted(skipRows, checkpoint, bcpFile);
+        output.start();
+
+        byte[] begin = ("begin;\ncopy " + table +
+            " from stdin with null as '';\n").getBytes("US-ASCII");
+        long rows = 0;
+        IOException writeError = null;
+        InputStream in = new FileInputStream(bcpFile);
+        OutputStream out = new BufferedOutputStream(psql.getOutputStream(),
+            1024 * 1024);
+        try {
+            byte[] buf = new byte[64 * 1024];
+            int chunk = 0;
+            boolean atLineStart = true;
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                int from = 0;
+                for (int i = 0; i < n; i++) {
+                    if (rows < skipRows) {
+                        // committed by an earlier copy
+                        if (buf[i] == '\n') {
+                            rows++;
+                        }
+                        from = i + 1;
+                        continue;
+                    }
+                    if (atLineStart && chunk == 0) {
+                        out.write(buf, from, i - from);
+                        from = i;
+                        out.write(begin);
+                    }
+                    atLineStart = buf[i] == '\n';
+                    if (atLineStart) {
+                        rows++;
+                        if (++chunk == chunkRows) {
+                            out.write(buf, from, i + 1 - from);
+                            from = i + 1;
+                            out.write(commit(rows));
+                            chunk = 0;
+                        }
+                    }
+                }
+                out.write(buf, from, n - from);
+            }
+            if (!atLineStart) {
+                out.write('\n');
+                rows++;
+                chunk++;
+            }
+            if (chunk > 0) {
+                out.write(commit(rows));
+            }
+            out.close();
+        }
+        catch (IOException e) {
+            // psql exited, its output tells why
+            writeError = e;
+        }
+        finally {
+            in.close();
+        }
+
+        int status;
+        try {
+            status = psql.waitFor();
+            output.join();
+        }
+        catch (InterruptedException e) {
+            psql.destroy();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted copying " + bcpFile);
+        }
+        if (output.getCheckpointError() != null) {
+            throw output.getCheckpointError();
+        }
+        if (status != 0 || writeError != null) {
+            throw new IOException("Cannot copy " + bcpFile + " to " + table +
+                ", " + output.getCommitted() + " rows committed: " +
+                output.getOutput() +
+                (writeError == null ? "" : writeError.getMessage()));
+        }
+        return rows;
+    }
+
+    /**
+     * Executes SQL through psql in one transaction
+     * @assumes Nothing
+     * @effects executes 'sql'
+     * @param sql the SQL statements, each ending with ';'
+     * @return Vector of the lines output, unaligned and without headers
+     * @throws IOException if psql fails
+     */
+
+    public Vector execute(String sql) throws IOException {
+        String[] cmd = new String[command.length + 3];
+        System.arraycopy(command, 0, cmd, 0, command.length);
+        cmd[command.length] = "-A";
+        cmd[command.length + 1] = "-t";
+        cmd[command.length + 2] = "-1";
+        Process psql = new ProcessBuilder(cmd).redirectErrorStream(true)
+            .start();
+        OutputCollector output = new OutputCollector(psql.getInputStream(),
+            Integer.MAX_VALUE);
+        output.start();
+        IOException writeError = null;
+        try {
+            OutputStream out = psql.getOutputStream();
+            out.write(sql.getBytes());
+            out.close();
+        }
+        catch (IOException e) {
+            // psql exited, its output tells why
+            writeError = e;
+        }
+        int status;
+        try {
+            status = psql.waitFor();
+            output.join();
+        }
+        catch (InterruptedException e) {
+            psql.destroy();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted executing " + sql);
+        }
+        if (status != 0 || writeError != null) {
+            throw new IOException("Cannot execute " + sql + ": " +
+                output.getOutput() +
+                (writeError == null ? "" : writeError.getMessage()));
+        }
+        return output.getLines();
+    }
+
+    /**
+     * Counts the rows of a BCP file
+     * @assumes Nothing
+     * @effects Nothing
+     * @param bcpFile the BCP file
+     * @return the number of lines, counting an unterminated last line
+     * @throws IOException if error reading the file
+     */
+
+    public static long countRows(File bcpFile) throws IOException {
+        InputStream in = new FileInputStream(bcpFile);
+        long rows = 0;
+        try {
+            byte[] buf = new byte[64 * 1024];
+            byte last = '\n';
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                for (int i = 0; i < n; i++) {
+                    if (buf[i] == '\n') {
+                        rows++;
+                    }
+                }
+                last = buf[n - 1];
+            }
+            if (last != '\n') {
+                rows++;
+            }
+        }
+        finally {
+            in.close();
+        }
+        return rows;
+    }
+
+    /**
+     * Gets the end of a chunk of rows
+     * @assumes Nothing
+     * @effects Nothing
+     * @param rows the rows sent so far
+     * @return the end of the COPY data, the commit and the echo of the
+     *         rows committed
+     * @throws IOException if the JVM has no US-ASCII charset
+     */
+
+    private static byte[] commit(long rows) throws IOException {
+        String s = "\\.\ncommit;\n\\echo " + COMMITTED + rows + "\n";
+        return s.getBytes("US-ASCII");
+    }
+
+    /**
+     * @is a thread reading the output of psql
+     * @has the last lines of output and the rows last echoed as committed
+     * @does keeps the output of psql from blocking it; records the rows
+     *       committed in a LoadCheckpoint
+     * @company The Jackson Laboratory
+     * @author sc
+     * @version 1.0
+     */
+
+    private static class OutputCollector extends Thread {
+        private InputStream in;
+        private int maxLines;
+        private LinkedList lines = new LinkedList();
+        private volatile long committed = 0;
+        private LoadCheckpoint checkpoint = null;
+        private File bcpFile;
+        private volatile IOException checkpointError = null;
+
+        private OutputCollector(InputStream in, int maxLines) {
+            this.in = in;
+            this.maxLines = maxLines;
+            setDaemon(true);
+        }
+
+        private void setCommitted(long committed, LoadCheckpoint checkpoint,
+                                  File bcpFile) {
+            this.committed = committed;
+            this.checkpoint = checkpoint;
+            this.bcpFile = bcpFile;
+        }
+
+        public void run() {
+            try {
+                BufferedReader r = new BufferedReader(
+                    new InputStreamReader(in));
+                String line;
+                while ((line = r.readLine()) != null) {
+                    if (line.startsWith(COMMITTED)) {
+                        committed = Long.parseLong(
+                            line.substring(COMMITTED.length()).trim());
+                        if (checkpoint != null && checkpointError == null) {
+                            try {
+                                checkpoint.setCopiedRows(bcpFile, committed);
+                            }
+                            catch (IOException e) {
+                                checkpointError = e;
+                            }
+                        }
+                        continue;
+                    }
+                    synchronized (lines) {
+                        lines.add(line);
+                        if (lines.size() > maxLines) {
+                            lines.removeFirst();
+                        }
+                    }
+                }
+                r.close();
+            }
+            catch (IOException e) {
+                // psql exited
+            }
+        }
+
+        private long getCommitted() {
+            return committed;
+        }
+
+        private IOException getCheckpointError() {
+            return checkpointError;
+        }
+
+        private Vector getLines() {
+            synchronized (lines) {
+                return new Vector(lines);
+            }
+        }
+
+        private String getOutput() {
+            StringBuffer b = new StringBuffer();
+            synchronized (lines) {
+                for (int i = 0; i < lines.size(); i++) {
+                    b.append(lines.get(i)).append(' ');
+                }
+            }
+            return b.toString();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package org.jax.mgi.app.refseqload;
+
+import java.util.Iterator;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jax.mgi.dbs.mgd.loads.Acc.AccessionRawAttributes;
+import org.jax.mgi.dbs.mgd.loads.Seq.SequenceRawAttributes;
+import org.jax.mgi.dbs.mgd.loads.SeqRefAssoc.RefAssocRawAttributes;
+import org.jax.mgi.dbs.mgd.loads.SeqSrc.MSRawAttributes;
+import org.jax.mgi.shr.dla.input.SequenceInput;
+
+/**
+ * @is A bounded intern table of the low cardinality String fields of
+ *     interpreted sequences
+ * @has
+ *   <UL>
+ *   <LI>A map of each distinct field value to its canonical String
+ *   <LI>A bound on the number of values held
+ *   <LI>Counts of hits, misses and values not held because the table was
+ *       full
+ *   </UL>
+ * @does
+ *   <UL>
+ *   <LI>Replaces the sequence type, division, provider, status and raw
+ *       organisms of a SequenceInput, the logical DB of its accessions, the
+ *       association type of its references and the organism, strain,
+ *       tissue, age, gender and cell line of its molecular sources with
+ *       their canonical Strings, so a value repeated by hundreds of
+ *       thousands of records is held once
+ *   <LI>Reports its statistics
+ *   </UL>
+ * @notes Thread safe, the interpreters of all threads share one. Unlike
+ *        String.intern the table is bounded and its Strings are collected
+ *        with it at the end of the load
+ * @company The Jackson Laboratory
+ * @author sc
+ * @version 1.0
+ */
+
+public class FieldInterner {
+
+    // field value to its canonical String
+    private ConcurrentHashMap values = new ConcurrentHashMap();
+
+    // max number of values held
+    private int maxSize;
+
+    // statistics
+    private AtomicLong hits = new AtomicLong();
+    private AtomicLong misses = new AtomicLong();
+    private AtomicLong overflows = new AtomicLong();
+
+    /**
+     * Constructs a FieldInterner
+     * @assumes Nothing
+     * @effects Nothing
+     * @param maxSize max number of distinct values held
+     * @throws Nothing
+     */
+
+    public FieldInterner(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Replaces the low cardinality fields of a sequence with their
+     * canonical Strings
+     * @assumes Nothing
+     * @effects modifies the attributes of 'seqInput'
+     * @param seqInput the sequence
+     * @throws Nothing
+     */
+
+    public void intern(SequenceInput seqInput) {
+        SequenceRawAttributes seq = seqInput.getSeq();
+        if (seq != null) {
+            seq.setType(intern(seq.getType()));
+            seq.setDivision(intern(seq.getDivision()));
+            seq.setProvider(intern(seq.getProvider()));
+            seq.setStatus(intern(seq.getStatus()));
+            seq.setRawOrganisms(intern(seq.getRawOrganisms()));
+        }
+        AccessionRawAttributes acc = seqInput.getPrimaryAcc();
+        if (acc != null) {
+            acc.setLogicalDB(intern(acc.getLogicalDB()));
+        }
+        Vector v = seqInput.getSecondary();
+        for (Iterator i = iterator(v); i.hasNext();) {
+            acc = (AccessionRawAttributes)i.next();
+            acc.setLogicalDB(intern(acc.getLogicalDB()));
+        }
+        v = seqInput.getRefs();
+        for (Iterator i = iterator(v); i.hasNext();) {
+            RefAssocRawAttributes ref = (RefAssocRawAttributes)i.next();
+            ref.setRefAssocType(intern(ref.getRefAssocType()));
+        }
+        v = seqInput.getMSources();
+        for (Iterator i = iterator(v); i.hasNext();) {
+            MSRawAttributes ms = (MSRawAttributes)i.next();
+            ms.setOrganism(intern(ms.getOrganism()));
+            ms.setStrain(intern(ms.getStrain()));
+            ms.setTissue(intern(ms.getTissue()));
+            ms.setAge(intern(ms.getAge()));
+            ms.setGender(intern(ms.getGender()));
+            ms.setCellLine(intern(ms.getCellLine()));
+        }
+    }
+
+    /**
+     * Gets the canonical String of a value
+     * @assumes Nothing
+     * @effects holds 'value' if it is not held and the table is not full
+     * @param value the value, may be null
+     * @return the held String equal to 'value', or 'value'
+     * @throws Nothing
+     */
+
+    public String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String canonical = (String)values.get(value);
+        if (canonical != null) {
+            hits.incrementAndGet();
+            return canonical;
+        }
+        misses.incrementAndGet();
+        if (values.size() >= maxSize) {
+            overflows.incrementAndGet();
+            return value;
+        }
+        canonical = (String)values.putIfAbsent(value, value);
+        return canonical == null ? value : canonical;
+    }
+
+    /**
+     * Gets the statistics of the table
+     * @assumes Nothing
+     * @effects Nothing
+     * @return Vector of Strings
+     * @throws Nothing
+     */
+
+    public Vector getStatistics() {
+        Vector v = new Vector();
+        long lookups = hits.get() + misses.get();
+        v.add("Field intern table: " + values.size() + " of " + maxSize +
+            " values held");
+        v.add("Field intern table hits: " + hits.get() + " (" +
+            (lookups == 0 ? 0 : hits.get() * 100 / lookups) +
+            "%), misses: " + misses.get() + ", not held when full: " +
+            overflows.get());
+        return v;
+    }
+
+    /**
+     * Gets an iterator over a Vector which may be null
+     * @assumes Nothing
+     * @effects Nothing
+     * @param v the Vector
+     * @return an iterator over 'v', empty if 'v' is null
+     * @throws Nothing
+     */
+
+    private static Iterator iterator(Vector v) {
+        return v == null ? new Vector().iterator() : v.iterator();
+    }
+}
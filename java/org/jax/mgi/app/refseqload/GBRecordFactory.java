@@ -0,0 +1,267 @@
+package org.jax.mgi.app.refseqload;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * @is A factory for synthetic GenBank format RefSeq sequence records
+ * @has
+ *   <UL>
+ *   <LI>A random number generator with a given seed, so records are the
+ *       same from run to run
+ *   <LI>The organism name, division, taxon and classification of each
+ *       organism it can create records for
+ *   </UL>
+ * @does Creates a record for a given seqid prefix, organism, sequence
+ *       length and number of secondary seqids, with a header, source and
+ *       gene (or Protein) features and an ORIGIN section in GenBank layout
+ * @company The Jackson Laboratory
+ * @author sc
+ * @version 1.0
+ */
+
+public class GBRecordFactory {
+
+    // organisms; name, common name, division, taxon id, classification
+    private static final String[][] ORGANISMS = {
+        {"mouse", "Mus musculus", "house mouse", "ROD", "10090",
+         "Eukaryota; Metazoa; Chordata; Craniata; Vertebrata; Euteleostomi;\n" +
+         "            Mammalia; Eutheria; Euarchontoglires; Glires; Rodentia;\n" +
+         "            Myomorpha; Muroidea; Muridae; Murinae; Mus; Mus."},
+        {"rat", "Rattus norvegicus", "Norway rat", "ROD", "10116",
+         "Eukaryota; Metazoa; Chordata; Craniata; Vertebrata; Euteleostomi;\n" +
+         "            Mammalia; Eutheria; Euarchontoglires; Glires; Rodentia;\n" +
+         "            Myomorpha; Muroidea; Muridae; Murinae; Rattus."},
+        {"human", "Homo sapiens", "human", "PRI", "9606",
+         "Eukaryota; Metazoa; Chordata; Craniata; Vertebrata; Euteleostomi;\n" +
+         "            Mammalia; Eutheria; Euarchontoglires; Primates;\n" +
+         "            Haplorrhini; Catarrhini; Hominidae; Homo."},
+        {"zebrafish", "Danio rerio", "zebrafish", "VRT", "7955",
+         "Eukaryota; Metazoa; Chordata; Craniata; Vertebrata; Euteleostomi;\n" +
+         "            Actinopterygii; Neopterygii; Teleostei; Ostariophysi;\n" +
+         "            Cypriniformes; Danionidae; Danioninae; Danio."},
+        {"cattle", "Bos taurus", "cattle", "MAM", "9913",
+         "Eukaryota; Metazoa; Chordata; Craniata; Vertebrata; Euteleostomi;\n" +
+         "            Mammalia; Eutheria; Laurasiatheria; Artiodactyla;\n" +
+         "            Ruminantia; Pecora; Bovidae; Bovinae; Bos."}
+    };
+
+    // residues for the ORIGIN section of nucleotide and protein records
+    private static final char[] BASES = {'a', 'c', 'g', 't'};
+    private static final char[] AMINO_ACIDS =
+        "acdefghiklmnpqrstvwy".toCharArray();
+
+    private Random random;
+
+    /**
+     * Constructs a GBRecordFactory with a fixed seed
+     * @assumes Nothing
+     * @effects Nothing
+     * @throws Nothing
+     */
+
+    public GBRecordFactory() {
+        this(10090);
+    }
+
+    /**
+     * Constructs a GBRecordFactory
+     * @assumes Nothing
+     * @effects Nothing
+     * @param seed the seed for random residues
+     * @throws Nothing
+     */
+
+    public GBRecordFactory(long seed) {
+        random = new Random(seed);
+    }
+
+    /**
+     * Gets the names of the organisms records can be created for
+     * @assumes Nothing
+     * @effects Nothing
+     * @return the organism names e.g. 'mouse'
+     * @throws Nothing
+     */
+
+    public static String[] getOrganisms() {
+        String[] names = new String[ORGANISMS.length];
+        for (int i = 0; i < ORGANISMS.length; i++) {
+            names[i] = ORGANISMS[i][0];
+        }
+        return names;
+    }
+
+    /**
+     * Creates a synthetic mouse sequence record with one secondary seqid
+     * @assumes Nothing
+     * @effects Nothing
+     * @param prefix the seqid prefix e.g. NM
+     * @param id the numeric part of the seqid
+     * @param length the sequence length
+     * @return the record text, terminated by a '//' line
+     * @throws Nothing
+     */
+
+    public String createRecord(String prefix, int id, int length) {
+        StringBuffer b = new StringBuffer(length * 66 / 60 + 4096);
+        try {
+            appendRecord(b, prefix, id, length, "mouse", 1);
+        }
+        catch (IOException e) {
+            // a StringBuffer does not throw IOException
+        }
+        return b.toString();
+    }
+
+    /**
+     * Appends a synthetic sequence record
+     * @assumes Nothing
+     * @effects appends to 'out'
+     * @param out where to append the record
+     * @param prefix the seqid prefix e.g. NM
+     * @param id the numeric part of the seqid
+     * @param length the sequence length, in aa for protein prefixes
+     * @param organism an organism name from getOrganisms()
+     * @param secondaries the number of secondary seqids, see
+     *        getSecondarySeqid
+     * @throws IOException if error appending to 'out'
+     * @throws IllegalArgumentException if 'organism' is unknown
+     */
+
+    public void appendRecord(Appendable out, String prefix, int id,
+                             int length, String organism, int secondaries)
+        throws IOException {
+        String[] org = getOrganism(organism);
+        String seqid = prefix + "_" + (100000 + id);
+        boolean isProtein = prefix.charAt(1) == 'P';
+        String molType = prefix.charAt(1) == 'M' ? "mRNA" :
+            prefix.charAt(1) == 'R' ? "ncRNA" :
+            isProtein ? "protein" : "genomic DNA";
+        out.append("LOCUS       " + seqid + "   " + length +
+            (isProtein ? " aa            " : " bp    " +
+            (molType.equals("genomic DNA") ? "DNA" : molType) + "    ") +
+            "linear   " + org[3] + " 15-JAN-2024\n");
+        out.append("DEFINITION  " + org[1] + " synthetic gene " + id +
+            " (Sgn" + id + "), " + molType + ".\n");
+        out.append("ACCESSION   " + seqid);
+        for (int s = 1; s <= secondaries; s++) {
+            out.append(" " + getSecondarySeqid(prefix, id, s));
+        }
+        out.append("\n");
+        out.append("VERSION     " + seqid + ".1\n");
+        out.append("KEYWORDS    RefSeq.\n");
+        out.append("SOURCE      " + org[1] + " (" + org[2] + ")\n");
+        out.append("  ORGANISM  " + org[1] + "\n");
+        out.append("            " + org[5] + "\n");
+        for (int r = 1; r <= 3; r++) {
+            out.append("REFERENCE   " + r + "  (" +
+                (isProtein ? "residues" : "bases") + " 1 to " + length +
+                ")\n");
+            out.append("  AUTHORS   Smith J, Jones K and Brown L.\n");
+            out.append("  TITLE     Synthetic reference " + r + "\n");
+            out.append("  JOURNAL   J Synth Biol 12 (3), 100-110 (2020)\n");
+            out.append("   PUBMED   " + (30000000 + r * 7 + id % 50) + "\n");
+        }
+        out.append("COMMENT     PROVISIONAL REFSEQ: synthetic record.\n");
+        out.append("FEATURES             Location/Qualifiers\n");
+        out.append("     source          1.." + length + "\n");
+        out.append("                     /organism=\"" + org[1] + "\"\n");
+        if (!isProtein) {
+            out.append("                     /mol_type=\"" + molType +
+                "\"\n");
+        }
+        out.append("                     /strain=\"C57BL/6J\"\n");
+        out.append("                     /db_xref=\"taxon:" + org[4] +
+            "\"\n");
+        out.append("                     /chromosome=\"" + (id % 19 + 1) +
+            "\"\n");
+        if (isProtein) {
+            out.append("     Protein         1.." + length + "\n");
+            out.append("                     /product=\"synthetic protein " +
+                id + "\"\n");
+        }
+        else {
+            out.append("     gene            1.." + length + "\n");
+            out.append("                     /gene=\"Sgn" + id + "\"\n");
+        }
+        appendOrigin(out, length, isProtein ? AMINO_ACIDS : BASES);
+        out.append("//\n");
+    }
+
+    /**
+     * Gets a secondary seqid of a record. Its number is that of the
+     * primary seqid, zero padded to 9 digits, after the number of the
+     * secondary, so secondary seqids have 10 or more digits and never
+     * collide with a primary seqid or with each other
+     * @assumes 'id' < 999900000 so the primary seqid has at most 9 digits
+     * @effects Nothing
+     * @param prefix the seqid prefix e.g. NM
+     * @param id the numeric part of the primary seqid
+     * @param s the number of the secondary seqid, from 1
+     * @return the seqid e.g. NM_1000100001 for the first secondary of id 1
+     * @throws Nothing
+     */
+
+    private static String getSecondarySeqid(String prefix, int id, int s) {
+        String number = String.valueOf(100000 + id);
+        StringBuffer b = new StringBuffer(prefix).append('_').append(s);
+        for (int i = number.length(); i < 9; i++) {
+            b.append('0');
+        }
+        return b.append(number).toString();
+    }
+
+    /**
+     * Gets the attributes of an organism
+     * @assumes Nothing
+     * @effects Nothing
+     * @param organism an organism name from getOrganisms()
+     * @return the organism attributes
+     * @throws IllegalArgumentException if 'organism' is unknown
+     */
+
+    private static String[] getOrganism(String organism) {
+        for (int i = 0; i < ORGANISMS.length; i++) {
+            if (ORGANISMS[i][0].equals(organism)) {
+                return ORGANISMS[i];
+            }
+        }
+        throw new IllegalArgumentException("Unknown organism: " + organism);
+    }
+
+    /**
+     * Appends an ORIGIN section of random residues, 60 per line in blocks
+     * of 10 with the position of the first residue of each line
+     * @assumes Nothing
+     * @effects appends to 'out'
+     * @param out where to append the section
+     * @param length number of residues
+     * @param residues the residues to choose from
+     * @throws IOException if error appending to 'out'
+     */
+
+    private void appendOrigin(Appendable out, int length, char[] residues)
+        throws IOException {
+        out.append("ORIGIN      \n");
+        char[] line = new char[76];
+        for (int i = 0; i < length; i += 60) {
+            int n = 0;
+            String pos = String.valueOf(i + 1);
+            for (int p = pos.length(); p < 9; p++) {
+                line[n++] = ' ';
+            }
+            for (int p = 0; p < pos.length(); p++) {
+                line[n++] = pos.charAt(p);
+            }
+            for (int j = i; j < Math.min(i + 60, length); j++) {
+                if ((j - i) % 10 == 0) {
+                    line[n++] = ' ';
+                }
+                line[n++] = residues[random.nextInt(residues.length)];
+            }
+            line[n++] = '\n';
+            out.append(new String(line, 0, n));
+        }
+    }
+}
@@ -0,0 +1,407 @@
+package org.jax.mgi.app.refseqload;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import org.jax.mgi.shr.ioutils.RecordDataInterpreter;
+
+/**
+ * @is A RecordSource that splits a stream of GenBank format sequence records
+ *     and filters them on their header as they are read
+ * @has
+ *   <UL>
+ *   <LI>An InputStream and a byte buffer
+ *   <LI>A RecordDataInterpreter whose isValid method is applied to the
+ *       header of each record i.e. the LOCUS line up to and including the
+ *       FEATURES line (or the ORIGIN line if there is no FEATURES line)
+ *   </UL>
+ * @does
+ *   <UL>
+ *   <LI>Reads the header of each record and determines if it is valid
+ *   <LI>Reads the rest of a valid record and returns the whole record
+ *   <LI>Skips the rest of an invalid record in the byte buffer without
+ *       copying it or creating a String for it
+ *   <LI>Optionally counts the residues of the ORIGIN section of a valid
+ *       record without copying them, verifies the count against the
+ *       length on the LOCUS line and returns the record without them
+ *   </UL>
+ * @notes Records are terminated by a line starting with '//'. Without
+ *        its residues a multi-megabyte contig record is a few KB
+ * @company The Jackson Laboratory
+ * @author sc
+ * @version 1.0
+ */
+
+public class GBRecordReader implements RecordSource {
+
+    // GenBank flat files are ASCII
+    static final Charset CHARSET = Charset.forName("ISO-8859-1");
+
+    // GenBank keywords which end the header of a record
+    private static final byte[] FEATURES = "FEATURES".getBytes();
+    private static final byte[] ORIGIN = "ORIGIN".getBytes();
+
+    // the terminator of a record returned without its residues
+    static final String END_LINE = "//\n";
+
+    // the LOCUS line keyword and the units of its sequence length
+    private static final String LOCUS = "LOCUS";
+    private static final String BP = " bp";
+    private static final String AA = " aa";
+
+    // the input
+    private InputStream in;
+
+    // bytes read from the input; unread bytes are buf[pos] to buf[limit - 1]
+    private byte[] buf;
+    private int pos = 0;
+    private int limit = 0;
+
+    // true when the end of the input has been read
+    private boolean eof = false;
+
+    // determines if a record header is valid, null if all records are valid
+    private RecordDataInterpreter filter;
+
+    // true if the residues of valid records are counted, not retained
+    private boolean skipResidues;
+
+    // residues counted by the last call to skipRecord
+    private long residues = 0;
+
+    // counts bytes read
+    private LoadMetrics metrics = LoadMetrics.getInstance();
+
+    // bytes of the record being read
+    private byte[] rcd = new byte[64 * 1024];
+    private int rcdLen = 0;
+
+    /**
+     * Constructs a GBRecordReader
+     * @assumes Nothing
+     * @effects Nothing
+     * @param in the input
+     * @param bufferSize size in bytes of the input buffer
+     * @param filter determines if a record is valid from its header, null
+     *        if all records are valid
+     * @param skipResidues true if the ORIGIN residues of valid records are
+     *        counted and not returned
+     * @throws Nothing
+     */
+
+    public GBRecordReader(InputStream in, int bufferSize,
+                          RecordDataInterpreter filter,
+                          boolean skipResidues) {
+        this.in = in;
+        this.buf = new byte[Math.max(bufferSize, 1024)];
+        this.filter = filter;
+        this.skipResidues = skipResidues;
+    }
+
+    /**
+     * Gets the next sequence record whose header is valid
+     * @assumes Nothing
+     * @effects reads from the input
+     * @return the text of the next valid record, null at end of input
+     * @throws IOException if error reading the input
+     */
+
+    public String nextRecord() throws IOException {
+        while (true) {
+            rcdLen = 0;
+            // read the header
+            boolean endOfRecord = false;
+            boolean atOrigin = false;
+            int lineStart;
+            while (true) {
+                lineStart = rcdLen;
+                if (!readLine()) {
+                    // end of input, return any unterminated record as is
+                    // if it is valid
+                    if (isBlank(0, rcdLen)) {
+                        return null;
+                    }
+                    String s = new String(rcd, 0, rcdLen, CHARSET);
+                    return filter == null || filter.isValid(s) ? s : null;
+                }
+                if (lineStart == 0 && isBlank(0, rcdLen)) {
+                    // blank line between records
+                    rcdLen = 0;
+                }
+                else if (isEndLine(rcd, lineStart, rcdLen)) {
+                    endOfRecord = true;
+                    break;
+                }
+                else if (startsWith(rcd, lineStart, rcdLen, FEATURES)) {
+                    break;
+                }
+                else if (startsWith(rcd, lineStart, rcdLen, ORIGIN)) {
+                    atOrigin = true;
+                    break;
+                }
+            }
+            String header = new String(rcd, 0, rcdLen, CHARSET);
+            if (filter == null || filter.isValid(header)) {
+                if (endOfRecord) {
+                    return header;
+                }
+                // read the rest of the record, up to its residues if they
+                // are not retained
+                while (!(atOrigin && skipResidues)) {
+                    lineStart = rcdLen;
+                    if (!readLine() || isEndLine(rcd, lineStart, rcdLen)) {
+                        return new String(rcd, 0, rcdLen, CHARSET);
+                    }
+                    atOrigin = startsWith(rcd, lineStart, rcdLen, ORIGIN);
+                }
+                boolean terminated = skipRecord();
+                metrics.addSkippedResidues(residues,
+                    isLocusLength(header, residues));
+                String s = new String(rcd, 0, rcdLen, CHARSET);
+                return terminated ? s + END_LINE : s;
+            }
+            if (!endOfRecord && !skipRecord()) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Closes the input
+     * @assumes Nothing
+     * @effects closes the input
+     * @throws IOException if error closing the input
+     */
+
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Copies the next line, including its newline, to the record bytes
+     * @assumes Nothing
+     * @effects reads from the input
+     * @return false if at end of input
+     * @throws IOException if error reading the input
+     */
+
+    private boolean readLine() throws IOException {
+        boolean copied = false;
+        while (true) {
+            if (pos == limit && !fill()) {
+                return copied;
+            }
+            int end = pos;
+            while (end < limit && buf[end] != '\n') {
+                end++;
+            }
+            boolean eol = end < limit;
+            if (eol) {
+                end++;
+            }
+            append(pos, end - pos);
+            pos = end;
+            copied = true;
+            if (eol) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Skips to the line after the next record terminator without copying,
+     * counting the residues i.e. letters of the lines skipped
+     * @assumes the first line of the record has been read
+     * @effects reads from the input, sets the residue count
+     * @return false if at end of input
+     * @throws IOException if error reading the input
+     */
+
+    private boolean skipRecord() throws IOException {
+        residues = 0;
+        while (true) {
+            // at the start of a line; a read may return one byte, so read
+            // until the two bytes of a '//' terminator can be tested
+            while (limit - pos < 2) {
+                if (!fill()) {
+                    break;
+                }
+            }
+            if (pos == limit) {
+                return false;
+            }
+            boolean isEnd = limit - pos >= 2 &&
+                buf[pos] == '/' && buf[pos + 1] == '/';
+            // skip the line
+            while (true) {
+                int i = pos;
+                while (i < limit && buf[i] != '\n') {
+                    if (!isEnd && isResidue(buf[i])) {
+                        residues++;
+                    }
+                    i++;
+                }
+                if (i < limit) {
+                    pos = i + 1;
+                    break;
+                }
+                pos = limit;
+                if (!fill()) {
+                    return false;
+                }
+            }
+            if (isEnd) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Moves unread bytes to the start of the buffer and reads more
+     * @assumes Nothing
+     * @effects reads from the input
+     * @return false if no more bytes could be read
+     * @throws IOException if error reading the input
+     */
+
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        int n = in.read(buf, limit, buf.length - limit);
+        if (n < 0) {
+            eof = true;
+            return false;
+        }
+        metrics.addBytes(n);
+        limit += n;
+        return true;
+    }
+
+    /**
+     * Appends bytes from the buffer to the record bytes
+     * @assumes Nothing
+     * @effects grows the record bytes as needed
+     * @param off offset in the buffer
+     * @param len number of bytes
+     * @throws Nothing
+     */
+
+    private void append(int off, int len) {
+        if (rcdLen + len > rcd.length) {
+            byte[] b = new byte[Math.max(rcd.length * 2, rcdLen + len)];
+            System.arraycopy(rcd, 0, b, 0, rcdLen);
+            rcd = b;
+        }
+        System.arraycopy(buf, off, rcd, rcdLen, len);
+        rcdLen += len;
+    }
+
+    /**
+     * Determines if a range of the record bytes is whitespace only
+     * @assumes Nothing
+     * @effects Nothing
+     * @return true if all bytes from 'start' to 'end' are whitespace
+     * @throws Nothing
+     */
+
+    private boolean isBlank(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (rcd[i] > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines if a byte of an ORIGIN line is a residue
+     * @assumes Nothing
+     * @effects Nothing
+     * @param b the byte
+     * @return true if 'b' is a letter, not a digit or whitespace
+     * @throws Nothing
+     */
+
+    static boolean isResidue(byte b) {
+        int c = b | 0x20;
+        return c >= 'a' && c <= 'z';
+    }
+
+    /**
+     * Determines if a residue count matches the sequence length on the
+     * LOCUS line of a record
+     * @assumes Nothing
+     * @effects Nothing
+     * @param header the header of the record, starting with its LOCUS line
+     * @param count the number of residues counted
+     * @return true if 'count' is the LOCUS length, or the header has no
+     *         LOCUS length
+     * @throws Nothing
+     */
+
+    static boolean isLocusLength(String header, long count) {
+        if (!header.startsWith(LOCUS)) {
+            return true;
+        }
+        int eol = header.indexOf('\n');
+        String locus = eol < 0 ? header : header.substring(0, eol);
+        int unit = locus.indexOf(BP);
+        if (unit < 0) {
+            unit = locus.indexOf(AA);
+        }
+        int i = unit;
+        while (i > 0 && Character.isDigit(locus.charAt(i - 1))) {
+            i--;
+        }
+        if (i == unit) {
+            return true;
+        }
+        return Long.parseLong(locus.substring(i, unit)) == count;
+    }
+
+    /**
+     * Determines if a line is a record terminator i.e. starts with '//'
+     * @assumes Nothing
+     * @effects Nothing
+     * @param b bytes containing the line
+     * @param start offset of the line
+     * @param end offset after the line
+     * @return true if the line is a record terminator
+     * @throws Nothing
+     */
+
+    static boolean isEndLine(byte[] b, int start, int end) {
+        return end - start >= 2 && b[start] == '/' && b[start + 1] == '/';
+    }
+
+    /**
+     * Determines if a line starts with a keyword
+     * @assumes Nothing
+     * @effects Nothing
+     * @param b bytes containing the line
+     * @param start offset of the line
+     * @param end offset after the line
+     * @param keyword the keyword
+     * @return true if the line starts with 'keyword'
+     * @throws Nothing
+     */
+
+    static boolean startsWith(byte[] b, int start, int end, byte[] keyword) {
+        if (end - start < keyword.length) {
+            return false;
+        }
+        for (int i = 0; i < keyword.length; i++) {
+            if (b[start + i] != keyword[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
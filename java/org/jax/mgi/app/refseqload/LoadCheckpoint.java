@@ -0,0 +1,514 @@
+package org.jax.mgi.app.refseqload;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.Vector;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @is The checkpoint of a refseqload which loads its input files in
+ *     segments, see RefSeqloadStart, kept in a properties file so a failed
+ *     load can be resumed
+ * @has
+ *   <UL>
+ *   <LI>The checkpoint file
+ *   <LI>The input files whose segment has been loaded
+ *   <LI>The input files of the segment in progress, the input of its pass
+ *       in progress and whether that pass has been loaded
+ *   <LI>The progress of the pass in progress: the input file and bytes
+ *       read, the records read and loaded, the RefSeq prefix counts and the
+ *       size of the BCP files flushed so far
+ *   <LI>The rows of each BCP file committed by a BCPCopyLoader
+ *   <LI>The definitions of the indexes dropped by a PostLoadStage and not
+ *       yet rebuilt
+ *   </UL>
+ * @does
+ *   <UL>
+ *   <LI>Records the start and end of each segment and pass, and each chunk
+ *       of a BCP file committed
+ *   <LI>Records the progress of a pass every so many seconds on a thread
+ *       of its own
+ *   <LI>Saves the checkpoint file after each change, replacing the old
+ *       file only when the new one is complete
+ *   <LI>Reports what it holds
+ *   </UL>
+ * @notes Thread safe. A pass writes BCP files which are loaded only when
+ *        it ends, so a pass which did not end is loaded again from its
+ *        start; the progress of a pass tells where it failed
+ * @company The Jackson Laboratory
+ * @author sc
+ * @version 1.0
+ */
+
+public class LoadCheckpoint {
+
+    // the states of the pass in progress
+    public static final String STARTED = "started";
+    public static final String LOADED = "loaded";
+
+    // suffix of the checkpoint file while it is saved
+    private static final String TMP_SUFFIX = ".tmp";
+
+    // key prefixes of the properties
+    private static final String COMPLETED = "completed.";
+    private static final String SEGMENT = "segment.";
+    private static final String PASS = "pass";
+    private static final String STATE = "state";
+    private static final String PROGRESS = "progress.";
+    private static final String COPIED = "copied.";
+    private static final String INDEX = "index.";
+
+    // the checkpoint file
+    private File file;
+
+    // the checkpoint
+    private Properties properties = new Properties();
+
+    // records the progress of a pass, null if not running
+    private ScheduledExecutorService writer = null;
+
+    /**
+     * Constructs a LoadCheckpoint, loading the checkpoint file if it exists
+     * @assumes Nothing
+     * @effects reads the checkpoint file
+     * @param fileName the checkpoint file
+     * @throws IOException if the checkpoint file cannot be read
+     */
+
+    public LoadCheckpoint(String fileName) throws IOException {
+        file = new File(fileName);
+        if (file.exists()) {
+            InputStream in = new BufferedInputStream(
+                new FileInputStream(file));
+            try {
+                properties.load(in);
+            }
+            finally {
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * Clears the checkpoint, for a load which is not resumed
+     * @assumes Nothing
+     * @effects deletes the checkpoint file
+     * @throws IOException if the checkpoint file cannot be deleted
+     */
+
+    public synchronized void clear() throws IOException {
+        properties.clear();
+        delete();
+    }
+
+    /**
+     * Deletes the checkpoint file, at the end of a successful load
+     * @assumes Nothing
+     * @effects deletes the checkpoint file
+     * @throws IOException if the checkpoint file cannot be deleted
+     */
+
+    public synchronized void delete() throws IOException {
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Cannot delete " + file);
+        }
+    }
+
+    /**
+     * Determines if the segment of an input file has been loaded
+     * @assumes Nothing
+     * @effects Nothing
+     * @param inputFile the input file
+     * @return true if it has been loaded
+     * @throws Nothing
+     */
+
+    public synchronized boolean isCompleted(String inputFile) {
+        return properties.containsKey(COMPLETED + inputFile);
+    }
+
+    /**
+     * Records the start of a segment
+     * @assumes no segment is in progress
+     * @effects saves the checkpoint
+     * @param inputFiles the input files of the segment
+     * @throws IOException if the checkpoint cannot be saved
+     */
+
+    public synchronized void startSegment(String[] inputFiles)
+        throws IOException {
+        for (int i = 0; i < inputFiles.length; i++) {
+            properties.setProperty(SEGMENT + i, inputFiles[i]);
+        }
+        save();
+    }
+
+    /**
+     * Gets the input files of the segment in progress
+     * @assumes Nothing
+     * @effects Nothing
+     * @return the input files, null if no segment is in progress
+     * @throws Nothing
+     */
+
+    public synchronized String[] getSegment() {
+        Vector files = new Vector();
+        String f;
+        while ((f = properties.getProperty(SEGMENT + files.size())) != null) {
+            files.add(f);
+        }
+        if (files.isEmpty()) {
+            return null;
+        }
+        return (String[])files.toArray(new String[files.size()]);
+    }
+
+    /**
+     * Records the end of the segment in progress; its input files are
+     * completed
+     * @assumes Nothing
+     * @effects saves the checkpoint
+     * @throws IOException if the checkpoint cannot be saved
+     */
+
+    public synchronized void completeSegment() throws IOException {
+        String[] files = getSegment();
+        for (int i = 0; files != null && i < files.length; i++) {
+            properties.setProperty(COMPLETED + files[i], "true");
+            properties.remove(SEGMENT + i);
+        }
+        properties.remove(PASS);
+        properties.remove(STATE);
+        removeAll(PROGRESS);
+        save();
+    }
+
+    /**
+     * Records the start of a pass of the segment in progress
+     * @assumes Nothing
+     * @effects saves the checkpoint
+     * @param input the input of the pass: its input files or repeat file
+     * @throws IOException if the checkpoint cannot be saved
+     */
+
+    public synchronized void startPass(String input) throws IOException {
+        properties.setProperty(PASS, input);
+        properties.setProperty(STATE, STARTED);
+        removeAll(PROGRESS);
+        save();
+    }
+
+    /**
+     * Records that the pass in progress has been loaded i.e. its BCP files
+     * are complete, and executed unless they are copied
+     * @assumes Nothing
+     * @effects saves the checkpoint
+     * @throws IOException if the checkpoint cannot be saved
+     */
+
+    public synchronized void passLoaded() throws IOException {
+        properties.setProperty(STATE, LOADED);
+        save();
+    }
+
+    /**
+     * Gets the input of the pass in progress
+     * @assumes Nothing
+     * @effects Nothing
+     * @return the input, null if no pass is in progress
+     * @throws Nothing
+     */
+
+    public synchronized String getPass() {
+        return properties.getProperty(PASS);
+    }
+
+    /**
+     * Gets the state of the pass in progress
+     * @assumes Nothing
+     * @effects Nothing
+     * @return STARTED or LOADED, null if no pass is in progress
+     * @throws Nothing
+     */
+
+    public synchronized String getState() {
+        return properties.getProperty(STATE);
+    }
+
+    /**
+     * Records the rows of a BCP file committed
+     * @assumes Nothing
+     * @effects saves the checkpoint
+     * @param bcpFile the BCP file
+     * @param rows the rows committed from its start, -1 once the file is
+     *        copied
+     * @throws IOException if the checkpoint cannot be saved
+     */
+
+    public synchronized void setCopiedRows(File bcpFile, long rows)
+        throws IOException {
+        if (rows < 0) {
+            properties.remove(COPIED + bcpFile.getPath());
+        }
+        else {
+            properties.setProperty(COPIED + bcpFile.getPath(),
+                String.valueOf(rows));
+        }
+        save();
+    }
+
+    /**
+     * Gets the rows of a BCP file committed
+     * @assumes Nothing
+     * @effects Nothing
+     * @param bcpFile the BCP file
+     * @return the rows committed from its start, 0 if none
+     * @throws Nothing
+     */
+
+    public synchronized long getCopiedRows(File bcpFile) {
+        String rows = properties.getProperty(COPIED + bcpFile.getPath());
+        return rows == null ? 0 : Long.parseLong(rows);
+    }
+
+    /**
+     * Records the indexes of a table dropped, or rebuilt
+     * @assumes Nothing
+     * @effects saves the checkpoint
+     * @param table the table
+     * @param definitions Vector of the definitions of the indexes dropped,
+     *        null once they are rebuilt
+     * @throws IOException if the checkpoint cannot be saved
+     */
+
+    public synchronized void setDroppedIndexes(String table,
+                                               Vector definitions)
+        throws IOException {
+        removeAll(INDEX + table + ".");
+        for (int i = 0; definitions != null && i < definitions.size(); i++) {
+            properties.setProperty(INDEX + table + "." + i,
+                (String)definitions.get(i));
+        }
+        save();
+    }
+
+    /**
+     * Gets the tables whose indexes were dropped and not rebuilt
+     * @assumes Nothing
+     * @effects Nothing
+     * @return Vector of table names
+     * @throws Nothing
+     */
+
+    public synchronized Vector getDroppedTables() {
+        TreeSet tables = new TreeSet();
+        for (Iterator i = properties.keySet().iterator(); i.hasNext();) {
+            String key = (String)i.next();
+            if (key.startsWith(INDEX)) {
+                tables.add(key.substring(INDEX.length(),
+                    key.lastIndexOf('.')));
+            }
+        }
+        return new Vector(tables);
+    }
+
+    /**
+     * Gets the definitions of the indexes of a table dropped and not
+     * rebuilt
+     * @assumes Nothing
+     * @effects Nothing
+     * @param table the table
+     * @return Vector of the definitions
+     * @throws Nothing
+     */
+
+    public synchronized Vector getDroppedIndexes(String table) {
+        Vector definitions = new Vector();
+        String d;
+        while ((d = properties.getProperty(INDEX + table + "." +
+                definitions.size())) != null) {
+            definitions.add(d);
+        }
+        return definitions;
+    }
+
+    /**
+     * Starts recording the progress of the pass in progress every
+     * 'interval' seconds
+     * @assumes Nothing
+     * @effects starts a thread
+     * @param pc the prefix checker of the pass
+     * @param bcpPath the directory of the BCP files
+     * @param interval seconds between records, 0 for none
+     * @throws Nothing
+     */
+
+    public synchronized void start(final RefSeqidPrefixChecker pc,
+                                   final String bcpPath, int interval) {
+        stop();
+        if (interval <= 0) {
+            return;
+        }
+        writer = Executors.newSingleThreadScheduledExecutor(
+            new ParallelRecordIterator.DaemonThreadFactory(
+                "refseqload-checkpoint"));
+        writer.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    saveProgress(pc, bcpPath);
+                }
+                catch (IOException e) {
+                    // the progress only tells where a pass failed; the
+                    // next record may be saved
+                }
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops recording the progress of the pass
+     * @assumes Nothing
+     * @effects stops the thread
+     * @throws Nothing
+     */
+
+    public synchronized void stop() {
+        if (writer != null) {
+            writer.shutdownNow();
+            writer = null;
+        }
+    }
+
+    /**
+     * Records the progress of the pass in progress from LoadMetrics, the
+     * prefix checker of the pass and the BCP files written so far
+     * @assumes Nothing
+     * @effects saves the checkpoint
+     * @param pc the prefix checker of the pass
+     * @param bcpPath the directory of the BCP files
+     * @throws IOException if the checkpoint cannot be saved
+     */
+
+    public synchronized void saveProgress(RefSeqidPrefixChecker pc,
+                                          String bcpPath)
+        throws IOException {
+        LoadMetrics metrics = LoadMetrics.getInstance();
+        removeAll(PROGRESS);
+        properties.setProperty(PROGRESS + "time", new Date().toString());
+        String currentFile = metrics.getCurrentFile();
+        if (currentFile != null) {
+            properties.setProperty(PROGRESS + "file", currentFile);
+            properties.setProperty(PROGRESS + "fileBytes",
+                String.valueOf(metrics.getFileBytes()));
+        }
+        properties.setProperty(PROGRESS + "recordsRead",
+            String.valueOf(metrics.getCount(LoadMetrics.READ)));
+        properties.setProperty(PROGRESS + "recordsLoaded",
+            String.valueOf(metrics.getCount(LoadMetrics.PROCESS)));
+        Vector counts = pc.getDeciderCounts();
+        for (int i = 0; i < counts.size(); i++) {
+            properties.setProperty(PROGRESS + "prefix." + i,
+                ((String)counts.get(i)).trim());
+        }
+        File[] bcpFiles = BCPCopyLoader.findBCPFiles(bcpPath);
+        for (int i = 0; i < bcpFiles.length; i++) {
+            properties.setProperty(PROGRESS + "bcp." + bcpFiles[i].getName(),
+                String.valueOf(bcpFiles[i].length()));
+        }
+        save();
+    }
+
+    /**
+     * Gets a report of the checkpoint
+     * @assumes Nothing
+     * @effects Nothing
+     * @return Vector of Strings
+     * @throws Nothing
+     */
+
+    public synchronized Vector getReport() {
+        Vector v = new Vector();
+        if (properties.isEmpty()) {
+            v.add("Checkpoint " + file + " is empty");
+            return v;
+        }
+        int completed = 0;
+        for (Iterator i = properties.keySet().iterator(); i.hasNext();) {
+            if (((String)i.next()).startsWith(COMPLETED)) {
+                completed++;
+            }
+        }
+        v.add("Checkpoint " + file + ": " + completed +
+            " input files loaded");
+        String[] segment = getSegment();
+        if (segment != null) {
+            v.add("Segment in progress: " + Arrays.asList(segment));
+            v.add("Pass in progress: " + getPass() + ", " + getState());
+        }
+        Object[] keys = properties.keySet().toArray();
+        Arrays.sort(keys);
+        for (int i = 0; i < keys.length; i++) {
+            String key = (String)keys[i];
+            if (key.startsWith(PROGRESS) || key.startsWith(COPIED) ||
+                    key.startsWith(INDEX)) {
+                v.add(key + ": " + properties.getProperty(key));
+            }
+        }
+        return v;
+    }
+
+    /**
+     * Removes the properties with a key prefix
+     * @assumes Nothing
+     * @effects Nothing
+     * @param prefix the key prefix
+     * @throws Nothing
+     */
+
+    private void removeAll(String prefix) {
+        for (Iterator i = properties.keySet().iterator(); i.hasNext();) {
+            if (((String)i.next()).startsWith(prefix)) {
+                i.remove();
+            }
+        }
+    }
+
+    /**
+     * Saves the checkpoint file
+     * @assumes Nothing
+     * @effects writes a temporary file and renames it to the checkpoint
+     *          file
+     * @throws IOException if the file cannot be written or renamed
+     */
+
+    private void save() throws IOException {
+        File tmp = new File(file.getPath() + TMP_SUFFIX);
+        OutputStream out = new BufferedOutputStream(
+            new FileOutputStream(tmp));
+        try {
+            properties.store(out, "refseqload checkpoint");
+        }
+        finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            file.delete();
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Cannot rename " + tmp + " to " + file);
+            }
+        }
+    }
+}
@@ -0,0 +1,675 @@
+package org.jax.mgi.app.refseqload;
+
+import java.util.Vector;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.jax.mgi.shr.dla.log.DLALogger;
+import org.jax.mgi.shr.timing.Stopwatch;
+
+/**
+ * @is The throughput and latency metrics of a refseqload run, shared by all
+ *     threads of the load
+ * @has
+ *   <UL>
+ *   <LI>A latency histogram for each stage a record goes through; see the
+ *       stage constants
+ *   <LI>Counts of input bytes read, and of input file bytes consumed
+ *   <LI>The total size of the input files and the file being read
+ *   <LI>Counts of sequence residues counted and not retained, and of
+ *       records whose residue count is not their LOCUS length
+ *   <LI>A count of records dropped as unchanged, see RecordDigestIndex
+ *   <LI>For each seqid prefix, counts of records and bytes and the time
+ *       spent interpreting and processing them
+ *   <LI>A Stopwatch for the elapsed time of the run
+ *   </UL>
+ * @does
+ *   <UL>
+ *   <LI>Records the time of each stage of each record; recording is lock
+ *       free and may be done by any thread
+ *   <LI>Logs progress, rates and mean stage times to the diagnostic log at
+ *       a configured interval while the load runs
+ *   <LI>Provides its counts while the load runs, see RefSeqLoadStatus
+ *   <LI>Summarizes the run: records/sec, bytes/sec, count, total, mean,
+ *       percentiles and max of each stage and the cost of each prefix
+ *   </UL>
+ * @notes Histogram buckets are powers of two microseconds, so percentiles
+ *        are upper bounds within a factor of two
+ * @company The Jackson Laboratory
+ * @author sc
+ * @version 1.0
+ */
+
+public class LoadMetrics {
+
+    // the stages of a record
+    // READ - reading the record from the input, including header filtering
+    //        of the records skipped before it
+    public static final int READ = 0;
+    // ORGANISM - checking the organism of the record
+    public static final int ORGANISM = 1;
+    // PREFIX - checking the seqid prefix of the record
+    public static final int PREFIX = 2;
+    // INTERPRET - parsing the record into a SequenceInput
+    public static final int INTERPRET = 3;
+    // WAIT - the loader waiting for the next SequenceInput
+    public static final int WAIT = 4;
+    // PROCESS - the loader processing a SequenceInput i.e. DB resolution,
+    //           sequence processing and writing to BCP files
+    public static final int PROCESS = 5;
+
+    private static final String[] STAGE_NAMES = {
+        "read", "organism", "prefix", "interpret", "wait", "process"};
+
+    // number of histogram buckets; bucket 0 is under 1 microsecond, bucket
+    // i is under 2^i microseconds, the last is everything longer
+    private static final int BUCKETS = 40;
+
+    // number of two letter prefixes 'AA' through 'ZZ'
+    private static final int PREFIX_SLOTS = 26 * 26;
+
+    // the instance shared by the load
+    private static LoadMetrics instance = new LoadMetrics();
+
+    // histogram buckets, count, total and max nanoseconds of each stage
+    private AtomicLongArray[] buckets = new AtomicLongArray[STAGE_NAMES.length];
+    private AtomicLongArray counts = new AtomicLongArray(STAGE_NAMES.length);
+    private AtomicLongArray totals = new AtomicLongArray(STAGE_NAMES.length);
+    private AtomicLongArray maxes = new AtomicLongArray(STAGE_NAMES.length);
+
+    // input bytes read, after decompression
+    private AtomicLong bytes = new AtomicLong();
+
+    // bytes of the input files consumed, before decompression; the total
+    // size of the input files, -1 if unknown e.g. input is piped
+    private AtomicLong fileBytes = new AtomicLong();
+    private volatile long inputSize = -1;
+
+    // the input file being read, null if unknown
+    private volatile String currentFile = null;
+
+    // residues counted and not retained, and the records whose count does
+    // not match their LOCUS length
+    private AtomicLong skippedResidues = new AtomicLong();
+    private AtomicLong residueMismatches = new AtomicLong();
+
+    // records dropped as unchanged since they were last loaded
+    private AtomicLong unchanged = new AtomicLong();
+
+    // per prefix slot; records and bytes interpreted, nanoseconds
+    // interpreting and processing
+    private AtomicLongArray prefixRecords = new AtomicLongArray(PREFIX_SLOTS);
+    private AtomicLongArray prefixBytes = new AtomicLongArray(PREFIX_SLOTS);
+    private AtomicLongArray prefixInterpret = new AtomicLongArray(PREFIX_SLOTS);
+    private AtomicLongArray prefixProcess = new AtomicLongArray(PREFIX_SLOTS);
+
+    // elapsed time of the run
+    private Stopwatch stopwatch = new Stopwatch();
+    private long startNanos = System.nanoTime();
+
+    // logs progress at intervals, null if not started
+    private ScheduledExecutorService reporter = null;
+
+    // values at the last progress report, to report interval rates
+    private long lastReportNanos;
+    private long lastRead;
+    private long lastLoaded;
+    private long lastBytes;
+
+    /**
+     * Constructs a LoadMetrics
+     * @assumes Nothing
+     * @effects Nothing
+     * @throws Nothing
+     */
+
+    private LoadMetrics() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new AtomicLongArray(BUCKETS);
+        }
+    }
+
+    /**
+     * Gets the LoadMetrics of the load
+     * @assumes Nothing
+     * @effects Nothing
+     * @return the LoadMetrics
+     * @throws Nothing
+     */
+
+    public static LoadMetrics getInstance() {
+        return instance;
+    }
+
+    /**
+     * Gets the current time for timing a stage
+     * @assumes Nothing
+     * @effects Nothing
+     * @return the current time in nanoseconds
+     * @throws Nothing
+     */
+
+    public static long now() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Starts timing the run and, if 'interval' > 0, logging progress
+     * @assumes Nothing
+     * @effects starts a daemon thread if 'interval' > 0
+     * @param logger the logger for progress reports
+     * @param interval seconds between progress reports, 0 for none
+     * @throws Nothing
+     */
+
+    public synchronized void start(final DLALogger logger, int interval) {
+        stopwatch.reset();
+        stopwatch.start();
+        startNanos = now();
+        lastReportNanos = startNanos;
+        if (interval <= 0 || reporter != null) {
+            return;
+        }
+        reporter = Executors.newSingleThreadScheduledExecutor(
+            new ParallelRecordIterator.DaemonThreadFactory(
+                "refseqload-metrics"));
+        reporter.scheduleAtFixedRate(new Runnable() {
+            public void run() {
+                logger.logdInfo(getProgress(), false);
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Clears the stage times and the per prefix counts and times, e.g. of
+     * a warm-up before the load
+     * @assumes no thread is recording
+     * @effects Nothing
+     * @throws Nothing
+     */
+
+    public void resetStages() {
+        for (int i = 0; i < STAGE_NAMES.length; i++) {
+            for (int b = 0; b < BUCKETS; b++) {
+                buckets[i].set(b, 0);
+            }
+            counts.set(i, 0);
+            totals.set(i, 0);
+            maxes.set(i, 0);
+        }
+        for (int slot = 0; slot < PREFIX_SLOTS; slot++) {
+            prefixRecords.set(slot, 0);
+            prefixBytes.set(slot, 0);
+            prefixInterpret.set(slot, 0);
+            prefixProcess.set(slot, 0);
+        }
+    }
+
+    /**
+     * Clears all times, counts and the input size, e.g. before a further
+     * pass of the load over its repeat file
+     * @assumes no thread is recording
+     * @effects Nothing
+     * @throws Nothing
+     */
+
+    public synchronized void reset() {
+        resetStages();
+        bytes.set(0);
+        fileBytes.set(0);
+        inputSize = -1;
+        currentFile = null;
+        skippedResidues.set(0);
+        residueMismatches.set(0);
+        unchanged.set(0);
+        lastRead = 0;
+        lastLoaded = 0;
+        lastBytes = 0;
+    }
+
+    /**
+     * Stops logging progress and timing the run
+     * @assumes Nothing
+     * @effects stops the progress thread
+     * @throws Nothing
+     */
+
+    public synchronized void stop() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+        stopwatch.stop();
+    }
+
+    /**
+     * Records the time of a stage of a record
+     * @assumes Nothing
+     * @effects updates the histogram of 'stage'
+     * @param stage the stage e.g. READ
+     * @param start the time the stage started, from now()
+     * @return the time the stage ended, for timing the following stage
+     * @throws Nothing
+     */
+
+    public long record(int stage, long start) {
+        long end = now();
+        recordNanos(stage, end - start);
+        return end;
+    }
+
+    /**
+     * Records the duration of a stage of a record
+     * @assumes Nothing
+     * @effects updates the histogram of 'stage'
+     * @param stage the stage e.g. READ
+     * @param nanos the duration in nanoseconds
+     * @throws Nothing
+     */
+
+    public void recordNanos(int stage, long nanos) {
+        buckets[stage].incrementAndGet(getBucket(nanos));
+        counts.incrementAndGet(stage);
+        totals.addAndGet(stage, nanos);
+        long max;
+        while (nanos > (max = maxes.get(stage))) {
+            if (maxes.compareAndSet(stage, max, nanos)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Records the interpretation of a record with a seqid prefix
+     * @assumes Nothing
+     * @effects updates the INTERPRET histogram and the prefix counts
+     * @param slot the prefix slot, see RefSeqidPrefixChecker.getSlot; -1 if
+     *        unknown
+     * @param length length of the record
+     * @param start the time interpretation started, from now()
+     * @throws Nothing
+     */
+
+    public void recordInterpret(int slot, int length, long start) {
+        long nanos = now() - start;
+        recordNanos(INTERPRET, nanos);
+        if (slot > -1) {
+            prefixRecords.incrementAndGet(slot);
+            prefixBytes.addAndGet(slot, length);
+            prefixInterpret.addAndGet(slot, nanos);
+        }
+    }
+
+    /**
+     * Records the processing of a SequenceInput by the loader
+     * @assumes Nothing
+     * @effects updates the PROCESS histogram and the prefix counts
+     * @param slot the prefix slot of the sequence, -1 if unknown
+     * @param nanos the duration in nanoseconds
+     * @throws Nothing
+     */
+
+    public void recordProcess(int slot, long nanos) {
+        recordNanos(PROCESS, nanos);
+        if (slot > -1) {
+            prefixProcess.addAndGet(slot, nanos);
+        }
+    }
+
+    /**
+     * Adds to the count of input bytes read
+     * @assumes Nothing
+     * @effects Nothing
+     * @param n number of bytes read
+     * @throws Nothing
+     */
+
+    public void addBytes(long n) {
+        bytes.addAndGet(n);
+    }
+
+    /**
+     * Adds to the count of input file bytes consumed
+     * @assumes Nothing
+     * @effects Nothing
+     * @param n number of bytes of an input file consumed, before
+     *        decompression
+     * @throws Nothing
+     */
+
+    public void addFileBytes(long n) {
+        fileBytes.addAndGet(n);
+    }
+
+    /**
+     * Adds to the count of residues counted and not retained
+     * @assumes Nothing
+     * @effects Nothing
+     * @param n number of residues of a record
+     * @param matchesLocus false if 'n' is not the LOCUS length of the record
+     * @throws Nothing
+     */
+
+    public void addSkippedResidues(long n, boolean matchesLocus) {
+        skippedResidues.addAndGet(n);
+        if (!matchesLocus) {
+            residueMismatches.incrementAndGet();
+        }
+    }
+
+    /**
+     * Counts a record dropped as unchanged since it was last loaded
+     * @assumes Nothing
+     * @effects Nothing
+     * @throws Nothing
+     */
+
+    public void addUnchanged() {
+        unchanged.incrementAndGet();
+    }
+
+    /**
+     * Sets the total size of the input files
+     * @assumes Nothing
+     * @effects Nothing
+     * @param size total size in bytes of the input files
+     * @throws Nothing
+     */
+
+    public void setInputSize(long size) {
+        inputSize = size;
+    }
+
+    /**
+     * Sets the input file being read
+     * @assumes Nothing
+     * @effects Nothing
+     * @param fileName the input file
+     * @throws Nothing
+     */
+
+    public void setCurrentFile(String fileName) {
+        currentFile = fileName;
+    }
+
+    /**
+     * Gets the number of records timed for a stage so far e.g. ORGANISM
+     * is the number of records looked at, WAIT the number loaded
+     * @assumes Nothing
+     * @effects Nothing
+     * @param stage the stage
+     * @return the count
+     * @throws Nothing
+     */
+
+    public long getCount(int stage) {
+        return counts.get(stage);
+    }
+
+    /**
+     * Gets the number of input bytes read so far, after decompression
+     * @assumes Nothing
+     * @effects Nothing
+     * @return the number of bytes
+     * @throws Nothing
+     */
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * Gets the number of input file bytes consumed so far, before
+     * decompression
+     * @assumes Nothing
+     * @effects Nothing
+     * @return the number of bytes
+     * @throws Nothing
+     */
+
+    public long getFileBytes() {
+        return fileBytes.get();
+    }
+
+    /**
+     * Gets the number of records whose residue count is not their LOCUS
+     * length
+     * @assumes Nothing
+     * @effects Nothing
+     * @return the number of records
+     * @throws Nothing
+     */
+
+    public long getResidueMismatches() {
+        return residueMismatches.get();
+    }
+
+    /**
+     * Gets the number of records dropped as unchanged since they were last
+     * loaded
+     * @assumes Nothing
+     * @effects Nothing
+     * @return the number of records
+     * @throws Nothing
+     */
+
+    public long getUnchanged() {
+        return unchanged.get();
+    }
+
+    /**
+     * Gets the total size of the input files
+     * @assumes Nothing
+     * @effects Nothing
+     * @return the size in bytes, -1 if unknown
+     * @throws Nothing
+     */
+
+    public long getInputSize() {
+        return inputSize;
+    }
+
+    /**
+     * Gets the input file being read
+     * @assumes Nothing
+     * @effects Nothing
+     * @return the file name, null if unknown
+     * @throws Nothing
+     */
+
+    public String getCurrentFile() {
+        return currentFile;
+    }
+
+    /**
+     * Gets the seconds since the run started
+     * @assumes Nothing
+     * @effects Nothing
+     * @return the elapsed seconds
+     * @throws Nothing
+     */
+
+    public double getElapsedSeconds() {
+        return (now() - startNanos) / 1e9;
+    }
+
+    /**
+     * Estimates the seconds until all input is consumed, at the rate it
+     * has been consumed so far
+     * @assumes Nothing
+     * @effects Nothing
+     * @return the estimated seconds remaining, -1 if the input size is
+     *         unknown or no input has been consumed
+     * @throws Nothing
+     */
+
+    public double getEstimatedSecondsRemaining() {
+        long consumed = fileBytes.get();
+        if (inputSize < 0 || consumed == 0) {
+            return -1;
+        }
+        return Math.max(inputSize - consumed, 0) *
+            getElapsedSeconds() / consumed;
+    }
+
+    /**
+     * Gets a one line progress report; counts and rates since the start of
+     * the run and since the last report, and the mean time of each stage
+     * @assumes Nothing
+     * @effects resets the interval of the next report
+     * @return the progress report
+     * @throws Nothing
+     */
+
+    public synchronized String getProgress() {
+        long nanos = now();
+        long read = counts.get(ORGANISM);
+        long loaded = counts.get(WAIT);
+        long b = bytes.get();
+        double interval = (nanos - lastReportNanos) / 1e9;
+        StringBuffer s = new StringBuffer("Progress after ");
+        s.append(format((nanos - startNanos) / 1e9)).append(" sec: ");
+        s.append(read).append(" records looked at (");
+        s.append(format(rate(read - lastRead, interval))).append("/sec), ");
+        s.append(loaded).append(" loaded (");
+        s.append(format(rate(loaded - lastLoaded, interval))).append("/sec), ");
+        s.append(format(b / 1048576.0)).append(" MB read (");
+        s.append(format(rate(b - lastBytes, interval) / 1048576.0));
+        s.append(" MB/sec); mean ms:");
+        for (int i = 0; i < STAGE_NAMES.length; i++) {
+            s.append(" ").append(STAGE_NAMES[i]).append(" ");
+            s.append(format(mean(i) / 1e6));
+        }
+        lastReportNanos = nanos;
+        lastRead = read;
+        lastLoaded = loaded;
+        lastBytes = b;
+        return s.toString();
+    }
+
+    /**
+     * Gets a summary of the run
+     * @assumes stop() has been called
+     * @effects Nothing
+     * @return Vector of Strings; the totals and rates of the run, a line for
+     *         each stage and a line for each seqid prefix interpreted
+     * @throws Nothing
+     */
+
+    public Vector getSummary() {
+        Vector v = new Vector();
+        double elapsed = stopwatch.time();
+        long read = counts.get(ORGANISM);
+        long loaded = counts.get(WAIT);
+        v.add("Elapsed time: " + format(elapsed) + " sec");
+        v.add("Records looked at: " + read + " (" +
+            format(rate(read, elapsed)) + "/sec)");
+        v.add("Records loaded: " + loaded + " (" +
+            format(rate(loaded, elapsed)) + "/sec)");
+        v.add("Input read: " + format(bytes.get() / 1048576.0) + " MB (" +
+            format(rate(bytes.get(), elapsed) / 1048576.0) + " MB/sec)");
+        if (unchanged.get() > 0) {
+            v.add("Records unchanged since last loaded: " + unchanged.get());
+        }
+        if (skippedResidues.get() > 0) {
+            v.add("Residues counted and not retained: " +
+                skippedResidues.get() + " (" + residueMismatches.get() +
+                " records not matching their LOCUS length)");
+        }
+        v.add("Stage times in ms (count, total sec, mean, p50, p90, p99, " +
+            "max):");
+        for (int i = 0; i < STAGE_NAMES.length; i++) {
+            v.add("  " + STAGE_NAMES[i] + ": " + counts.get(i) + ", " +
+                format(totals.get(i) / 1e9) + ", " +
+                format(mean(i) / 1e6) + ", " +
+                format(percentile(i, 0.5) / 1e6) + ", " +
+                format(percentile(i, 0.9) / 1e6) + ", " +
+                format(percentile(i, 0.99) / 1e6) + ", " +
+                format(maxes.get(i) / 1e6));
+        }
+        v.add("Prefix cost (records, MB, mean interpret ms, " +
+            "mean process ms):");
+        for (int slot = 0; slot < PREFIX_SLOTS; slot++) {
+            long n = prefixRecords.get(slot);
+            if (n == 0) {
+                continue;
+            }
+            v.add("  " + (char)('A' + slot / 26) + (char)('A' + slot % 26) +
+                ": " + n + ", " +
+                format(prefixBytes.get(slot) / 1048576.0) + ", " +
+                format(prefixInterpret.get(slot) / 1e6 / n) + ", " +
+                format(prefixProcess.get(slot) / 1e6 / n));
+        }
+        return v;
+    }
+
+    /**
+     * Gets the mean time of a stage
+     * @assumes Nothing
+     * @effects Nothing
+     * @param stage the stage
+     * @return mean nanoseconds, 0 if the stage has no count
+     * @throws Nothing
+     */
+
+    private double mean(int stage) {
+        long n = counts.get(stage);
+        return n == 0 ? 0 : (double)totals.get(stage) / n;
+    }
+
+    /**
+     * Gets an upper bound of a percentile of the times of a stage
+     * @assumes Nothing
+     * @effects Nothing
+     * @param stage the stage
+     * @param p the percentile as a fraction e.g. 0.99
+     * @return nanoseconds; the upper bound of the histogram bucket of the
+     *         percentile, or the max if it is in the last bucket
+     * @throws Nothing
+     */
+
+    private double percentile(int stage, double p) {
+        long n = counts.get(stage);
+        if (n == 0) {
+            return 0;
+        }
+        long target = (long)Math.ceil(n * p);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS - 1; i++) {
+            seen += buckets[stage].get(i);
+            if (seen >= target) {
+                return Math.min((1L << i) * 1000.0, maxes.get(stage));
+            }
+        }
+        return maxes.get(stage);
+    }
+
+    /**
+     * Gets the histogram bucket of a duration
+     * @assumes Nothing
+     * @effects Nothing
+     * @param nanos the duration
+     * @return the bucket; 0 if under 1 microsecond, else 1 + log2 of the
+     *         microseconds
+     * @throws Nothing
+     */
+
+    private static int getBucket(long nanos) {
+        long micros = nanos / 1000;
+        if (micros <= 0) {
+            return 0;
+        }
+        return Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKETS - 1);
+    }
+
+    private static double rate(double n, double seconds) {
+        return seconds > 0 ? n / seconds : 0;
+    }
+
+    private static String format(double d) {
+        return String.valueOf(Math.round(d * 1000) / 1000.0);
+    }
+}
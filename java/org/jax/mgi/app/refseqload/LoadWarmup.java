@@ -0,0 +1,90 @@
+package org.jax.mgi.app.refseqload;
+
+import java.io.File;
+
+import org.jax.mgi.shr.dla.input.genbank.GBOrganismChecker;
+import org.jax.mgi.shr.exception.MGIException;
+
+/**
+ * @is The warm-up stage of a refseqload, run before the first record is
+ *     read
+ * @has
+ *   <UL>
+ *   <LI>An assumed compression ratio of gzip compressed flat files
+ *   <LI>A GBRecordFactory for synthetic sample records
+ *   </UL>
+ * @does
+ *   <UL>
+ *   <LI>Estimates the number of records of the input from the sizes of the
+ *       input files, so caches can be sized before the load
+ *   <LI>Warms the JIT compiled code of record interpretation by checking
+ *       and interpreting synthetic records with a throwaway
+ *       RefSequenceInterpreter, then clears the stage times it recorded
+ *   </UL>
+ * @notes The warm-up interpreter has its own organism and prefix checkers,
+ *        so the counts reported by the load are not affected
+ * @company The Jackson Laboratory
+ * @author sc
+ * @version 1.0
+ */
+
+public class LoadWarmup {
+
+    // assumed ratio of the uncompressed to compressed size of a flat file
+    private static final int GZIP_RATIO = 5;
+
+    // the suffix of gzip compressed files
+    private static final String GZIP_SUFFIX = ".gz";
+
+    // sequence length of a sample record
+    private static final int SAMPLE_LENGTH = 2000;
+
+    /**
+     * Estimates the number of records of input files
+     * @assumes Nothing
+     * @effects Nothing
+     * @param files the input files
+     * @param meanRecordBytes mean uncompressed size in bytes of a record
+     * @return the estimated number of records, at most Integer.MAX_VALUE
+     * @throws Nothing
+     */
+
+    public static int estimateRecords(String[] files, int meanRecordBytes) {
+        long bytes = 0;
+        for (int i = 0; i < files.length; i++) {
+            long size = new File(files[i]).length();
+            bytes += files[i].endsWith(GZIP_SUFFIX) ? size * GZIP_RATIO : size;
+        }
+        return (int)Math.min(bytes / Math.max(meanRecordBytes, 1),
+            Integer.MAX_VALUE);
+    }
+
+    /**
+     * Checks and interprets synthetic records of each prefix we load
+     * @assumes no other thread is recording LoadMetrics stage times
+     * @effects clears the LoadMetrics stage times
+     * @param records number of records to interpret
+     * @return the number of records interpreted
+     * @throws MGIException if error creating the interpreter or a sample
+     *         record cannot be interpreted
+     */
+
+    public static int warmInterpreter(int records) throws MGIException {
+        RefSeqidPrefixChecker pc = new RefSeqidPrefixChecker();
+        RefSequenceInterpreter interp = new RefSequenceInterpreter(
+            new GBOrganismChecker(), pc);
+        String[] prefixes = pc.getRegistry().getEnabledPrefixes();
+        GBRecordFactory factory = new GBRecordFactory();
+        int interpreted = 0;
+        for (int i = 0; i < records && prefixes.length > 0; i++) {
+            String rcd = factory.createRecord(prefixes[i % prefixes.length],
+                i, SAMPLE_LENGTH);
+            if (interp.isValid(rcd)) {
+                interp.interpret(rcd);
+                interpreted++;
+            }
+        }
+        LoadMetrics.getInstance().resetStages();
+        return interpreted;
+    }
+}
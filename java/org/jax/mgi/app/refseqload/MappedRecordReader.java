@@ -0,0 +1,332 @@
+package org.jax.mgi.app.refseqload;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.jax.mgi.shr.ioutils.RecordDataInterpreter;
+
+/**
+ * @is A RecordSource that splits an uncompressed local file of GenBank
+ *     format sequence records by memory mapping it, and filters records on
+ *     their header
+ * @has
+ *   <UL>
+ *   <LI>A FileChannel and a mapped window of the file
+ *   <LI>A RecordDataInterpreter whose isValid method is applied to the
+ *       header of each record, see GBRecordReader
+ *   </UL>
+ * @does
+ *   <UL>
+ *   <LI>Locates record headers and '//' terminators directly in the mapped
+ *       window; moves or grows the window when a record does not fit
+ *   <LI>Copies a valid record once, from the mapped window to its String
+ *   <LI>Never copies an invalid record; only its header becomes a String
+ *   <LI>Optionally counts the residues of a valid record in the mapped
+ *       window and copies the record without them, see GBRecordReader
+ *   </UL>
+ * @notes Files larger than the window, e.g. multi-gigabyte contig files,
+ *        are mapped a window at a time
+ * @company The Jackson Laboratory
+ * @author sc
+ * @version 1.0
+ */
+
+public class MappedRecordReader implements RecordSource {
+
+    // GenBank keywords which end the header of a record
+    private static final byte[] FEATURES = "FEATURES".getBytes();
+    private static final byte[] ORIGIN = "ORIGIN".getBytes();
+
+    // the largest window that can be mapped
+    private static final long MAX_WINDOW = Integer.MAX_VALUE;
+
+    // the input file
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private long fileSize;
+
+    // the mapped window, its offset in the file and its usual size
+    private ByteBuffer window = null;
+    private long windowStart = 0;
+    private long windowSize;
+
+    // offset in the window of the next unread byte
+    private int pos = 0;
+
+    // determines if a record header is valid, null if all records are valid
+    private RecordDataInterpreter filter;
+
+    // true if the residues of valid records are counted, not retained
+    private boolean skipResidues;
+
+    // counts bytes read
+    private LoadMetrics metrics = LoadMetrics.getInstance();
+
+    /**
+     * Constructs a MappedRecordReader
+     * @assumes 'fileName' is an uncompressed local file
+     * @effects opens the file
+     * @param fileName the input file
+     * @param windowSize size in bytes of the mapped window
+     * @param filter determines if a record is valid from its header, null
+     *        if all records are valid
+     * @param skipResidues true if the ORIGIN residues of valid records are
+     *        counted and not returned
+     * @throws IOException if the file cannot be opened
+     */
+
+    public MappedRecordReader(String fileName, int windowSize,
+                              RecordDataInterpreter filter,
+                              boolean skipResidues)
+        throws IOException {
+        this.file = new RandomAccessFile(fileName, "r");
+        this.channel = file.getChannel();
+        this.fileSize = channel.size();
+        this.windowSize = Math.max(windowSize, 64 * 1024);
+        this.filter = filter;
+        this.skipResidues = skipResidues;
+    }
+
+    /**
+     * Gets the next sequence record whose header is valid
+     * @assumes Nothing
+     * @effects maps windows of the file
+     * @return the text of the next valid record, null at end of file
+     * @throws IOException if error mapping the file
+     */
+
+    public String nextRecord() throws IOException {
+        while (true) {
+            if (window == null) {
+                map(0, windowSize);
+            }
+            // skip blank lines between records
+            int start = pos;
+            while (true) {
+                int eol = lineEnd(start);
+                if (eol < 0 || !isBlank(start, eol)) {
+                    break;
+                }
+                start = eol;
+            }
+            if (windowStart + start >= fileSize) {
+                return null;
+            }
+
+            // find the end of the header, of the ORIGIN line and of the
+            // record in the window
+            int headerEnd = -1;
+            int originEnd = -1;
+            int recordEnd = -1;
+            int lineStart = start;
+            while (true) {
+                int eol = lineEnd(lineStart);
+                if (eol < 0) {
+                    break;
+                }
+                if (isEndLine(lineStart, eol)) {
+                    recordEnd = eol;
+                    if (headerEnd < 0) {
+                        headerEnd = eol;
+                    }
+                    break;
+                }
+                if (originEnd < 0 && startsWith(lineStart, eol, ORIGIN)) {
+                    originEnd = eol;
+                    if (headerEnd < 0) {
+                        headerEnd = eol;
+                    }
+                }
+                else if (headerEnd < 0 &&
+                         startsWith(lineStart, eol, FEATURES)) {
+                    headerEnd = eol;
+                }
+                lineStart = eol;
+            }
+
+            if (recordEnd < 0) {
+                if (windowStart + window.limit() < fileSize) {
+                    // the record does not fit, map a window starting at the
+                    // record and large enough for it
+                    long size = windowSize;
+                    if (start == 0) {
+                        size = Math.min(window.limit() * 2L, MAX_WINDOW);
+                        if (size == window.limit()) {
+                            throw new IOException("Record at offset " +
+                                windowStart + " is larger than " +
+                                MAX_WINDOW + " bytes");
+                        }
+                    }
+                    map(windowStart + start, size);
+                    continue;
+                }
+                // unterminated record at end of file
+                recordEnd = window.limit();
+                lineStart = recordEnd;
+                if (headerEnd < 0) {
+                    headerEnd = recordEnd;
+                }
+            }
+
+            metrics.addBytes(recordEnd - pos);
+            metrics.addFileBytes(recordEnd - pos);
+            pos = recordEnd;
+            String header = toString(start, headerEnd);
+            if (filter == null || filter.isValid(header)) {
+                if (skipResidues && originEnd > -1) {
+                    // 'lineStart' is the offset of the terminator
+                    long residues = countResidues(originEnd, lineStart);
+                    metrics.addSkippedResidues(residues,
+                        GBRecordReader.isLocusLength(header, residues));
+                    String s = toString(start, originEnd);
+                    return lineStart == recordEnd ? s :
+                        s + GBRecordReader.END_LINE;
+                }
+                return headerEnd == recordEnd ? header :
+                    toString(start, recordEnd);
+            }
+        }
+    }
+
+    /**
+     * Closes the file
+     * @assumes Nothing
+     * @effects closes the file
+     * @throws IOException if error closing the file
+     */
+
+    public void close() throws IOException {
+        window = null;
+        file.close();
+    }
+
+    /**
+     * Maps a window of the file
+     * @assumes Nothing
+     * @effects replaces the mapped window
+     * @param start offset in the file of the window
+     * @param size size in bytes of the window, less at end of file
+     * @throws IOException if error mapping the file
+     */
+
+    private void map(long start, long size) throws IOException {
+        size = Math.min(Math.min(size, MAX_WINDOW), fileSize - start);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        windowStart = start;
+        pos = 0;
+    }
+
+    /**
+     * Finds the end of the line starting at an offset in the window
+     * @assumes Nothing
+     * @effects Nothing
+     * @param start offset in the window of a line
+     * @return offset after the newline ending the line, or the end of the
+     *         window if it is the end of the file; -1 if the line does not
+     *         end in the window
+     * @throws Nothing
+     */
+
+    private int lineEnd(int start) {
+        int limit = window.limit();
+        for (int i = start; i < limit; i++) {
+            if (window.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        if (start < limit && windowStart + limit == fileSize) {
+            return limit;
+        }
+        return -1;
+    }
+
+    /**
+     * Counts the residues in a range of the window
+     * @assumes Nothing
+     * @effects Nothing
+     * @param start offset in the window
+     * @param end offset in the window after the range
+     * @return the number of letters in the range
+     * @throws Nothing
+     */
+
+    private long countResidues(int start, int end) {
+        long n = 0;
+        for (int i = start; i < end; i++) {
+            if (GBRecordReader.isResidue(window.get(i))) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Copies a range of the window to a String
+     * @assumes Nothing
+     * @effects Nothing
+     * @param start offset in the window
+     * @param end offset in the window after the range
+     * @return the String
+     * @throws Nothing
+     */
+
+    private String toString(int start, int end) {
+        byte[] b = new byte[end - start];
+        ByteBuffer slice = window.duplicate();
+        slice.position(start);
+        slice.get(b);
+        return new String(b, GBRecordReader.CHARSET);
+    }
+
+    /**
+     * Determines if a range of the window is whitespace only
+     * @assumes Nothing
+     * @effects Nothing
+     * @return true if all bytes from 'start' to 'end' are whitespace
+     * @throws Nothing
+     */
+
+    private boolean isBlank(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (window.get(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines if a line in the window is a record terminator
+     * @assumes Nothing
+     * @effects Nothing
+     * @return true if the line starts with '//'
+     * @throws Nothing
+     */
+
+    private boolean isEndLine(int start, int end) {
+        return end - start >= 2 &&
+            window.get(start) == '/' && window.get(start + 1) == '/';
+    }
+
+    /**
+     * Determines if a line in the window starts with a keyword
+     * @assumes Nothing
+     * @effects Nothing
+     * @return true if the line starts with 'keyword'
+     * @throws Nothing
+     */
+
+    private boolean startsWith(int start, int end, byte[] keyword) {
+        if (end - start < keyword.length) {
+            return false;
+        }
+        for (int i = 0; i < keyword.length; i++) {
+            if (window.get(start + i) != keyword[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
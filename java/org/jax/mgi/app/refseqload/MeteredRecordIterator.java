@@ -0,0 +1,162 @@
+package org.jax.mgi.app.refseqload;
+
+import org.jax.mgi.shr.dla.input.SequenceInput;
+import org.jax.mgi.shr.ioutils.IOUException;
+import org.jax.mgi.shr.ioutils.RecordDataIterator;
+import org.jax.mgi.shr.ioutils.RecordFormatException;
+
+/**
+ * @is A RecordDataIterator which times the loader's use of another
+ *     RecordDataIterator of SequenceInput objects
+ * @has
+ *   <UL>
+ *   <LI>The RecordDataIterator it wraps
+ *   <LI>The LoadMetrics of the load
+ *   <LI>Optionally a RecordDigestIndex
+ *   </UL>
+ * @does
+ *   <UL>
+ *   <LI>Records the time the loader waits in hasNext and next for each
+ *       SequenceInput as the WAIT stage
+ *   <LI>Records the time between getting a SequenceInput and asking for the
+ *       next as the PROCESS stage of that sequence's seqid prefix i.e. the
+ *       time the loader spends processing it
+ *   <LI>Accepts the pending digest of each SequenceInput the loader takes
+ *       in the RecordDigestIndex, if set, so only the records the loader
+ *       took are indexed
+ *   </UL>
+ * @company The Jackson Laboratory
+ * @author sc
+ * @version 1.0
+ */
+
+public class MeteredRecordIterator implements RecordDataIterator {
+
+    // the iterator being timed
+    private RecordDataIterator iterator;
+
+    // the metrics of the load
+    private LoadMetrics metrics = LoadMetrics.getInstance();
+
+    // time the loader started waiting, 0 if not waiting
+    private long waitStart = 0;
+
+    // time the last SequenceInput was returned and its prefix slot, 0 if
+    // none has been returned
+    private long lastReturned = 0;
+    private int lastSlot = -1;
+
+    // digests of the records loaded, null if not indexed
+    private RecordDigestIndex digestIndex = null;
+
+    /**
+     * Constructs a MeteredRecordIterator
+     * @assumes Nothing
+     * @effects Nothing
+     * @param iterator the iterator to time, null if set later
+     * @throws Nothing
+     */
+
+    public MeteredRecordIterator(RecordDataIterator iterator) {
+        this.iterator = iterator;
+    }
+
+    /**
+     * Sets the iterator to time
+     * @assumes no record has been asked for
+     * @effects Nothing
+     * @param iterator the iterator to time
+     * @throws Nothing
+     */
+
+    public void setIterator(RecordDataIterator iterator) {
+        this.iterator = iterator;
+    }
+
+    /**
+     * Sets the index of the digests of the records loaded
+     * @assumes Nothing
+     * @effects Nothing
+     * @param index the index, null for none
+     * @throws Nothing
+     */
+
+    public void setDigestIndex(RecordDigestIndex index) {
+        this.digestIndex = index;
+    }
+
+    /**
+     * Determines if there is another record
+     * @assumes Nothing
+     * @effects ends the PROCESS stage of the last sequence
+     * @return true if there is another record
+     * @throws Nothing
+     */
+
+    public boolean hasNext() {
+        startWaiting();
+        return iterator.hasNext();
+    }
+
+    /**
+     * Gets the next record
+     * @assumes Nothing
+     * @effects ends the PROCESS stage of the last sequence
+     * @return the next record
+     * @throws RecordFormatException if the record could not be interpreted
+     * @throws IOUException if error reading the record
+     */
+
+    public Object next() throws RecordFormatException, IOUException {
+        startWaiting();
+        Object result = null;
+        try {
+            result = iterator.next();
+        }
+        finally {
+            lastReturned = metrics.record(LoadMetrics.WAIT, waitStart);
+            waitStart = 0;
+            lastSlot = -1;
+            if (result instanceof SequenceInput) {
+                String accID = ((SequenceInput)result).getPrimaryAcc().
+                    getAccID();
+                lastSlot = RefSeqidPrefixChecker.getSlot(accID, 0);
+                if (digestIndex != null) {
+                    digestIndex.accept(accID);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Closes the iterator
+     * @assumes Nothing
+     * @effects closes the wrapped iterator
+     * @throws IOUException if error closing the wrapped iterator
+     */
+
+    public void close() throws IOUException {
+        startWaiting();
+        iterator.close();
+    }
+
+    /**
+     * Ends the PROCESS stage of the last sequence returned, if any, and
+     * starts the WAIT stage of the next
+     * @assumes Nothing
+     * @effects Nothing
+     * @throws Nothing
+     */
+
+    private void startWaiting() {
+        if (waitStart != 0) {
+            return;
+        }
+        waitStart = LoadMetrics.now();
+        if (lastReturned != 0) {
+            metrics.recordProcess(lastSlot, waitStart - lastReturned);
+            lastReturned = 0;
+        }
+    }
+}
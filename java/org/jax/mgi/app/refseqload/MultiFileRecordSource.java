@@ -0,0 +1,404 @@
+package org.jax.mgi.app.refseqload;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+import org.jax.mgi.shr.ioutils.RecordDataInterpreter;
+
+/**
+ * @is A RecordSource over a list of GenBank format input files, which may
+ *     be gzip compressed
+ * @has
+ *   <UL>
+ *   <LI>A list of input files
+ *   <LI>A GBRecordReader for each file, with a shared header filter
+ *   <LI>Optionally a pool of reader threads and queues of records read
+ *   </UL>
+ * @does
+ *   <UL>
+ *   <LI>Decompresses files whose name ends with '.gz'
+ *   <LI>Reports the total size of the files, the bytes of them consumed and
+ *       the file being read to LoadMetrics
+ *   <LI>Optionally memory maps uncompressed files, see MappedRecordReader
+ *   <LI>With one reader thread, reads the files in turn on the caller's
+ *       thread
+ *   <LI>With more than one reader thread, reads, decompresses and splits
+ *       several files at once. If ordered, records are returned in file
+ *       order as for one thread, otherwise as they are read
+ *   </UL>
+ * @notes The header filter is called by one reader thread at a time; it
+ *        need not be thread safe
+ * @company The Jackson Laboratory
+ * @author sc
+ * @version 1.0
+ */
+
+public class MultiFileRecordSource implements RecordSource {
+
+    // compressed file name suffix
+    private static final String GZIP_SUFFIX = ".gz";
+
+    // queued after the last record of a file; compared by identity
+    private static final String END_OF_FILE = new String("END_OF_FILE");
+
+    // the input files
+    private String[] files;
+
+    // input buffer size in bytes for each file
+    private int bufferSize;
+
+    // size in bytes of the mapped window of uncompressed files, 0 if files
+    // are not memory mapped
+    private int mapWindowSize;
+
+    // true if the residues of valid records are counted, not retained
+    private boolean skipResidues;
+
+    // determines if a record is valid from its header
+    private RecordDataInterpreter filter;
+
+    // index of the file being read, or being returned from a queue
+    private int fileIndex = 0;
+
+    // reader of the current file when reading on the caller's thread
+    private RecordSource current = null;
+
+    // reader threads, null when reading on the caller's thread
+    private ExecutorService readers = null;
+
+    // one record queue per file if ordered, else a single shared queue
+    private BlockingQueue[] queues;
+
+    // number of files completely returned from the shared queue
+    private int filesDone = 0;
+
+    // first error from a reader thread
+    private volatile IOException failure = null;
+
+    // counts input file bytes consumed and reports the current file
+    private static LoadMetrics metrics = LoadMetrics.getInstance();
+
+    /**
+     * Constructs a MultiFileRecordSource
+     * @assumes Nothing
+     * @effects starts the reader threads if 'threads' > 1
+     * @param files the input files
+     * @param bufferSize input buffer size in bytes for each file
+     * @param filter determines if a record is valid from its header, null if
+     *        all records are valid
+     * @param threads number of files read at once
+     * @param queueSize max number of records queued for each file
+     * @param ordered true to return records in file order
+     * @param mapWindowSize size in bytes of the mapped window of uncompressed
+     *        files, 0 to read them as streams
+     * @param skipResidues true if the ORIGIN residues of valid records are
+     *        counted and not returned
+     * @throws Nothing
+     */
+
+    public MultiFileRecordSource(String[] files, int bufferSize,
+                                 RecordDataInterpreter filter, int threads,
+                                 int queueSize, boolean ordered,
+                                 int mapWindowSize, boolean skipResidues) {
+        this.files = files;
+        this.bufferSize = bufferSize;
+        this.mapWindowSize = mapWindowSize;
+        this.skipResidues = skipResidues;
+        this.filter = filter == null ? null : new SynchronizedFilter(filter);
+        long size = 0;
+        for (int i = 0; i < files.length; i++) {
+            size += new File(files[i]).length();
+        }
+        metrics.setInputSize(size);
+        if (threads <= 1 || files.length <= 1) {
+            return;
+        }
+        if (ordered) {
+            queues = new BlockingQueue[files.length];
+            for (int i = 0; i < files.length; i++) {
+                queues[i] = new ArrayBlockingQueue(queueSize);
+            }
+        }
+        else {
+            queues = new BlockingQueue[] {new ArrayBlockingQueue(queueSize)};
+        }
+        if (ordered) {
+            metrics.setCurrentFile(files[0]);
+        }
+        readers = Executors.newFixedThreadPool(Math.min(threads, files.length),
+            new ParallelRecordIterator.DaemonThreadFactory("refseqload-input"));
+        // files are submitted in order, so with ordered queues the file
+        // being returned is always being read
+        for (int i = 0; i < files.length; i++) {
+            readers.execute(new FileReader(i,
+                ordered ? queues[i] : queues[0]));
+        }
+    }
+
+    /**
+     * Opens an input file, decompressing it if its name ends with '.gz'.
+     * Bytes of the file are counted as they are consumed, see LoadMetrics
+     * @assumes Nothing
+     * @effects opens a file
+     * @param fileName the file name
+     * @param bufferSize buffer size in bytes for decompression
+     * @return the (decompressed) input
+     * @throws IOException if the file cannot be opened
+     */
+
+    public static InputStream open(String fileName, int bufferSize)
+        throws IOException {
+        InputStream in = new CountingInputStream(
+            new FileInputStream(fileName));
+        if (fileName.endsWith(GZIP_SUFFIX)) {
+            in = new GZIPInputStream(new BufferedInputStream(in, 64 * 1024),
+                64 * 1024);
+        }
+        return in;
+    }
+
+    /**
+     * Opens a reader for an input file; memory maps it if configured to and
+     * it is not compressed
+     * @assumes Nothing
+     * @effects opens a file
+     * @param fileName the file name
+     * @return the reader
+     * @throws IOException if the file cannot be opened
+     */
+
+    private RecordSource openReader(String fileName) throws IOException {
+        if (mapWindowSize > 0 && !fileName.endsWith(GZIP_SUFFIX)) {
+            return new MappedRecordReader(fileName, mapWindowSize, filter,
+                skipResidues);
+        }
+        return new GBRecordReader(open(fileName, bufferSize), bufferSize,
+            filter, skipResidues);
+    }
+
+    /**
+     * Gets the next valid sequence record
+     * @assumes Nothing
+     * @effects reads from the input files
+     * @return the text of the next valid record, null after the last file
+     * @throws IOException if error reading an input file
+     */
+
+    public String nextRecord() throws IOException {
+        if (readers == null) {
+            return nextRecordInTurn();
+        }
+        while (true) {
+            if (fileIndex == files.length || filesDone == files.length) {
+                return null;
+            }
+            BlockingQueue q = queues.length == 1 ? queues[0] :
+                queues[fileIndex];
+            String rcd;
+            try {
+                rcd = (String)q.take();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted reading input files");
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            if (rcd != END_OF_FILE) {
+                return rcd;
+            }
+            if (queues.length == 1) {
+                filesDone++;
+            }
+            else {
+                queues[fileIndex++] = null;
+                if (fileIndex < files.length) {
+                    metrics.setCurrentFile(files[fileIndex]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops the reader threads and closes the current file
+     * @assumes Nothing
+     * @effects closes input files
+     * @throws IOException if error closing a file
+     */
+
+    public void close() throws IOException {
+        if (readers != null) {
+            readers.shutdownNow();
+        }
+        if (current != null) {
+            current.close();
+            current = null;
+        }
+    }
+
+    /**
+     * Gets the next valid record reading the files in turn on the caller's
+     * thread
+     * @assumes Nothing
+     * @effects opens and closes input files
+     * @return the text of the next valid record, null after the last file
+     * @throws IOException if error reading an input file
+     */
+
+    private String nextRecordInTurn() throws IOException {
+        while (true) {
+            if (current == null) {
+                if (fileIndex == files.length) {
+                    return null;
+                }
+                current = openReader(files[fileIndex]);
+                metrics.setCurrentFile(files[fileIndex]);
+            }
+            String rcd = current.nextRecord();
+            if (rcd != null) {
+                return rcd;
+            }
+            current.close();
+            current = null;
+            fileIndex++;
+        }
+    }
+
+    /**
+     * @is the Runnable of a reader thread for one input file
+     * @has the index of the file and the queue for its records
+     * @does reads the valid records of the file into the queue followed by
+     *       END_OF_FILE. On any error sets the failure and queues
+     *       END_OF_FILE
+     * @company The Jackson Laboratory
+     * @author sc
+     * @version 1.0
+     */
+
+    private class FileReader implements Runnable {
+        private int index;
+        private BlockingQueue queue;
+
+        private FileReader(int index, BlockingQueue queue) {
+            this.index = index;
+            this.queue = queue;
+        }
+
+        public void run() {
+            RecordSource reader = null;
+            try {
+                reader = openReader(files[index]);
+                if (queues.length == 1) {
+                    // unordered, report the file opened last
+                    metrics.setCurrentFile(files[index]);
+                }
+                String rcd;
+                while ((rcd = reader.nextRecord()) != null) {
+                    queue.put(rcd);
+                }
+                queue.put(END_OF_FILE);
+            }
+            catch (InterruptedException e) {
+                // closed
+            }
+            catch (Throwable t) {
+                // any error of the reader or filter, e.g. an
+                // OutOfMemoryError, fails nextRecord
+                if (failure == null) {
+                    failure = new IOException("Error reading " +
+                        files[index] + ": " + (t instanceof IOException ?
+                        t.getMessage() : t.toString()), t);
+                }
+                try {
+                    queue.put(END_OF_FILE);
+                }
+                catch (InterruptedException e) {
+                    // closed
+                }
+            }
+            finally {
+                if (reader != null) {
+                    try {
+                        reader.close();
+                    }
+                    catch (IOException e) {
+                        // nothing more to read
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @is an InputStream which counts the bytes read from another
+     * @has an InputStream
+     * @does adds the bytes read to the input file bytes of LoadMetrics
+     * @company The Jackson Laboratory
+     * @author sc
+     * @version 1.0
+     */
+
+    private static class CountingInputStream extends FilterInputStream {
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        public int read() throws IOException {
+            int b = in.read();
+            if (b > -1) {
+                metrics.addFileBytes(1);
+            }
+            return b;
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) {
+                metrics.addFileBytes(n);
+            }
+            return n;
+        }
+
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(n);
+            metrics.addFileBytes(skipped);
+            return skipped;
+        }
+    }
+
+    /**
+     * @is a header filter which lets one reader thread at a time call the
+     *     filter it wraps
+     * @has a RecordDataInterpreter
+     * @does synchronizes isValid, GBOrganismChecker is not thread safe
+     * @company The Jackson Laboratory
+     * @author sc
+     * @version 1.0
+     */
+
+    private static class SynchronizedFilter implements RecordDataInterpreter {
+        private RecordDataInterpreter filter;
+
+        private SynchronizedFilter(RecordDataInterpreter filter) {
+            this.filter = filter;
+        }
+
+        public synchronized boolean isValid(String header) {
+            return filter.isValid(header);
+        }
+
+        public Object interpret(String rcd) {
+            return rcd;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.jax.mgi.app.refseqload;
+
+import org.jax.mgi.shr.dla.input.genbank.GBFormatInterpreter;
+import org.jax.mgi.shr.dla.input.genbank.GBOrganismChecker;
+import org.jax.mgi.shr.config.ConfigException;
+import org.jax.mgi.shr.ioutils.RecordFormatException;
+
+    /**
+     * @is An object that determines if a GenBank sequence record is for an
+     *     organism we want to load and passes the record on uninterpreted
+     * @has
+     *   <UL>
+     *   <LI>A GBOrganismChecker, see superclass
+     *   </UL>
+     * @does
+     *   <UL>
+     *   <LI>Determines if a GenBank sequence record is for an organism we
+     *       want to load
+     *   <LI>Returns the record text as is, so it may be interpreted later
+     *       e.g. on another thread by a RefSequenceInterpreter
+     *   </UL>
+     * @company The Jackson Laboratory
+     * @author sc
+     * @version 1.0
+     */
+
+public class OrganismRecordFilter extends GBFormatInterpreter {
+
+        // times organism checks
+        private LoadMetrics metrics = LoadMetrics.getInstance();
+
+        public OrganismRecordFilter(GBOrganismChecker oc)
+            throws ConfigException {
+            super(oc);
+        }
+
+        /**
+         * Returns the sequence record uninterpreted
+         * @assumes Nothing
+         * @effects Nothing
+         * @param rcd A sequence record
+         * @return 'rcd'
+         * @throws Nothing
+         */
+        public Object interpret(String rcd) throws RecordFormatException {
+            return rcd;
+        }
+
+        /**
+         * Determines whether this sequence is for an organism we want to load
+         * @assumes Nothing
+         * @effects Nothing
+         * @param record A GenBank sequence record
+         * @return true if this sequence is for an organism we want to load
+         * @throws Nothing
+         */
+
+        public boolean isValid(String record) {
+            long start = LoadMetrics.now();
+            boolean isValid = super.isValid(record);
+            metrics.record(LoadMetrics.ORGANISM, start);
+            return isValid;
+        }
+    }
@@ -0,0 +1,359 @@
+package org.jax.mgi.app.refseqload;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+import org.jax.mgi.shr.dla.input.genbank.GBOrganismChecker;
+import org.jax.mgi.shr.config.ConfigException;
+import org.jax.mgi.shr.ioutils.RecordDataIterator;
+import org.jax.mgi.shr.ioutils.RecordFormatException;
+
+/**
+ * @is A RecordDataIterator that checks seqid prefixes and interprets
+ *     GenBank sequence records on a pool of worker threads
+ * @has
+ *   <UL>
+ *   <LI>A RecordDataIterator over uninterpreted sequence records; record
+ *       splitting and organism checking stay on a single reader thread
+ *   <LI>A pool of worker threads and one RefSequenceInterpreter per worker
+ *   <LI>A RefSeqidPrefixChecker shared by the interpreters
+ *   <LI>A bounded queue of pending results in input order
+ *   </UL>
+ * @does
+ *   <UL>
+ *   <LI>Reads records on a reader thread and hands each to a worker which
+ *       checks its seqid prefix, unless already checked, and interprets it
+ *   <LI>Returns SequenceInput objects in the order their records were read,
+ *       skipping records with a seqid prefix we don't load
+ *   <LI>Rethrows a RecordFormatException from next() for the record it
+ *       belongs to, so the loader handles it as for sequential processing
+ *   <LI>Rethrows any other error of the reader or a worker from next() as a
+ *       RuntimeException, after stopping its threads, so the load fails
+ *   <LI>Stops its worker threads at the end of input
+ *   </UL>
+ * @notes With one worker it pipelines interpretation with the loader
+ *        thread, which processes sequences and writes BCP files; the
+ *        bounded pending queue holds back the reader when the loader falls
+ *        behind
+ * @company The Jackson Laboratory
+ * @author sc
+ * @version 1.0
+ */
+
+public class ParallelRecordIterator implements RecordDataIterator {
+
+    // result of a record with a seqid prefix we don't load
+    private static final Object REJECTED = new Object();
+
+    // result which marks the end of input
+    private static final Object END_OF_INPUT = new Object();
+
+    // uninterpreted sequence records
+    private RecordDataIterator records;
+
+    // true if workers check seqid prefixes
+    private boolean checkPrefixes;
+
+    // interpreters not in use by a worker
+    private BlockingQueue interpreters;
+
+    // the worker threads
+    private ExecutorService workers;
+
+    // results of records in input order; its capacity bounds the number of
+    // records read ahead of the loader
+    private BlockingQueue pending;
+
+    // reads records and submits them to the workers
+    private Thread reader;
+
+    // the next result to return from next(), null if not yet taken from
+    // 'pending'
+    private Object nextResult = null;
+
+    // set when this iterator is closed
+    private volatile boolean closed = false;
+
+    /**
+     * Constructs a ParallelRecordIterator and starts reading records
+     * @assumes 'records' returns uninterpreted records as Strings and has
+     *          already checked their organism, and their seqid prefix if
+     *          'checkPrefixes' is false
+     * @effects starts a reader thread and 'threads' worker threads
+     * @param records an iterator over uninterpreted sequence records
+     * @param oc the organism checker for the interpreters
+     * @param pc the prefix checker shared by all workers
+     * @param index the digests of the records last loaded, shared by all
+     *        workers; null to accept unchanged records
+     * @param interner the intern table shared by all workers, null to not
+     *        intern fields
+     * @param threads number of worker threads
+     * @param queueSize max number of records read ahead of the loader
+     * @param checkPrefixes true if workers check seqid prefixes
+     * @throws ConfigException if error creating an interpreter
+     */
+
+    public ParallelRecordIterator(RecordDataIterator records,
+                                  GBOrganismChecker oc,
+                                  RefSeqidPrefixChecker pc,
+                                  RecordDigestIndex index,
+                                  FieldInterner interner, int threads,
+                                  int queueSize,
+                                  boolean checkPrefixes)
+        throws ConfigException {
+        this.records = records;
+        this.checkPrefixes = checkPrefixes;
+
+        // one interpreter per worker, interpreters are not thread safe
+        interpreters = new ArrayBlockingQueue(threads);
+        for (int i = 0; i < threads; i++) {
+            interpreters.add(new RefSequenceInterpreter(oc, pc, index,
+                interner));
+        }
+        workers = Executors.newFixedThreadPool(threads,
+            new DaemonThreadFactory("refseqload-worker"));
+        pending = new ArrayBlockingQueue(queueSize);
+
+        reader = new DaemonThreadFactory("refseqload-reader").newThread(
+            new Reader());
+        reader.start();
+    }
+
+    /**
+     * Determines if there is another sequence to return
+     * @assumes Nothing
+     * @effects waits for the result of the next record
+     * @return true if there is another sequence or error to return
+     * @throws Nothing
+     */
+
+    public boolean hasNext() {
+        if (nextResult == null) {
+            nextResult = takeNextResult();
+            if (nextResult == END_OF_INPUT) {
+                workers.shutdown();
+            }
+        }
+        return nextResult != END_OF_INPUT;
+    }
+
+    /**
+     * Gets the next interpreted sequence record
+     * @assumes Nothing
+     * @effects waits for the result of the next record
+     * @return the SequenceInput for the next record
+     * @throws RecordFormatException if the next record could not be
+     *         interpreted
+     * @throws RuntimeException if error reading or interpreting records;
+     *         the iterator is closed
+     */
+
+    public Object next() throws RecordFormatException {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Object result = nextResult;
+        nextResult = null;
+        if (result instanceof Failure) {
+            Throwable t = ((Failure)result).cause;
+            if (t instanceof RecordFormatException) {
+                throw (RecordFormatException)t;
+            }
+            close();
+            if (t instanceof RuntimeException) {
+                throw (RuntimeException)t;
+            }
+            throw new RuntimeException("Error reading sequence records: " +
+                t.getMessage(), t);
+        }
+        return result;
+    }
+
+    /**
+     * Stops reading records and stops the worker threads
+     * @assumes Nothing
+     * @effects stops the reader and worker threads
+     * @throws Nothing
+     */
+
+    public void close() {
+        closed = true;
+        reader.interrupt();
+        workers.shutdownNow();
+    }
+
+    /**
+     * Takes results from the pending queue until one that is not a
+     * rejected record
+     * @assumes Nothing
+     * @effects removes results from the pending queue
+     * @return a SequenceInput, a Failure or END_OF_INPUT
+     * @throws Nothing
+     */
+
+    private Object takeNextResult() {
+        while (true) {
+            Object result;
+            try {
+                result = ((Future)pending.take()).get();
+            }
+            catch (ExecutionException e) {
+                return new Failure(e.getCause());
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new Failure(e);
+            }
+            if (result != REJECTED) {
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Creates a completed Future for a result
+     * @assumes Nothing
+     * @effects Nothing
+     * @param result the result of the Future
+     * @return a completed Future
+     * @throws Nothing
+     */
+
+    private static Future completed(final Object result) {
+        FutureTask f = new FutureTask(new Callable() {
+            public Object call() {
+                return result;
+            }
+        });
+        f.run();
+        return f;
+    }
+
+    /**
+     * @is the Runnable for the reader thread
+     * @has Nothing
+     * @does reads records and submits a task for each to the workers; queues
+     *       their Futures in input order followed by END_OF_INPUT
+     * @company The Jackson Laboratory
+     * @author sc
+     * @version 1.0
+     */
+
+    private class Reader implements Runnable {
+        public void run() {
+            try {
+                while (!closed && records.hasNext()) {
+                    Object rcd;
+                    try {
+                        rcd = records.next();
+                    }
+                    catch (RecordFormatException e) {
+                        pending.put(completed(new Failure(e)));
+                        continue;
+                    }
+                    pending.put(workers.submit(new Task((String)rcd)));
+                }
+                pending.put(completed(END_OF_INPUT));
+            }
+            catch (InterruptedException e) {
+                // closed
+            }
+            catch (Throwable t) {
+                // report the error from next() and end the input; the queue
+                // is usually full, so wait for the loader to take the
+                // results ahead of them unless the iterator is closed
+                try {
+                    pending.put(completed(new Failure(t)));
+                    pending.put(completed(END_OF_INPUT));
+                }
+                catch (InterruptedException e) {
+                    // closed
+                }
+            }
+        }
+    }
+
+    /**
+     * @is a task which checks the seqid prefix of a record and interprets it
+     * @has a sequence record
+     * @does returns the SequenceInput for the record, REJECTED if we don't
+     *       load its seqid prefix
+     * @company The Jackson Laboratory
+     * @author sc
+     * @version 1.0
+     */
+
+    private class Task implements Callable {
+        private String record;
+
+        private Task(String record) {
+            this.record = record;
+        }
+
+        public Object call() throws Exception {
+            RefSequenceInterpreter interp =
+                (RefSequenceInterpreter)interpreters.take();
+            try {
+                // the interpreter keeps the offsets parsed by the prefix
+                // check for interpret
+                if (checkPrefixes && !interp.isValidPrefix(record)) {
+                    return REJECTED;
+                }
+                return interp.interpret(record);
+            }
+            finally {
+                interpreters.put(interp);
+            }
+        }
+    }
+
+    /**
+     * @is the result of a record which could not be read or interpreted
+     * @has the exception
+     * @does Nothing
+     * @company The Jackson Laboratory
+     * @author sc
+     * @version 1.0
+     */
+
+    private static class Failure {
+        private Throwable cause;
+
+        private Failure(Throwable cause) {
+            this.cause = cause;
+        }
+    }
+
+    /**
+     * @is a ThreadFactory for daemon threads, so pipeline threads never keep
+     *     the loader from exiting
+     * @has a thread name prefix and count
+     * @does creates named daemon threads
+     * @company The Jackson Laboratory
+     * @author sc
+     * @version 1.0
+     */
+
+    static class DaemonThreadFactory implements ThreadFactory {
+        private String name;
+        private int ctr = 0;
+
+        DaemonThreadFactory(String name) {
+            this.name = name;
+        }
+
+        public synchronized Thread newThread(Runnable r) {
+            Thread t = new Thread(r, name + "-" + (++ctr));
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
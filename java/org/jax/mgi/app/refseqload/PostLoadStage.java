@@ -0,0 +1,324 @@
+package org.jax.mgi.app.refseqload;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * @is The post-load stage of a refseqload: index maintenance around the
+ *     copy of its BCP files
+ * @has
+ *   <UL>
+ *   <LI>A BCPCopyLoader to execute SQL through psql
+ *   <LI>The percent of the rows of a table to insert at or above which
+ *       the indexes of the table are dropped before the copy
+ *   <LI>The max number of indexes rebuilt at once
+ *   <LI>The definitions of the indexes dropped, not yet rebuilt
+ *   <LI>A LoadCheckpoint of those definitions, null if none
+ *   </UL>
+ * @does
+ *   <UL>
+ *   <LI>Decides for each table to be copied, from the rows of its BCP file
+ *       and the estimated rows of the table, whether to drop its indexes,
+ *       and drops them
+ *   <LI>Rebuilds the indexes it dropped, several at once, and analyzes
+ *       their tables
+ *   <LI>Records the indexes dropped in its LoadCheckpoint, if any, so the
+ *       indexes dropped by a load which failed are rebuilt when it is
+ *       resumed
+ *   </UL>
+ * @notes Indexes which back a primary key or unique constraint are never
+ *        dropped. A percent of 0 never drops indexes. The key sequences
+ *        of the tables loaded are set by bin/refseqload.sh
+ * @company The Jackson Laboratory
+ * @author sc
+ * @version 1.0
+ */
+
+public class PostLoadStage {
+
+    // executes SQL
+    private BCPCopyLoader psql;
+
+    // percent of the rows of a table to insert at which its indexes are
+    // dropped
+    private int dropPercent;
+
+    // max number of indexes rebuilt at once
+    private int threads;
+
+    // tables whose indexes were dropped and, in the same order, Vectors
+    // of the definitions of their indexes
+    private Vector droppedTables = new Vector();
+    private Vector droppedIndexes = new Vector();
+
+    // records the indexes dropped, null if not recorded
+    private LoadCheckpoint checkpoint = null;
+
+    /**
+     * Constructs a PostLoadStage
+     * @assumes Nothing
+     * @effects Nothing
+     * @param psql executes SQL on the load database
+     * @param dropPercent percent of the rows of a table to insert at or
+     *        above which its indexes are dropped; 0 never drops indexes
+     * @param threads max number of indexes rebuilt at once
+     * @throws Nothing
+     */
+
+    public PostLoadStage(BCPCopyLoader psql, int dropPercent, int threads) {
+        this.psql = psql;
+        this.dropPercent = dropPercent;
+        this.threads = Math.max(threads, 1);
+    }
+
+    /**
+     * Sets the LoadCheckpoint recording the indexes dropped
+     * @assumes Nothing
+     * @effects Nothing
+     * @param checkpoint the checkpoint, null for none
+     * @throws Nothing
+     */
+
+    public void setCheckpoint(LoadCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Takes the indexes a checkpoint records as dropped, by a load which
+     * failed, to be rebuilt by rebuildIndexes
+     * @assumes Nothing
+     * @effects Nothing
+     * @param checkpoint the checkpoint
+     * @return the number of tables whose indexes are to be rebuilt
+     * @throws Nothing
+     */
+
+    public int restoreDropped(LoadCheckpoint checkpoint) {
+        Vector tables = checkpoint.getDroppedTables();
+        for (int t = 0; t < tables.size(); t++) {
+            String table = (String)tables.get(t);
+            if (droppedTables.contains(table)) {
+                continue;
+            }
+            // some may have been rebuilt before the load failed
+            Vector defs = new Vector();
+            Vector recorded = checkpoint.getDroppedIndexes(table);
+            for (int i = 0; i < recorded.size(); i++) {
+                String def = (String)recorded.get(i);
+                int index = def.indexOf("INDEX ");
+                if (index >= 0 && def.indexOf("IF NOT EXISTS") < 0) {
+                    def = def.substring(0, index + 6) + "IF NOT EXISTS " +
+                        def.substring(index + 6);
+                }
+                defs.add(def);
+            }
+            droppedTables.add(table);
+            droppedIndexes.add(defs);
+        }
+        return tables.size();
+    }
+
+    /**
+     * Drops the indexes of the tables of BCP files with many rows relative
+     * to the size of their table
+     * @assumes the BCP files have not been copied
+     * @effects drops indexes; updates the checkpoint
+     * @param bcpFiles the BCP files to be copied
+     * @return Vector of Strings reporting the decision for each table
+     * @throws IOException if error reading a file or executing SQL
+     */
+
+    public Vector dropIndexes(File[] bcpFiles) throws IOException {
+        Vector report = new Vector();
+        if (dropPercent <= 0) {
+            return report;
+        }
+        for (int i = 0; i < bcpFiles.length; i++) {
+            String table = BCPCopyLoader.getTable(bcpFiles[i]);
+            if (droppedTables.contains(table)) {
+                continue;
+            }
+            long rows = BCPCopyLoader.countRows(bcpFiles[i]);
+            long tableRows = getEstimatedRows(table);
+            if (rows * 100 < dropPercent * tableRows) {
+                report.add(table + ": keeping indexes, " + rows +
+                    " rows to insert into about " + tableRows);
+                continue;
+            }
+            Vector defs = new Vector();
+            StringBuffer drop = new StringBuffer();
+            Iterator it = psql.execute("select i.indexrelid::regclass, " +
+                "pg_get_indexdef(i.indexrelid) from pg_index i " +
+                "where i.indrelid = '" + table + "'::regclass " +
+                "and not exists (select 1 from pg_constraint c " +
+                "where c.conindid = i.indexrelid);\n").iterator();
+            while (it.hasNext()) {
+                String line = (String)it.next();
+                int bar = line.indexOf('|');
+                if (bar < 0) {
+                    continue;
+                }
+                drop.append("drop index ").append(line.substring(0, bar))
+                    .append(";\n");
+                defs.add(line.substring(bar + 1) + ";\n");
+            }
+            if (defs.isEmpty()) {
+                continue;
+            }
+            if (checkpoint != null) {
+                checkpoint.setDroppedIndexes(table, defs);
+            }
+            psql.execute(drop.toString());
+            droppedTables.add(table);
+            droppedIndexes.add(defs);
+            report.add(table + ": dropped " + defs.size() + " indexes, " +
+                rows + " rows to insert into about " + tableRows);
+        }
+        return report;
+    }
+
+    /**
+     * Rebuilds the indexes dropped by dropIndexes, several at once, and
+     * analyzes their tables
+     * @assumes Nothing
+     * @effects creates indexes; updates the checkpoint
+     * @return Vector of Strings reporting the indexes rebuilt
+     * @throws IOException if an index could not be rebuilt; the others
+     *         are rebuilt
+     */
+
+    public Vector rebuildIndexes() throws IOException {
+        Vector report = new Vector();
+        if (droppedTables.isEmpty()) {
+            return report;
+        }
+        long start = System.currentTimeMillis();
+        ExecutorService pool = Executors.newFixedThreadPool(threads,
+            new ParallelRecordIterator.DaemonThreadFactory(
+                "refseqload-index"));
+        IOException error = null;
+        try {
+            Vector futures = new Vector();
+            for (int t = 0; t < droppedIndexes.size(); t++) {
+                Vector defs = (Vector)droppedIndexes.get(t);
+                for (int i = 0; i < defs.size(); i++) {
+                    futures.add(pool.submit(
+                        new Execute((String)defs.get(i))));
+                }
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    ((Future)futures.get(i)).get();
+                }
+                catch (ExecutionException e) {
+                    if (error == null) {
+                        error = e.getCause() instanceof IOException ?
+                            (IOException)e.getCause() :
+                            new IOException(e.getCause().toString());
+                    }
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted rebuilding indexes");
+                }
+            }
+            report.add("Rebuilt " + futures.size() + " indexes of " +
+                droppedTables.size() + " tables in " +
+                (System.currentTimeMillis() - start) / 1000.0 + " sec");
+        }
+        finally {
+            pool.shutdownNow();
+        }
+        if (error != null) {
+            throw error;
+        }
+        StringBuffer analyze = new StringBuffer();
+        for (int t = 0; t < droppedTables.size(); t++) {
+            analyze.append("analyze ").append(droppedTables.get(t))
+                .append(";\n");
+        }
+        psql.execute(analyze.toString());
+        if (checkpoint != null) {
+            for (int t = 0; t < droppedTables.size(); t++) {
+                checkpoint.setDroppedIndexes((String)droppedTables.get(t),
+                    null);
+            }
+        }
+        droppedTables.clear();
+        droppedIndexes.clear();
+        return report;
+    }
+
+    /**
+     * Gets the estimated number of rows of a table from its statistics, or
+     * counts them if the table has no statistics
+     * @assumes Nothing
+     * @effects counts the rows of a table which has never been analyzed,
+     *          or is empty
+     * @param table the table
+     * @return the estimated rows
+     * @throws IOException if error executing SQL
+     */
+
+    private long getEstimatedRows(String table) throws IOException {
+        // reltuples is -1, or 0 before PostgreSQL 14, if never analyzed
+        long rows = getLong(table, "select reltuples::bigint from pg_class " +
+            "where oid = '" + table + "'::regclass;\n");
+        if (rows > 0) {
+            return rows;
+        }
+        return getLong(table, "select count(*) from " + table + ";\n");
+    }
+
+    /**
+     * Gets the number returned by a query on a table
+     * @assumes Nothing
+     * @effects Nothing
+     * @param table the table
+     * @param sql the query
+     * @return the number, 0 if none is returned
+     * @throws IOException if error executing SQL
+     */
+
+    private long getLong(String table, String sql) throws IOException {
+        Vector lines = psql.execute(sql);
+        if (lines.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(((String)lines.get(0)).trim());
+        }
+        catch (NumberFormatException e) {
+            throw new IOException("Cannot get the rows of " + table + ": " +
+                lines.get(0));
+        }
+    }
+
+    /**
+     * @is a task which executes SQL through psql
+     * @has the SQL
+     * @does executes it
+     * @company The Jackson Laboratory
+     * @author sc
+     * @version 1.0
+     */
+
+    private class Execute implements Callable {
+        private String sql;
+
+        private Execute(String sql) {
+            this.sql = sql;
+        }
+
+        public Object call() throws IOException {
+            return psql.execute(sql);
+        }
+    }
+}
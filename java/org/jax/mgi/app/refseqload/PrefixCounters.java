@@ -0,0 +1,182 @@
+package org.jax.mgi.app.refseqload;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @is Counts of sequence records accepted and rejected by seqid prefix,
+ *     keyed by prefix slot (see RefSeqidPrefixChecker.getSlot)
+ * @has
+ *   <UL>
+ *   <LI>A 64-bit striped counter of records accepted and of records
+ *       rejected for each of the 676 two letter prefixes
+ *   <LI>A counter of records with no RefSeq prefix
+ *   </UL>
+ * @does
+ *   <UL>
+ *   <LI>Counts a record with no allocation and no lock; counters are
+ *       created up front and stripe themselves under contention, so any
+ *       number of threads may count at once
+ *   <LI>Takes a Snapshot of all counts at any moment, e.g. for reporting
+ *       while the load runs
+ *   </UL>
+ * @notes A Snapshot taken while threads are counting is not atomic across
+ *        counters; each count is exact as of some moment during the
+ *        snapshot
+ * @company The Jackson Laboratory
+ * @author sc
+ * @version 1.0
+ */
+
+public class PrefixCounters {
+
+    // number of two letter prefixes 'AA' through 'ZZ'
+    public static final int PREFIX_SLOTS = 26 * 26;
+
+    // records accepted and rejected, by prefix slot
+    private LongAdder[] accepted = new LongAdder[PREFIX_SLOTS];
+    private LongAdder[] rejected = new LongAdder[PREFIX_SLOTS];
+
+    // records with no RefSeq prefix
+    private LongAdder noPrefix = new LongAdder();
+
+    /**
+     * Constructs a PrefixCounters with all counts 0
+     * @assumes Nothing
+     * @effects Nothing
+     * @throws Nothing
+     */
+
+    public PrefixCounters() {
+        for (int i = 0; i < PREFIX_SLOTS; i++) {
+            accepted[i] = new LongAdder();
+            rejected[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Counts a record
+     * @assumes Nothing
+     * @effects Nothing
+     * @param slot the prefix slot of the record, -1 if it has no prefix
+     * @param isAccepted true if the record was accepted
+     * @throws Nothing
+     */
+
+    public void count(int slot, boolean isAccepted) {
+        if (slot < 0) {
+            noPrefix.increment();
+        }
+        else if (isAccepted) {
+            accepted[slot].increment();
+        }
+        else {
+            rejected[slot].increment();
+        }
+    }
+
+    /**
+     * Gets the count of records accepted with a prefix
+     * @assumes Nothing
+     * @effects Nothing
+     * @param slot the prefix slot
+     * @return the count
+     * @throws Nothing
+     */
+
+    public long getAccepted(int slot) {
+        return accepted[slot].sum();
+    }
+
+    /**
+     * Gets the count of records rejected with a prefix
+     * @assumes Nothing
+     * @effects Nothing
+     * @param slot the prefix slot
+     * @return the count
+     * @throws Nothing
+     */
+
+    public long getRejected(int slot) {
+        return rejected[slot].sum();
+    }
+
+    /**
+     * Takes a snapshot of all counts
+     * @assumes Nothing
+     * @effects Nothing
+     * @return the Snapshot
+     * @throws Nothing
+     */
+
+    public Snapshot getSnapshot() {
+        Snapshot s = new Snapshot();
+        for (int i = 0; i < PREFIX_SLOTS; i++) {
+            s.accepted[i] = accepted[i].sum();
+            s.rejected[i] = rejected[i].sum();
+            s.totalAccepted += s.accepted[i];
+            s.totalRejected += s.rejected[i];
+        }
+        s.noPrefix = noPrefix.sum();
+        s.totalRejected += s.noPrefix;
+        return s;
+    }
+
+    /**
+     * Gets the two letter prefix of a slot
+     * @assumes Nothing
+     * @effects Nothing
+     * @param slot the prefix slot
+     * @return the prefix e.g. 'NM'
+     * @throws Nothing
+     */
+
+    public static String getPrefix(int slot) {
+        return new String(new char[] {
+            (char)('A' + slot / 26), (char)('A' + slot % 26)});
+    }
+
+    /**
+     * @is the counts of a PrefixCounters at a moment
+     * @has counts accepted and rejected by prefix slot, of records with no
+     *      prefix, and totals
+     * @does Nothing
+     * @company The Jackson Laboratory
+     * @author sc
+     * @version 1.0
+     */
+
+    public static class Snapshot {
+        private long[] accepted = new long[PREFIX_SLOTS];
+        private long[] rejected = new long[PREFIX_SLOTS];
+        private long noPrefix = 0;
+        private long totalAccepted = 0;
+        private long totalRejected = 0;
+
+        public long getAccepted(int slot) {
+            return accepted[slot];
+        }
+
+        public long getRejected(int slot) {
+            return rejected[slot];
+        }
+
+        public long getNoPrefix() {
+            return noPrefix;
+        }
+
+        public long getTotalAccepted() {
+            return totalAccepted;
+        }
+
+        /**
+         * @return records rejected, including those with no prefix
+         */
+        public long getTotalRejected() {
+            return totalRejected;
+        }
+
+        public long getTotal() {
+            return totalAccepted + totalRejected;
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package org.jax.mgi.app.refseqload;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @is A persistent local index of the content of the sequence records last
+ *     loaded: accession.version to a digest of the normalized record header,
+ *     used in incremental mode to drop records loaded before unchanged
+ * @has
+ *   <UL>
+ *   <LI>The index file
+ *   <LI>A map of accession.version to a 64 bit digest of the header i.e.
+ *       the record up to its FEATURES or ORIGIN line, with each run of
+ *       whitespace collapsed to a single space
+ *   <LI>A map of accession to the accession.version and digest of each
+ *       changed record not yet accepted
+ *   </UL>
+ * @does
+ *   <UL>
+ *   <LI>Loads the index file, if it exists
+ *   <LI>Determines if a record is unchanged since it was indexed, holding
+ *       the digest of a changed record as pending
+ *   <LI>Indexes the pending digest of a record once the loader takes its
+ *       sequence
+ *   <LI>Saves the index file, replacing the old file only when the new one
+ *       is complete
+ *   <LI>Rebuilds the index file from release files, see main
+ *   </UL>
+ * @notes The maps may be used by any number of threads; a Digester may
+ *        not. The index should be saved only once the sequences accepted
+ *        have been loaded, see RefSeqloadStart. The feature table is not
+ *        digested, so a record whose source qualifiers or other features
+ *        alone changed is dropped as unchanged; and a sequence the loader
+ *        takes is indexed even if the loader's own processing rejects it.
+ *        Hence the index is off unless configured, see APP_DIGEST_INDEX
+ * @company The Jackson Laboratory
+ * @author sc
+ * @version 1.0
+ */
+
+public class RecordDigestIndex {
+
+    // usage
+    private static final String USAGE =
+        "Usage: RecordDigestIndex indexFile releaseFile ...\n" +
+        "  Rebuilds indexFile from the records of the release files, which\n" +
+        "  may be gzip compressed";
+
+    // identifies an index file and its format
+    private static final int MAGIC = 0x52534449;
+    private static final int FORMAT = 1;
+
+    // suffix of the index file while it is saved
+    private static final String TMP_SUFFIX = ".tmp";
+
+    // the index file
+    private File file;
+
+    // accession.version to Long digest
+    private Map digests;
+
+    // accession to the PendingDigest of a changed record not yet accepted
+    private Map pending = new ConcurrentHashMap();
+
+    /**
+     * Constructs a RecordDigestIndex, loading the index file if it exists
+     * @assumes Nothing
+     * @effects reads the index file
+     * @param fileName the index file
+     * @throws IOException if the index file cannot be read or is not an
+     *         index file
+     */
+
+    public RecordDigestIndex(String fileName) throws IOException {
+        this(fileName, 0);
+    }
+
+    /**
+     * Constructs a RecordDigestIndex sized for the records of the input,
+     * loading the index file if it exists
+     * @assumes Nothing
+     * @effects reads the index file
+     * @param fileName the index file
+     * @param expected the expected number of records of the input
+     * @throws IOException if the index file cannot be read or is not an
+     *         index file
+     */
+
+    public RecordDigestIndex(String fileName, int expected)
+        throws IOException {
+        this.file = new File(fileName);
+        if (!file.exists()) {
+            digests = new ConcurrentHashMap(expected);
+            return;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+            new FileInputStream(file), 64 * 1024));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT) {
+                throw new IOException(fileName + " is not a record digest " +
+                    "index, rebuild it from a release file");
+            }
+            int n = in.readInt();
+            digests = new ConcurrentHashMap(Math.max(n, expected));
+            for (int i = 0; i < n; i++) {
+                String key = in.readUTF();
+                digests.put(key, new Long(in.readLong()));
+            }
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Determines if a record is unchanged since it was last indexed; if it
+     * has changed its digest is pending until its sequence is accepted
+     * @assumes Nothing
+     * @effects holds the digest of a changed record as pending
+     * @param accVersion the accession.version of the record
+     * @param digest the digest of the record, see Digester
+     * @return true if 'accVersion' was indexed with 'digest'
+     * @throws Nothing
+     */
+
+    public boolean isUnchanged(String accVersion, long digest) {
+        Long old = (Long)digests.get(accVersion);
+        if (old != null && old.longValue() == digest) {
+            return true;
+        }
+        int dot = accVersion.indexOf('.');
+        pending.put(dot < 0 ? accVersion : accVersion.substring(0, dot),
+            new PendingDigest(accVersion, digest));
+        return false;
+    }
+
+    /**
+     * Indexes the pending digest of a record, once the loader has taken
+     * its sequence
+     * @assumes Nothing
+     * @effects replaces the digest of the accession.version of 'accID'
+     * @param accID the primary accession of the sequence
+     * @throws Nothing
+     */
+
+    public void accept(String accID) {
+        PendingDigest p = (PendingDigest)pending.remove(accID);
+        if (p != null) {
+            digests.put(p.accVersion, new Long(p.digest));
+        }
+    }
+
+    /**
+     * Indexes the digest of a record
+     * @assumes Nothing
+     * @effects replaces the digest of 'accVersion'
+     * @param accVersion the accession.version of the record
+     * @param digest the digest of the record, see Digester
+     * @throws Nothing
+     */
+
+    public void put(String accVersion, long digest) {
+        digests.put(accVersion, new Long(digest));
+    }
+
+    /**
+     * Gets the number of records indexed
+     * @assumes Nothing
+     * @effects Nothing
+     * @return the number of accession.versions
+     * @throws Nothing
+     */
+
+    public int size() {
+        return digests.size();
+    }
+
+    /**
+     * Saves the index to its file; digests still pending, of records whose
+     * sequences were never accepted, are discarded
+     * @assumes no thread is indexing records; the sequences accepted have
+     *          been loaded
+     * @effects writes a temporary file and renames it to the index file
+     * @throws IOException if error writing the file
+     */
+
+    public void save() throws IOException {
+        pending.clear();
+        File tmp = new File(file.getPath() + TMP_SUFFIX);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+            new FileOutputStream(tmp), 64 * 1024));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeInt(digests.size());
+            for (Iterator i = digests.entrySet().iterator(); i.hasNext();) {
+                Map.Entry e = (Map.Entry)i.next();
+                out.writeUTF((String)e.getKey());
+                out.writeLong(((Long)e.getValue()).longValue());
+            }
+        }
+        finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            file.delete();
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Cannot rename " + tmp + " to " + file);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds an index file from release files
+     * @assumes Nothing
+     * @effects replaces the index file
+     * @param args the index file, then one or more release files
+     * @throws Exception if error reading the release files or writing the
+     *         index file
+     */
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        new File(args[0]).delete();
+        RecordDigestIndex index = new RecordDigestIndex(args[0]);
+        RecordParseContext context = new RecordParseContext();
+        Digester digester = new Digester();
+        for (int i = 1; i < args.length; i++) {
+            RecordSource source = new GBRecordReader(
+                MultiFileRecordSource.open(args[i], 1024 * 1024),
+                1024 * 1024, null, true);
+            String rcd;
+            while ((rcd = source.nextRecord()) != null) {
+                context.parse(rcd);
+                String accVersion = context.getAccessionVersion();
+                if (accVersion != null) {
+                    index.put(accVersion,
+                        digester.digest(rcd, context.getHeaderEnd()));
+                }
+            }
+            source.close();
+        }
+        index.save();
+        System.out.println("Indexed " + index.size() + " records in " +
+            args[0]);
+    }
+
+    /**
+     * @is the digest of a changed record not yet accepted
+     * @has the accession.version of the record and its digest
+     * @does Nothing
+     * @company The Jackson Laboratory
+     * @author sc
+     * @version 1.0
+     */
+
+    private static class PendingDigest {
+        private String accVersion;
+        private long digest;
+
+        private PendingDigest(String accVersion, long digest) {
+            this.accVersion = accVersion;
+            this.digest = digest;
+        }
+    }
+
+    /**
+     * @is A calculator of the digest of a record header
+     * @has a MessageDigest and a byte buffer
+     * @does Digests the header of a record with its whitespace normalized,
+     *       so reformatting of the flat file does not change the digest
+     * @notes Not thread safe, each RefSequenceInterpreter has its own
+     * @company The Jackson Laboratory
+     * @author sc
+     * @version 1.0
+     */
+
+    public static class Digester {
+
+        // digests header bytes
+        private MessageDigest md;
+
+        // normalized header bytes not yet digested
+        private byte[] buf = new byte[8 * 1024];
+
+        /**
+         * Constructs a Digester
+         * @assumes Nothing
+         * @effects Nothing
+         * @throws IllegalStateException if the JVM has no MD5 digest
+         */
+
+        public Digester() {
+            try {
+                md = MessageDigest.getInstance("MD5");
+            }
+            catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e.getMessage());
+            }
+        }
+
+        /**
+         * Digests the header of a record
+         * @assumes Nothing
+         * @effects Nothing
+         * @param rcd the record, or its header
+         * @param headerEnd offset of the end of the header, see
+         *        RecordParseContext.getHeaderEnd
+         * @return the first 64 bits of the MD5 digest of the header with
+         *         each run of whitespace replaced by a single space
+         * @throws Nothing
+         */
+
+        public long digest(String rcd, int headerEnd) {
+            int n = 0;
+            boolean inSpace = false;
+            for (int i = 0; i < headerEnd; i++) {
+                char c = rcd.charAt(i);
+                if (c <= ' ') {
+                    if (inSpace) {
+                        continue;
+                    }
+                    inSpace = true;
+                    c = ' ';
+                }
+                else {
+                    inSpace = false;
+                }
+                if (n == buf.length) {
+                    md.update(buf, 0, n);
+                    n = 0;
+                }
+                buf[n++] = (byte)c;
+            }
+            md.update(buf, 0, n);
+            byte[] d = md.digest();
+            long digest = 0;
+            for (int i = 0; i < 8; i++) {
+                digest = (digest << 8) | (d[i] & 0xff);
+            }
+            return digest;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package org.jax.mgi.app.refseqload;
+
+/**
+ * @is The offsets of the primary seqid, the accession.version and the end
+ *     of the header of a GenBank format sequence record, found by one scan
+ *     of its header and reused by the prefix check and the digest of the
+ *     record
+ * @has
+ *   <UL>
+ *   <LI>The record, or its header
+ *   <LI>The offsets of its primary seqid, of its accession.version and of
+ *       the end of its header
+ *   </UL>
+ * @does
+ *   <UL>
+ *   <LI>Scans the header of a record line by line once, stopping at the
+ *       FEATURES or ORIGIN line, so the feature table and sequence are not
+ *       scanned
+ *   <LI>Is reset and reused for each record, so parsing allocates nothing
+ *   </UL>
+ * @notes An instance is not thread safe; each RefSequenceInterpreter has
+ *        its own
+ * @company The Jackson Laboratory
+ * @author sc
+ * @version 1.0
+ */
+
+public class RecordParseContext {
+
+    // GenBank keywords
+    private static final String ACCESSION = "ACCESSION";
+    private static final String VERSION = "VERSION";
+    private static final String FEATURES = "FEATURES";
+    private static final String ORIGIN = "ORIGIN";
+
+    // the record parsed, null if none
+    private String record = null;
+
+    // offset of the primary seqid, -1 if there is no ACCESSION line
+    private int seqid;
+
+    // offset of the accession.version, -1 if there is no VERSION line
+    private int accVersion;
+
+    // offset of the end of the header i.e. of the FEATURES or ORIGIN line,
+    // or the end of the record if it has neither
+    private int headerEnd;
+
+    /**
+     * Parses the header of a record
+     * @assumes Nothing
+     * @effects replaces the offsets of the last record parsed
+     * @param rcd a GenBank format sequence record, or its header
+     * @throws Nothing
+     */
+
+    public void parse(String rcd) {
+        record = rcd;
+        seqid = accVersion = -1;
+        int len = rcd.length();
+        headerEnd = len;
+        int lineStart = 0;
+        while (lineStart < len) {
+            switch (rcd.charAt(lineStart)) {
+                case 'A':
+                    if (seqid < 0 && rcd.startsWith(ACCESSION, lineStart)) {
+                        seqid = skipBlanks(rcd,
+                            lineStart + ACCESSION.length());
+                    }
+                    break;
+                case 'V':
+                    if (accVersion < 0 &&
+                            rcd.startsWith(VERSION, lineStart)) {
+                        accVersion = skipBlanks(rcd,
+                            lineStart + VERSION.length());
+                    }
+                    break;
+                case 'F':
+                    if (rcd.startsWith(FEATURES, lineStart)) {
+                        headerEnd = lineStart;
+                        return;
+                    }
+                    break;
+                case 'O':
+                    if (rcd.startsWith(ORIGIN, lineStart)) {
+                        headerEnd = lineStart;
+                        return;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            int eol = rcd.indexOf('\n', lineStart);
+            if (eol < 0) {
+                break;
+            }
+            lineStart = eol + 1;
+        }
+    }
+
+    /**
+     * Determines if this context is for a record
+     * @assumes Nothing
+     * @effects Nothing
+     * @param rcd a record
+     * @return true if 'rcd' is the record last parsed
+     * @throws Nothing
+     */
+
+    public boolean isFor(String rcd) {
+        return rcd == record;
+    }
+
+    /**
+     * Forgets the record last parsed
+     * @assumes Nothing
+     * @effects Nothing
+     * @throws Nothing
+     */
+
+    public void clear() {
+        record = null;
+    }
+
+    /**
+     * Gets the offset of the primary seqid of the record
+     * @assumes Nothing
+     * @effects Nothing
+     * @return the offset, -1 if there is no ACCESSION line
+     * @throws Nothing
+     */
+
+    public int getPrimarySeqid() {
+        return seqid;
+    }
+
+    /**
+     * Gets the accession.version of the record e.g. 'NM_001001.2'
+     * @assumes Nothing
+     * @effects Nothing
+     * @return the first word of the VERSION line, null if there is none
+     * @throws Nothing
+     */
+
+    public String getAccessionVersion() {
+        if (accVersion < 0) {
+            return null;
+        }
+        int end = accVersion;
+        while (end < headerEnd && record.charAt(end) > ' ') {
+            end++;
+        }
+        return end == accVersion ? null : record.substring(accVersion, end);
+    }
+
+    /**
+     * Gets the offset of the end of the header of the record
+     * @assumes Nothing
+     * @effects Nothing
+     * @return the offset of the FEATURES or ORIGIN line, or the length of
+     *         the record if it has neither
+     * @throws Nothing
+     */
+
+    public int getHeaderEnd() {
+        return headerEnd;
+    }
+
+    /**
+     * Gets the offset of the first non blank at or after an offset
+     * @assumes Nothing
+     * @effects Nothing
+     * @param rcd a record
+     * @param i the offset
+     * @return the offset of the first character at or after 'i' which is not
+     *         a space, or the length of 'rcd'
+     * @throws Nothing
+     */
+
+    private static int skipBlanks(String rcd, int i) {
+        int len = rcd.length();
+        while (i < len && rcd.charAt(i) == ' ') {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,38 @@
+package org.jax.mgi.app.refseqload;
+
+import java.io.IOException;
+
+/**
+ * @is A source of GenBank sequence records read from an input
+ * @has Nothing
+ * @does
+ *   <UL>
+ *   <LI>Returns the text of each sequence record in input order
+ *   <LI>Closes its input
+ *   </UL>
+ * @company The Jackson Laboratory
+ * @author sc
+ * @version 1.0
+ */
+
+public interface RecordSource {
+
+    /**
+     * Gets the next sequence record
+     * @assumes Nothing
+     * @effects reads from the input
+     * @return the text of the next record, null at end of input
+     * @throws IOException if error reading the input
+     */
+
+    public String nextRecord() throws IOException;
+
+    /**
+     * Closes the input
+     * @assumes Nothing
+     * @effects closes the input
+     * @throws IOException if error closing the input
+     */
+
+    public void close() throws IOException;
+}
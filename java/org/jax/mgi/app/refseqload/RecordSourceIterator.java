@@ -0,0 +1,119 @@
+package org.jax.mgi.app.refseqload;
+
+import java.io.IOException;
+import java.util.NoSuchElementException;
+
+import org.jax.mgi.shr.ioutils.RecordDataInterpreter;
+import org.jax.mgi.shr.ioutils.RecordDataIterator;
+import org.jax.mgi.shr.ioutils.RecordFormatException;
+
+/**
+ * @is A RecordDataIterator over the records of a RecordSource
+ * @has
+ *   <UL>
+ *   <LI>A RecordSource
+ *   <LI>A RecordDataInterpreter, or none to return records uninterpreted
+ *   </UL>
+ * @does
+ *   <UL>
+ *   <LI>Reads the next record ahead so hasNext can be answered
+ *   <LI>Interprets each record; records are not checked with isValid,
+ *       the RecordSource is expected to return only valid records
+ *   </UL>
+ * @company The Jackson Laboratory
+ * @author sc
+ * @version 1.0
+ */
+
+public class RecordSourceIterator implements RecordDataIterator {
+
+    // the records
+    private RecordSource source;
+
+    // interprets records, null to return records uninterpreted
+    private RecordDataInterpreter interpreter;
+
+    // the next record, null if not yet read or at end of input
+    private String nextRecord = null;
+
+    // true when the end of input has been read
+    private boolean atEnd = false;
+
+    /**
+     * Constructs a RecordSourceIterator
+     * @assumes Nothing
+     * @effects Nothing
+     * @param source the records
+     * @param interpreter interprets records, null to return records
+     *        uninterpreted
+     * @throws Nothing
+     */
+
+    public RecordSourceIterator(RecordSource source,
+                                RecordDataInterpreter interpreter) {
+        this.source = source;
+        this.interpreter = interpreter;
+    }
+
+    /**
+     * Determines if there is another record
+     * @assumes Nothing
+     * @effects reads the next record from the RecordSource
+     * @return true if there is another record
+     * @throws RuntimeException if error reading the RecordSource
+     */
+
+    public boolean hasNext() {
+        if (nextRecord == null && !atEnd) {
+            long start = LoadMetrics.now();
+            try {
+                nextRecord = source.nextRecord();
+                LoadMetrics.getInstance().record(LoadMetrics.READ, start);
+            }
+            catch (IOException e) {
+                throw new RuntimeException("Error reading sequence records: " +
+                    e.getMessage(), e);
+            }
+            atEnd = nextRecord == null;
+        }
+        return !atEnd;
+    }
+
+    /**
+     * Gets the next record
+     * @assumes Nothing
+     * @effects reads the next record from the RecordSource
+     * @return the interpreted record, or the record text if there is no
+     *         interpreter
+     * @throws RecordFormatException if the record could not be interpreted
+     */
+
+    public Object next() throws RecordFormatException {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        String rcd = nextRecord;
+        nextRecord = null;
+        if (interpreter == null) {
+            return rcd;
+        }
+        return interpreter.interpret(rcd);
+    }
+
+    /**
+     * Closes the RecordSource
+     * @assumes Nothing
+     * @effects closes the input of the RecordSource
+     * @throws RuntimeException if error closing the RecordSource
+     */
+
+    public void close() {
+        try {
+            source.close();
+        }
+        catch (IOException e) {
+            throw new RuntimeException("Error closing sequence records: " +
+                e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,385 @@
+package org.jax.mgi.app.refseqload;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * @is A tool that writes synthetic RefSeq GenBank flat files for load
+ *     testing, see main for usage
+ * @has
+ *   <UL>
+ *   <LI>A GBRecordFactory
+ *   <LI>Weighted distributions of organism and seqid prefix
+ *   <LI>A median sequence length for each prefix; lengths are log-normally
+ *       distributed around it
+ *   <LI>A maximum number of secondary seqids per record
+ *   </UL>
+ * @does
+ *   <UL>
+ *   <LI>Writes a given number of records, or bytes, to one or more files,
+ *       optionally gzip compressed
+ *   <LI>Writes the same files for the same arguments and seed
+ *   <LI>Streams records to the output one at a time, so files of tens of
+ *       GB can be written in constant memory
+ *   </UL>
+ * @company The Jackson Laboratory
+ * @author sc
+ * @version 1.0
+ */
+
+public class RefSeqFileGenerator {
+
+    // usage
+    private static final String USAGE =
+        "Usage: RefSeqFileGenerator outputFile [name=value ...]\n" +
+        "  records=N       number of records per file (default 10000)\n" +
+        "  bytes=N[K|M|G]  uncompressed bytes per file, instead of records\n" +
+        "  files=N         number of files, named outputFile.1 ... .N\n" +
+        "                  before any '.gz' suffix (default 1)\n" +
+        "  organisms=org:weight,...  (default mouse:30,human:40,rat:15,\n" +
+        "                  zebrafish:10,cattle:5)\n" +
+        "  prefixes=PP:weight,...    (default NM:25,NR:5,NP:25,NC:1,NG:2,\n" +
+        "                  NT:1,NW:1,NZ:1,ZP:1,XM:20,XR:5,XP:15)\n" +
+        "  lengths=PP:median,...     median sequence length per prefix\n" +
+        "  maxlength=N     longest sequence (default 10000000)\n" +
+        "  secondaries=N   max secondary seqids per record (default 2)\n" +
+        "  gzip=true|false compress output (default true if outputFile\n" +
+        "                  ends with .gz)\n" +
+        "  seed=N          random seed (default 1)";
+
+    // the default APP_PREFIXES and their default weights
+    // and median sequence lengths; lengths of protein prefixes are in aa
+    private static final String DEFAULT_PREFIXES =
+        "NM:25,NR:5,NP:25,NC:1,NG:2,NT:1,NW:1,NZ:1,ZP:1,XM:20,XR:5,XP:15";
+    private static final String DEFAULT_LENGTHS =
+        "NM:3000,NR:2000,NP:500,NC:5000000,NG:40000,NT:2000000," +
+        "NW:1000000,NZ:500000,ZP:350,XM:3000,XR:2000,XP:500";
+    private static final String DEFAULT_ORGANISMS =
+        "mouse:30,human:40,rat:15,zebrafish:10,cattle:5";
+
+    // log-normal shape of sequence lengths around the median
+    private static final double LENGTH_SIGMA = 0.6;
+
+    private GBRecordFactory factory;
+    private Random random;
+
+    // organisms and prefixes with cumulative weights
+    private String[] organisms;
+    private double[] organismWeights;
+    private String[] prefixes;
+    private double[] prefixWeights;
+
+    // median sequence length of each prefix, same order as 'prefixes'
+    private int[] medianLengths;
+
+    private int maxLength = 10000000;
+    private int maxSecondaries = 2;
+
+    // number of records written, also the id of the next record
+    private int recordCtr = 0;
+
+    /**
+     * Writes synthetic RefSeq GenBank flat files
+     * @assumes Nothing
+     * @effects writes files
+     * @param args the output file then name=value options, see USAGE
+     * @throws Exception if error writing a file or bad arguments
+     */
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        String outputFile = args[0];
+        String organisms = DEFAULT_ORGANISMS;
+        String prefixes = DEFAULT_PREFIXES;
+        String lengths = DEFAULT_LENGTHS;
+        long records = 10000;
+        long bytes = 0;
+        int files = 1;
+        int maxLength = 10000000;
+        int secondaries = 2;
+        boolean gzip = outputFile.endsWith(".gz");
+        long seed = 1;
+        for (int i = 1; i < args.length; i++) {
+            int eq = args[i].indexOf('=');
+            if (eq < 0) {
+                System.err.println(USAGE);
+                System.exit(1);
+            }
+            String name = args[i].substring(0, eq);
+            String value = args[i].substring(eq + 1);
+            if (name.equals("records")) {
+                records = Long.parseLong(value);
+            }
+            else if (name.equals("bytes")) {
+                bytes = parseSize(value);
+            }
+            else if (name.equals("files")) {
+                files = Integer.parseInt(value);
+            }
+            else if (name.equals("organisms")) {
+                organisms = value;
+            }
+            else if (name.equals("prefixes")) {
+                prefixes = value;
+            }
+            else if (name.equals("lengths")) {
+                lengths = DEFAULT_LENGTHS + "," + value;
+            }
+            else if (name.equals("maxlength")) {
+                maxLength = Integer.parseInt(value);
+            }
+            else if (name.equals("secondaries")) {
+                secondaries = Integer.parseInt(value);
+            }
+            else if (name.equals("gzip")) {
+                gzip = value.equals("true");
+            }
+            else if (name.equals("seed")) {
+                seed = Long.parseLong(value);
+            }
+            else {
+                System.err.println("Unknown option: " + name + "\n" + USAGE);
+                System.exit(1);
+            }
+        }
+
+        RefSeqFileGenerator gen = new RefSeqFileGenerator(organisms,
+            prefixes, lengths, maxLength, secondaries, seed);
+        for (int f = 1; f <= files; f++) {
+            String fileName = files == 1 ? outputFile :
+                numberedFileName(outputFile, f);
+            OutputStream os = new FileOutputStream(fileName);
+            if (gzip) {
+                os = new GZIPOutputStream(os, 1024 * 1024);
+            }
+            Writer out = new BufferedWriter(
+                new OutputStreamWriter(os, GBRecordReader.CHARSET),
+                1024 * 1024);
+            long written = gen.write(out, bytes > 0 ? Long.MAX_VALUE : records,
+                bytes);
+            out.close();
+            System.out.println(fileName + ": " + written +
+                " uncompressed bytes");
+        }
+    }
+
+    /**
+     * Constructs a RefSeqFileGenerator
+     * @assumes Nothing
+     * @effects Nothing
+     * @param organisms organism weights e.g. 'mouse:30,human:70'
+     * @param prefixes prefix weights e.g. 'NM:50,XM:50'
+     * @param lengths median sequence length of prefixes e.g. 'NM:3000'; a
+     *        later value for a prefix overrides an earlier one
+     * @param maxLength longest sequence
+     * @param maxSecondaries max secondary seqids per record
+     * @param seed random seed
+     * @throws IllegalArgumentException if an organism or prefix is unknown
+     *         or a prefix has no length
+     */
+
+    public RefSeqFileGenerator(String organisms, String prefixes,
+                               String lengths, int maxLength,
+                               int maxSecondaries, long seed) {
+        this.factory = new GBRecordFactory(seed);
+        this.random = new Random(seed);
+        this.maxLength = maxLength;
+        this.maxSecondaries = maxSecondaries;
+
+        String[] pairs = organisms.split(",");
+        this.organisms = new String[pairs.length];
+        organismWeights = new double[pairs.length];
+        parseWeights(pairs, this.organisms, organismWeights);
+        String[] known = GBRecordFactory.getOrganisms();
+        for (int i = 0; i < this.organisms.length; i++) {
+            if (indexOf(known, this.organisms[i]) < 0) {
+                throw new IllegalArgumentException("Unknown organism: " +
+                    this.organisms[i]);
+            }
+        }
+
+        pairs = prefixes.split(",");
+        this.prefixes = new String[pairs.length];
+        prefixWeights = new double[pairs.length];
+        parseWeights(pairs, this.prefixes, prefixWeights);
+
+        medianLengths = new int[this.prefixes.length];
+        String[] lengthPairs = lengths.split(",");
+        for (int i = 0; i < lengthPairs.length; i++) {
+            int colon = lengthPairs[i].indexOf(':');
+            int p = indexOf(this.prefixes,
+                lengthPairs[i].substring(0, colon).trim());
+            if (p > -1) {
+                medianLengths[p] = Integer.parseInt(
+                    lengthPairs[i].substring(colon + 1).trim());
+            }
+        }
+        for (int i = 0; i < this.prefixes.length; i++) {
+            if (this.prefixes[i].length() != 2 || medianLengths[i] <= 0) {
+                throw new IllegalArgumentException(
+                    "Bad prefix or no length for prefix: " + this.prefixes[i]);
+            }
+        }
+    }
+
+    /**
+     * Writes records until a number of records or bytes has been written
+     * @assumes Nothing
+     * @effects writes to 'out'
+     * @param out where to write
+     * @param records max number of records
+     * @param bytes max number of bytes, 0 for no limit
+     * @return the number of bytes written
+     * @throws IOException if error writing
+     */
+
+    public long write(Writer out, long records, long bytes)
+        throws IOException {
+        CountingWriter counter = new CountingWriter(out);
+        for (long r = 0; r < records; r++) {
+            if (bytes > 0 && counter.count >= bytes) {
+                break;
+            }
+            int p = choose(prefixWeights);
+            int length = (int)Math.round(medianLengths[p] *
+                Math.exp(LENGTH_SIGMA * random.nextGaussian()));
+            length = Math.max(50, Math.min(length, maxLength));
+            factory.appendRecord(counter, prefixes[p], recordCtr++, length,
+                organisms[choose(organismWeights)],
+                random.nextInt(maxSecondaries + 1));
+        }
+        counter.flush();
+        return counter.count;
+    }
+
+    /**
+     * Chooses an index at random according to cumulative weights
+     * @assumes Nothing
+     * @effects Nothing
+     * @param cumulative cumulative weights
+     * @return the index chosen
+     * @throws Nothing
+     */
+
+    private int choose(double[] cumulative) {
+        double r = random.nextDouble() * cumulative[cumulative.length - 1];
+        for (int i = 0; i < cumulative.length - 1; i++) {
+            if (r < cumulative[i]) {
+                return i;
+            }
+        }
+        return cumulative.length - 1;
+    }
+
+    /**
+     * Parses name:weight pairs into names and cumulative weights
+     * @assumes 'names' and 'cumulative' are the length of 'pairs'
+     * @effects fills 'names' and 'cumulative'
+     * @throws IllegalArgumentException if a pair has no weight
+     */
+
+    private static void parseWeights(String[] pairs, String[] names,
+                                      double[] cumulative) {
+        double total = 0;
+        for (int i = 0; i < pairs.length; i++) {
+            int colon = pairs[i].indexOf(':');
+            if (colon < 0) {
+                throw new IllegalArgumentException("No weight: " + pairs[i]);
+            }
+            names[i] = pairs[i].substring(0, colon).trim();
+            total += Double.parseDouble(pairs[i].substring(colon + 1).trim());
+            cumulative[i] = total;
+        }
+    }
+
+    private static int indexOf(String[] a, String s) {
+        for (int i = 0; i < a.length; i++) {
+            if (a[i].equals(s)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parses a size in bytes with an optional K, M or G suffix
+     * @assumes Nothing
+     * @effects Nothing
+     * @param s the size
+     * @return the size in bytes
+     * @throws NumberFormatException if 's' is not a size
+     */
+
+    private static long parseSize(String s) {
+        long unit = 1;
+        char c = Character.toUpperCase(s.charAt(s.length() - 1));
+        if (c == 'K' || c == 'M' || c == 'G') {
+            unit = c == 'K' ? 1024L : c == 'M' ? 1024L * 1024 :
+                1024L * 1024 * 1024;
+            s = s.substring(0, s.length() - 1);
+        }
+        return Long.parseLong(s) * unit;
+    }
+
+    /**
+     * Gets the name of the n'th of several output files, numbered before
+     * any '.gz' suffix e.g. refseq.2.gz
+     * @assumes Nothing
+     * @effects Nothing
+     * @return the file name
+     * @throws Nothing
+     */
+
+    private static String numberedFileName(String outputFile, int n) {
+        if (outputFile.endsWith(".gz")) {
+            return outputFile.substring(0, outputFile.length() - 3) + "." +
+                n + ".gz";
+        }
+        return outputFile + "." + n;
+    }
+
+    /**
+     * @is a Writer that counts the characters written to another Writer
+     * @has the Writer and the count
+     * @does writes through and counts
+     * @company The Jackson Laboratory
+     * @author sc
+     * @version 1.0
+     */
+
+    private static class CountingWriter extends Writer {
+        private Writer out;
+        private long count = 0;
+
+        private CountingWriter(Writer out) {
+            this.out = out;
+        }
+
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            out.write(cbuf, off, len);
+            count += len;
+        }
+
+        public void write(String str, int off, int len) throws IOException {
+            out.write(str, off, len);
+            count += len;
+        }
+
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package org.jax.mgi.app.refseqload;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.jax.mgi.shr.exception.MGIException;
+
+/**
+ * @is The live status of a running refseqload, published as a JMX MBean and
+ *     optionally as plain text from a local HTTP endpoint
+ * @has
+ *   <UL>
+ *   <LI>The RefSeqidPrefixChecker of the load, for its decider counts
+ *   <LI>The LoadMetrics of the load, for its record and byte counts and the
+ *       current input file
+ *   <LI>Optionally an HttpServer bound to the loopback address
+ *   </UL>
+ * @does
+ *   <UL>
+ *   <LI>Registers itself with the platform MBeanServer as
+ *       org.jax.mgi.app.refseqload:type=RefSeqLoadStatus, see
+ *       RefSeqLoadStatusMBean for its attributes
+ *   <LI>Serves the same attributes, one 'name: value' line each, at
+ *       http://localhost:port/status
+ *   <LI>Reads counters which are updated lock free by the load threads, so
+ *       it never blocks the load
+ *   </UL>
+ * @notes The MBean can be read locally with jconsole, or remotely with the
+ *        standard com.sun.management.jmxremote JVM options
+ * @company The Jackson Laboratory
+ * @author sc
+ * @version 1.0
+ */
+
+public class RefSeqLoadStatus implements RefSeqLoadStatusMBean {
+
+    // the name of the MBean
+    private static final String MBEAN_NAME =
+        "org.jax.mgi.app.refseqload:type=RefSeqLoadStatus";
+
+    // the prefix checker of the load
+    private RefSeqidPrefixChecker prefixChecker;
+
+    // the metrics of the load
+    private LoadMetrics metrics = LoadMetrics.getInstance();
+
+    // the registered name, null if not registered
+    private ObjectName name = null;
+
+    // the status endpoint, null if not started
+    private HttpServer server = null;
+
+    /**
+     * Constructs a RefSeqLoadStatus
+     * @assumes Nothing
+     * @effects Nothing
+     * @param pc the prefix checker of the load
+     * @throws Nothing
+     */
+
+    public RefSeqLoadStatus(RefSeqidPrefixChecker pc) {
+        this.prefixChecker = pc;
+    }
+
+    /**
+     * Registers the MBean and, if 'port' > 0, starts the status endpoint
+     * @assumes Nothing
+     * @effects registers an MBean and starts an HTTP server thread
+     * @param port local port of the status endpoint, 0 for none
+     * @throws MGIException if the MBean cannot be registered or the
+     *         endpoint cannot be started
+     */
+
+    public void start(int port) throws MGIException {
+        try {
+            MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+            name = new ObjectName(MBEAN_NAME);
+            if (mbs.isRegistered(name)) {
+                mbs.unregisterMBean(name);
+            }
+            mbs.registerMBean(this, name);
+        }
+        catch (Exception e) {
+            throw new MGIException("Cannot register MBean " + MBEAN_NAME +
+                ": " + e.getMessage(), false);
+        }
+        if (port <= 0) {
+            return;
+        }
+        try {
+            server = HttpServer.create(new InetSocketAddress(
+                InetAddress.getByName(null), port), 0);
+        }
+        catch (IOException e) {
+            throw new MGIException("Cannot start status endpoint on port " +
+                port + ": " + e.getMessage(), false);
+        }
+        server.createContext("/status", new StatusHandler());
+        server.setExecutor(null);
+        server.start();
+    }
+
+    /**
+     * Stops the status endpoint and unregisters the MBean
+     * @assumes Nothing
+     * @effects stops the HTTP server thread and unregisters the MBean
+     * @throws Nothing
+     */
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+        if (name != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(
+                    name);
+            }
+            catch (Exception e) {
+                // already unregistered
+            }
+            name = null;
+        }
+    }
+
+    public long getRecordsChecked() {
+        return prefixChecker.getTotalCount();
+    }
+
+    public long getRecordsAccepted() {
+        return prefixChecker.getTrueCount();
+    }
+
+    public long getRecordsRejected() {
+        return prefixChecker.getCounts().getTotalRejected();
+    }
+
+    public long getRecordsUnchanged() {
+        return metrics.getUnchanged();
+    }
+
+    public long getRecordsLoaded() {
+        return metrics.getCount(LoadMetrics.WAIT);
+    }
+
+    public String[] getPrefixCounts() {
+        String[] names = prefixChecker.getDeciderNames();
+        String[] counts = new String[names.length];
+        for (int i = 0; i < names.length; i++) {
+            counts[i] = names[i] + "=" +
+                prefixChecker.getDeciderCount(names[i]);
+        }
+        return counts;
+    }
+
+    public String getCurrentInputFile() {
+        return metrics.getCurrentFile();
+    }
+
+    public long getInputBytesConsumed() {
+        return metrics.getFileBytes();
+    }
+
+    public long getInputBytesRead() {
+        return metrics.getBytes();
+    }
+
+    public long getInputSize() {
+        return metrics.getInputSize();
+    }
+
+    public long getResidueMismatches() {
+        return metrics.getResidueMismatches();
+    }
+
+    public long getHeapUsed() {
+        return getHeap().getUsed();
+    }
+
+    public long getHeapMax() {
+        return getHeap().getMax();
+    }
+
+    public long getElapsedSeconds() {
+        return Math.round(metrics.getElapsedSeconds());
+    }
+
+    public long getEstimatedSecondsRemaining() {
+        return Math.round(metrics.getEstimatedSecondsRemaining());
+    }
+
+    /**
+     * Gets the status as text
+     * @assumes Nothing
+     * @effects Nothing
+     * @return one 'name: value' line per attribute
+     * @throws Nothing
+     */
+
+    public String toString() {
+        StringBuffer s = new StringBuffer();
+        s.append("recordsChecked: ").append(getRecordsChecked());
+        s.append("\n");
+        s.append("recordsAccepted: ").append(getRecordsAccepted());
+        s.append("\n");
+        s.append("recordsRejected: ").append(getRecordsRejected());
+        s.append("\n");
+        s.append("recordsUnchanged: ").append(getRecordsUnchanged());
+        s.append("\n");
+        s.append("recordsLoaded: ").append(getRecordsLoaded()).append("\n");
+        String[] counts = getPrefixCounts();
+        for (int i = 0; i < counts.length; i++) {
+            int eq = counts[i].indexOf('=');
+            s.append("accepted.").append(counts[i].substring(0, eq));
+            s.append(": ").append(counts[i].substring(eq + 1)).append("\n");
+        }
+        s.append("currentInputFile: ").append(getCurrentInputFile());
+        s.append("\n");
+        s.append("inputBytesConsumed: ").append(getInputBytesConsumed());
+        s.append("\n");
+        s.append("inputBytesRead: ").append(getInputBytesRead()).append("\n");
+        s.append("inputSize: ").append(getInputSize()).append("\n");
+        s.append("residueMismatches: ").append(getResidueMismatches());
+        s.append("\n");
+        s.append("heapUsed: ").append(getHeapUsed()).append("\n");
+        s.append("heapMax: ").append(getHeapMax()).append("\n");
+        s.append("elapsedSeconds: ").append(getElapsedSeconds()).append("\n");
+        s.append("estimatedSecondsRemaining: ");
+        s.append(getEstimatedSecondsRemaining()).append("\n");
+        return s.toString();
+    }
+
+    private static MemoryUsage getHeap() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+    }
+
+    /**
+     * @is the HttpHandler of the status endpoint
+     * @has Nothing
+     * @does responds to each request with the status as plain text
+     * @company The Jackson Laboratory
+     * @author sc
+     * @version 1.0
+     */
+
+    private class StatusHandler implements HttpHandler {
+        public void handle(HttpExchange exchange) throws IOException {
+            byte[] body = RefSeqLoadStatus.this.toString().getBytes(
+                GBRecordReader.CHARSET);
+            exchange.getResponseHeaders().set("Content-Type",
+                "text/plain; charset=ISO-8859-1");
+            exchange.sendResponseHeaders(200, body.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(body);
+            out.close();
+        }
+    }
+}
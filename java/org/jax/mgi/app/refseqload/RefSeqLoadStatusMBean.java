@@ -0,0 +1,95 @@
+package org.jax.mgi.app.refseqload;
+
+/**
+ * @is The JMX management interface of a running refseqload, see
+ *     RefSeqLoadStatus
+ * @has Nothing
+ * @does Defines the read only attributes of the load's progress
+ * @company The Jackson Laboratory
+ * @author sc
+ * @version 1.0
+ */
+
+public interface RefSeqLoadStatusMBean {
+
+    /**
+     * @return the number of records for an organism we load whose seqid
+     *         prefix was checked; records of other organisms are not
+     *         counted
+     */
+    public long getRecordsChecked();
+
+    /**
+     * @return the number of records for an organism and seqid prefix we load
+     */
+    public long getRecordsAccepted();
+
+    /**
+     * @return the number of records for an organism we load rejected for
+     *         their seqid prefix
+     */
+    public long getRecordsRejected();
+
+    /**
+     * @return the number of records for an organism and seqid prefix we load
+     *         rejected as unchanged since they were last loaded
+     */
+    public long getRecordsUnchanged();
+
+    /**
+     * @return the number of SequenceInput objects given to the loader
+     */
+    public long getRecordsLoaded();
+
+    /**
+     * @return the number of records accepted for each prefix decider, one
+     *         'prefix=count' String per decider
+     */
+    public String[] getPrefixCounts();
+
+    /**
+     * @return the input file being read, null if unknown
+     */
+    public String getCurrentInputFile();
+
+    /**
+     * @return the bytes of the input files consumed, before decompression
+     */
+    public long getInputBytesConsumed();
+
+    /**
+     * @return the bytes of input read, after decompression
+     */
+    public long getInputBytesRead();
+
+    /**
+     * @return the total size of the input files, -1 if unknown
+     */
+    public long getInputSize();
+
+    /**
+     * @return the number of records whose residue count is not their LOCUS
+     *         length, see APP_SKIP_RESIDUES
+     */
+    public long getResidueMismatches();
+
+    /**
+     * @return the heap in use in bytes
+     */
+    public long getHeapUsed();
+
+    /**
+     * @return the max heap in bytes
+     */
+    public long getHeapMax();
+
+    /**
+     * @return seconds since the load started reading input
+     */
+    public long getElapsedSeconds();
+
+    /**
+     * @return estimated seconds until all input is read, -1 if unknown
+     */
+    public long getEstimatedSecondsRemaining();
+}
@@ -0,0 +1,176 @@
+package org.jax.mgi.app.refseqload;
+
+import java.util.Arrays;
+import java.util.Vector;
+
+import org.jax.mgi.shr.dla.loader.seq.SeqloaderConstants;
+import org.jax.mgi.shr.config.ConfigException;
+import org.jax.mgi.shr.config.RefSeqidPrefixCheckerCfg;
+
+/**
+ * @is The RefSeq seqid prefixes known to the load, loaded from
+ *     configuration and compiled into a lookup table by prefix slot
+ *     (see RefSeqidPrefixChecker.getSlot)
+ * @has
+ *   <UL>
+ *   <LI>The configured prefixes, in configuration order
+ *   <LI>A bitset of the prefixes we load, indexed by prefix slot
+ *   <LI>The sequence quality of each prefix, indexed by prefix slot
+ *   </UL>
+ * @does
+ *   <UL>
+ *   <LI>Reads the prefix list and the enabled flag of each prefix from a
+ *       RefSeqidPrefixCheckerCfg, so a new NCBI prefix needs only a
+ *       configuration change
+ *   <LI>Reads the prefixes of the high and low quality tiers; all other
+ *       prefixes are medium quality
+ *   <LI>Determines if a prefix is loaded, and its sequence quality, each
+ *       with a single table lookup
+ *   </UL>
+ * @notes Not modified after construction, so may be shared by any number
+ *        of threads
+ * @company The Jackson Laboratory
+ * @author sc
+ * @version 1.0
+ */
+
+public class RefSeqPrefixRegistry {
+
+    // the configured prefixes e.g. 'NM'
+    private String[] prefixes;
+
+    // bitset of the prefixes we load, indexed by slot
+    private long[] enabledSlots =
+        new long[(PrefixCounters.PREFIX_SLOTS + 63) / 64];
+
+    // sequence quality e.g. SeqloaderConstants.HIGH_QUAL, indexed by slot
+    private String[] qualities = new String[PrefixCounters.PREFIX_SLOTS];
+
+    /**
+     * Constructs a RefSeqPrefixRegistry from configuration
+     * @assumes Nothing
+     * @effects Nothing
+     * @param config the configuration of the prefixes
+     * @throws ConfigException if a configured prefix is not two uppercase
+     *         letters, its enabled flag is not a boolean or it is in more
+     *         than one quality tier
+     */
+
+    public RefSeqPrefixRegistry(RefSeqidPrefixCheckerCfg config)
+        throws ConfigException {
+        prefixes = config.getPrefixes();
+        for (int i = 0; i < prefixes.length; i++) {
+            int slot = getSlot(prefixes[i]);
+            if (config.getLoadPrefix(prefixes[i]).booleanValue()) {
+                enabledSlots[slot >> 6] |= 1L << (slot & 63);
+            }
+        }
+        Arrays.fill(qualities, SeqloaderConstants.MED_QUAL);
+        setQuality(config.getHighQualityPrefixes(),
+            SeqloaderConstants.HIGH_QUAL);
+        setQuality(config.getLowQualityPrefixes(),
+            SeqloaderConstants.LOW_QUAL);
+    }
+
+    /**
+     * Gets the configured prefixes
+     * @assumes Nothing
+     * @effects Nothing
+     * @return the prefixes in configuration order
+     * @throws Nothing
+     */
+
+    public String[] getPrefixes() {
+        return (String[])prefixes.clone();
+    }
+
+    /**
+     * Gets the prefixes we load
+     * @assumes Nothing
+     * @effects Nothing
+     * @return the enabled prefixes in configuration order
+     * @throws Nothing
+     */
+
+    public String[] getEnabledPrefixes() {
+        Vector v = new Vector();
+        for (int i = 0; i < prefixes.length; i++) {
+            if (isEnabled(RefSeqidPrefixChecker.getSlot(prefixes[i], 0))) {
+                v.add(prefixes[i]);
+            }
+        }
+        return (String[])v.toArray(new String[v.size()]);
+    }
+
+    /**
+     * Determines if we load a prefix
+     * @assumes Nothing
+     * @effects Nothing
+     * @param slot a prefix slot as returned by RefSeqidPrefixChecker.getSlot
+     * @return true if the prefix is configured and enabled
+     * @throws Nothing
+     */
+
+    public boolean isEnabled(int slot) {
+        return slot > -1 &&
+            (enabledSlots[slot >> 6] & (1L << (slot & 63))) != 0;
+    }
+
+    /**
+     * Gets the sequence quality of a prefix
+     * @assumes Nothing
+     * @effects Nothing
+     * @param slot a prefix slot as returned by RefSeqidPrefixChecker.getSlot
+     * @return the quality e.g. SeqloaderConstants.HIGH_QUAL; medium quality
+     *         if 'slot' is -1
+     * @throws Nothing
+     */
+
+    public String getQuality(int slot) {
+        return slot < 0 ? SeqloaderConstants.MED_QUAL : qualities[slot];
+    }
+
+    /**
+     * Sets the quality of the prefixes of a tier
+     * @assumes Nothing
+     * @effects Nothing
+     * @param tier the prefixes
+     * @param quality the quality of the tier
+     * @throws ConfigException if a prefix is not two uppercase letters or
+     *         is already in another tier
+     */
+
+    private void setQuality(String[] tier, String quality)
+        throws ConfigException {
+        for (int i = 0; i < tier.length; i++) {
+            if (tier[i].length() == 0) {
+                continue;
+            }
+            int slot = getSlot(tier[i]);
+            if (qualities[slot] != SeqloaderConstants.MED_QUAL) {
+                throw new ConfigException("Prefix " + tier[i] +
+                    " is in more than one quality tier", false);
+            }
+            qualities[slot] = quality;
+        }
+    }
+
+    /**
+     * Gets the slot of a configured prefix
+     * @assumes Nothing
+     * @effects Nothing
+     * @param prefix the prefix
+     * @return the prefix slot
+     * @throws ConfigException if 'prefix' is not two uppercase letters
+     */
+
+    private static int getSlot(String prefix) throws ConfigException {
+        int slot = prefix.length() == 2 ?
+            RefSeqidPrefixChecker.getSlot(prefix, 0) : -1;
+        if (slot < 0) {
+            throw new ConfigException("Not a RefSeq seqid prefix: '" +
+                prefix + "'", false);
+        }
+        return slot;
+    }
+}
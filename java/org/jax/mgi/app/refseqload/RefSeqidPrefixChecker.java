@@ -1,9 +1,7 @@
 package org.jax.mgi.app.refseqload;
 
 import java.util.*;
-import java.util.regex.*;
 
-import org.jax.mgi.shr.dla.input.SeqDecider;
 import org.jax.mgi.shr.dla.loader.seq.SeqloaderConstants;
 import org.jax.mgi.shr.config.RefSeqidPrefixCheckerCfg;
 import org.jax.mgi.shr.config.ConfigException;
@@ -13,24 +11,26 @@ import org.jax.mgi.shr.dla.log.DLALoggingException;
 
 /**
  * @is An object that, given a GenBank format sequence record and a set of
- *     SeqDeciders representing Refseq seqid prefixes, determines if any of
- *     the deciders are true for
- *     the sequence record e.g. Given three deciders, NM, NR, and NP: given the
- *     Refseq seqid NM_12345 returns true, given the Refseq seqid XM_12345
- *     returns false
+ *     Refseq seqid prefixes, determines if the primary seqid of the
+ *     sequence record has one of the prefixes e.g. Given three prefixes,
+ *     NM, NR, and NP: given the Refseq seqid NM_12345 returns true, given
+ *     the Refseq seqid XM_12345 returns false
  * @has
  *   <UL>
  *   <LI>A sequence record
- *   <LI>A set of SeqDeciders; each a predicate to identify a given prefix
+ *   <LI>A RefSeqPrefixRegistry of the prefixes we load
  *   </UL>
  * @does
  *   <UL>
- *   <LI>Finds the ACCESSION section of a sequence record
- *   <LI>Determines the set of deciders from an RefseqPrefixCheckerCfg
- *       configurator
- *   <LI>Queries each decider; Determines if the seqid is for a
- *       prefix represented by a decider
+ *   <LI>Finds the ACCESSION line in the header of a sequence record
+ *   <LI>Loads the prefixes from an RefseqPrefixCheckerCfg configurator
+ *       into a RefSeqPrefixRegistry
+ *   <LI>Determines if the primary seqid is for a prefix we load with a
+ *       single table lookup
  *   </UL>
+ * @notes checkPrefix may be called by several threads at once; the lookup
+ *        table is not modified after construction and counts are kept in
+ *        64-bit striped counters, see PrefixCounters
  * @company The Jackson Laboratory
  * @author sc
  * @version 1.0
@@ -46,28 +46,26 @@ public class RefSeqidPrefixChecker {
     // because in the case of organism being 'Mus sp.' it stops and does not
     // get the full classification
     //private static final String EXPRESSION = "ORGANISM([^.]+).*";
-    private static final String ACC_EXPRESSION = "ACCESSION([^\\n]*)\\n";
-    private Pattern accPattern;
-    private Matcher accMatcher;
 
-    // true if any decider returns true
-    private boolean isA;
+    // GenBank keywords; the ACCESSION line is searched for only in the
+    // record header i.e. up to the FEATURES or ORIGIN line
+    private static final String ACCESSION = "ACCESSION";
+    private static final String FEATURES = "FEATURES";
+    private static final String ORIGIN = "ORIGIN";
 
-    // count of total records looked at
-    private int totalCtr = 0;
+    // number of two letter prefixes 'AA' through 'ZZ'
+    private static final int PREFIX_SLOTS = PrefixCounters.PREFIX_SLOTS;
 
-    // count of records for which RefseqIdPrefixChecker.checkOrganism returns true
-    private int trueCtr = 0;
+    // the prefixes we load, by slot
+    private RefSeqPrefixRegistry registry;
 
-    // the set of organism deciders to query
-    private Vector deciders;
+    // counts of records for each prefix slot for which checkPrefix
+    // returns true and false
+    private PrefixCounters counters = new PrefixCounters();
 
-    // Configurator to determine organisms to check
+    // Configurator to determine prefixes to check
     private RefSeqidPrefixCheckerCfg config;
 
-    // returns true if a given seqid has a given prefix
-    private RefSeqIdPrefixInterrogator ri;
-
     // The logicalDB of the DataProvider that uses GenBank format
     private String logicalDB;
 
@@ -75,8 +73,8 @@ public class RefSeqidPrefixChecker {
     private DLALogger logger;
 
     /**
-    * Constructs an OrganismChecker for a given provider with a set of
-    * deciders
+    * Constructs a RefSeqidPrefixChecker with the prefixes of a
+    * RefSeqPrefixRegistry loaded from configuration
     * @assumes nothing
     * @effects nothing
     * @throws ConfigException if error accessing Configuration
@@ -86,692 +84,272 @@ public class RefSeqidPrefixChecker {
     public RefSeqidPrefixChecker () throws ConfigException, DLALoggingException {
         // create a configurator to get Prefixes from configuration
         config = new RefSeqidPrefixCheckerCfg();
-
-        // create an interrogator to determine a seqid's prefix
-        ri = new RefSeqIdPrefixInterrogator();
-
-        // Get the deciders from configuration
-        deciders = new Vector();
-        if (config.getNM().equals(Boolean.TRUE)) {
-          deciders.add(new NMDecider());
-        }
-        if (config.getNR().equals(Boolean.TRUE)) {
-          deciders.add(new NRDecider());
-        }
-        if (config.getNP().equals(Boolean.TRUE)) {
-          deciders.add(new NPDecider());
-        }
-        if (config.getNC().equals(Boolean.TRUE)) {
-          deciders.add(new NCDecider());
-        }
-        if (config.getNG().equals(Boolean.TRUE)) {
-          deciders.add(new NGDecider());
-        }
-        if (config.getNT().equals(Boolean.TRUE)) {
-          deciders.add(new NTDecider());
-        }
-        if (config.getNW().equals(Boolean.TRUE)) {
-          deciders.add(new NWDecider());
-        }
-        if (config.getNZ().equals(Boolean.TRUE)) {
-          deciders.add(new NZDecider());
-        }
-        if (config.getZP().equals(Boolean.TRUE)) {
-          deciders.add(new ZPDecider());
-        }
-	    if (config.getXM().equals(Boolean.TRUE)) {
-          deciders.add(new XMDecider());
-        }
-        if (config.getXR().equals(Boolean.TRUE)) {
-          deciders.add(new XRDecider());
-        }
-        if (config.getXP().equals(Boolean.TRUE)) {
-          deciders.add(new XPDecider());
-        }
-
-        // compile expression to find the classification section of a record
-        accPattern = Pattern.compile(ACC_EXPRESSION);
+        registry = new RefSeqPrefixRegistry(config);
         logger = DLALogger.getInstance();
     }
 
     /**
-    * Determines if a sequence record seqid prefix
-    * represented by the set of deciders
+    * Determines if a sequence record seqid prefix is one we load
     * @assumes Nothing
     * @effects Nothing
-    * @return true if sequence record prefix is represented by one of
-    *         the deciders.
+    * @return true if sequence record prefix is enabled in the
+    *         registry.
     * @throws Nothing
     */
 
     public boolean checkPrefix(String record) {
-        totalCtr++;
-        // reset
-        isA = false;
-
-        // find the ACCESSION line of this record
-        accMatcher = accPattern.matcher(record);
-
-        if (accMatcher.find() == true) {
-            // Determine if we are interested in this sequence
-            Iterator i = deciders.iterator();
-            while (i.hasNext()) {
-                SeqDecider currentDecider = (SeqDecider)i.next();
-                String group = accMatcher.group(1);
-                // m.group(1) is the
-                if(currentDecider.isA(group)) {
-                    trueCtr++;
-                    isA = true;
-                    break;
-                }
-            }
-
-        }
-        /*
-        if (isA == false) {
-            logger.logdDebug("Not a valid record: " + record, true);
-        }
-        */
-        return isA;
-      }
-
-    public boolean isPrefix(String seqid, String prefix ) {
-        return ri.isPrefix(seqid, prefix);
-
+        return checkPrefixSlot(record) > -1;
     }
 
     /**
-    * Gets the total records looked at, the total records for which checkOrganism
-    *  returned true and the count of records for which each decider returned true.
+    * Determines if a sequence record seqid prefix is one we load, and
+    * which it is
     * @assumes Nothing
     * @effects Nothing
-    * @return Vector of Strings, each String contains the decider name
-    *         and the count of records for which the decider returned true
+    * @return the prefix slot of the record (see getSlot) if its prefix is
+    *         enabled in the registry, else -1
     * @throws Nothing
     */
-    public Vector getDeciderCounts () {
-      Vector v = new Vector();
-      v.add("Total records looked at: " + totalCtr + SeqloaderConstants.CRT);
-      v.add("Total records processed: " + trueCtr + SeqloaderConstants.CRT);
-      Iterator i = deciders.iterator();
-            while (i.hasNext()) {
-              SeqDecider d = (SeqDecider)i.next();
-              String s = "Total " + d.getName() + " records processed: " +
-                  d.getTrueCtr() + SeqloaderConstants.CRT;
-              v.add(s);
-            }
-            return v;
-    }
-      /**
-       * @is an object that applies this predicate to the ACCESSION line
-       * of a Refseq sequence record "Is the seqid prefix NM?"
-       * @has A name, see also superclass
-       * @does Returns true if seqid prefix is NM
-       * @company The Jackson Laboratory
-       * @author sc
-       * @version 1.0
-       */
-
-      private class NMDecider extends SeqDecider {
-        /**
-         * Constructs a NMDecider object with the name "NM" which
-         * is controlled vocabulary used by the RefSeqIdPrefixInterrogator
-         * @assumes Nothing
-         * @effects Nothing
-         * @param None
-         * @throws Nothing
-         */
-
-        protected NMDecider() {
-          super ("NM");
-        }
-
-        /**
-         * Determines if 'seqid' has prefix 'NM_' Counts total
-   	     * seqids processed and total for which the predicate is true.
-         * @assumes Nothing
-         * @effects Nothing
-         * @param seqid A RefSeq seqid
-         * @return true if this predicate is true for 'seqid'
-         * @throws MGIException if the sequence interrogator does not support
-         *         this decider.
-         */
-
-        protected boolean is(String seqid) {
-          return ri.isPrefix(seqid, name);
-       }
-     }
 
-    /**
-     * @is an object that applies this predicate to the ACCESSION line
-     * of a Refseq sequence record "Is the seqid prefix NR?"
-     * @has A name, see also superclass
-     * @does Returns true if seqid prefix is NR
-     * @company The Jackson Laboratory
-     * @author sc
-     * @version 1.0
-     */
-
-      private class NRDecider extends SeqDecider {
-
-        /**
-         * Constructs a NRDecider object with the name "NR" which
-         * is controlled vocabulary used by the RefSeqIdPrefixInterrogator
-         * @assumes Nothing
-         * @effects Nothing
-         * @param None
-         * @throws Nothing
-         */
-
-        protected NRDecider() {
-          super ("NR");
-        }
-
-        /**
-         * Determines if 'seqid' has prefix 'NR_' Counts total
-         * seqids processed and total for which the predicate is true.
-         * @assumes Nothing
-         * @effects Nothing
-         * @param seqid A RefSeq seqid
-         * @return true if this predicate is true for 'seqid'
-         * @throws MGIException if the sequence interrogator does not support
-         *         this decider.
-         */
-
-        protected boolean is(String seqid) {
-          return ri.isPrefix(seqid, name);
-       }
-     }
-
-      /**
-       * @is an object that applies this predicate to the ACCESSION line
-       * of a Refseq sequence record "Is the seqid prefix NP?"
-       * @has A name, see also superclass
-       * @does Returns true if seqid prefix is NP
-       * @company The Jackson Laboratory
-       * @author sc
-       * @version 1.0
-       */
-
-      private class NPDecider extends SeqDecider {
-
-        /**
-         * Constructs a NPDecider object with the name "NP" which
-         * is controlled vocabulary used by the RefSeqIdPrefixInterrogator
-         * @assumes Nothing
-         * @effects Nothing
-         * @param None
-         * @throws Nothing
-         */
-
-        protected NPDecider() {
-          super ("NP");
-        }
-
-        /**
-         * Determines if 'seqid' has prefix 'NP_' Counts total
-         * seqids processed and total for which the predicate is true.
-         * @assumes Nothing
-         * @effects Nothing
-         * @param seqid A RefSeq seqid
-         * @return true if this predicate is true for 'seqid'
-         * @throws MGIException if the sequence interrogator does not support
-         *         this decider.
-         */
-
-        protected boolean is(String seqid) {
-          return ri.isPrefix(seqid, name);
-       }
-     }
-
-     /**
-      * @is an object that applies this predicate to the ACCESSION line
-      * of a Refseq sequence record "Is the seqid prefix NC?"
-      * @has A name, see also superclass
-      * @does Returns true if seqid prefix is NC
-      * @company The Jackson Laboratory
-      * @author sc
-      * @version 1.0
-      */
-
-     private class NCDecider extends SeqDecider {
-       /**
-        * Constructs a NCDecider object with the name "NC" which
-        * is controlled vocabulary used by the RefSeqIdPrefixInterrogator
-        * @assumes Nothing
-        * @effects Nothing
-        * @param None
-        * @throws Nothing
-        */
-
-       protected NCDecider() {
-         super ("NC");
-       }
-
-       /**
-        * Determines if 'seqid' has prefix 'NC_' Counts total
-           * seqids processed and total for which the predicate is true.
-        * @assumes Nothing
-        * @effects Nothing
-        * @param seqid A RefSeq seqid
-        * @return true if this predicate is true for 'seqid'
-        * @throws MGIException if the sequence interrogator does not support
-        *         this decider.
-        */
-
-       protected boolean is(String seqid) {
-         return ri.isPrefix(seqid, name);
-      }
+    public int checkPrefixSlot(String record) {
+        // find the primary seqid on the ACCESSION line of this record
+        return checkPrefixSlot(record, findPrimarySeqid(record));
     }
 
     /**
-     * @is an object that applies this predicate to the ACCESSION line
-     * of a Refseq sequence record "Is the seqid prefix NG?"
-     * @has A name, see also superclass
-     * @does Returns true if seqid prefix is NG
-     * @company The Jackson Laboratory
-     * @author sc
-     * @version 1.0
-     */
-
-    private class NGDecider extends SeqDecider {
-
-      /**
-       * Constructs a NGDecider object with the name "NG" which
-       * is controlled vocabulary used by the RefSeqIdPrefixInterrogator
-       * @assumes Nothing
-       * @effects Nothing
-       * @param None
-       * @throws Nothing
-       */
+    * Determines if a sequence record seqid prefix is one we load, and
+    * which it is, given the offset of its primary seqid
+    * @assumes Nothing
+    * @effects Nothing
+    * @param record A GenBank sequence record, or its header
+    * @param seqid offset of the primary seqid in 'record', -1 if it has
+    *        none, see RecordParseContext
+    * @return the prefix slot of the record (see getSlot) if its prefix is
+    *         enabled in the registry, else -1
+    * @throws Nothing
+    */
 
-      protected NGDecider() {
-        super ("NG");
+    public int checkPrefixSlot(String record, int seqid) {
+        // determine if we are interested in this sequence
+        return countSlot(getSlot(record, seqid));
       }
 
-      /**
-       * Determines if 'seqid' has prefix 'NG_' Counts total
-       * seqids processed and total for which the predicate is true.
-       * @assumes Nothing
-       * @effects Nothing
-       * @param seqid A RefSeq seqid
-       * @return true if this predicate is true for 'seqid'
-       * @throws MGIException if the sequence interrogator does not support
-       *         this decider.
-       */
-
-      protected boolean is(String seqid) {
-        return ri.isPrefix(seqid, name);
-     }
-   }
-   /**
-    * @is an object that applies this predicate to the ACCESSION line
-    * of a Refseq sequence record "Is the seqid prefix NT?"
-    * @has A name, see also superclass
-    * @does Returns true if seqid prefix is NT
-    * @company The Jackson Laboratory
-    * @author sc
-    * @version 1.0
+    /**
+    * Determines if a prefix slot is one we load, without counting it
+    * @assumes Nothing
+    * @effects Nothing
+    * @param slot a prefix slot, see getSlot
+    * @return true if the prefix of 'slot' is enabled in the registry
+    * @throws Nothing
     */
 
-   private class NTDecider extends SeqDecider {
-
-     /**
-      * Constructs a NTDecider object with the name "NT" which
-      * is controlled vocabulary used by the RefSeqIdPrefixInterrogator
-      * @assumes Nothing
-      * @effects Nothing
-      * @param None
-      * @throws Nothing
-      */
-
-     protected NTDecider() {
-       super ("NT");
-     }
-
-     /**
-      * Determines if 'seqid' has prefix 'NT_' Counts total
-      * seqids processed and total for which the predicate is true.
-      * @assumes Nothing
-      * @effects Nothing
-      * @param seqid A RefSeq seqid
-      * @return true if this predicate is true for 'seqid'
-      * @throws MGIException if the sequence interrogator does not support
-      *         this decider.
-      */
-
-     protected boolean is(String seqid) {
-       return ri.isPrefix(seqid, name);
+    public boolean isEnabled(int slot) {
+        return registry.isEnabled(slot);
     }
-  }
 
-  /**
-   * @is an object that applies this predicate to the ACCESSION line
-   * of a Refseq sequence record "Is the seqid prefix NW?"
-   * @has A name, see also superclass
-   * @does Returns true if seqid prefix is NW
-   * @company The Jackson Laboratory
-   * @author sc
-   * @version 1.0
-   */
+    /**
+    * Counts a record with a prefix slot as looked at, and as accepted if
+    * the prefix is one we load
+    * @assumes Nothing
+    * @effects updates the prefix counts
+    * @param slot the prefix slot of the record, see getSlot
+    * @return 'slot' if its prefix is enabled in the registry, else -1
+    * @throws Nothing
+    */
 
-  private class NWDecider extends SeqDecider {
+    public int countSlot(int slot) {
+        // true if the prefix is one we load
+        boolean isA = registry.isEnabled(slot);
+        counters.count(slot, isA);
+        return isA ? slot : -1;
+    }
 
     /**
-     * Constructs a NWDecider object with the name "NW" which
-     * is controlled vocabulary used by the RefSeqIdPrefixInterrogator
+     * Determines whether a seqid has a particular prefix
      * @assumes Nothing
      * @effects Nothing
-     * @param None
+     * @param seqid A RefSeq seqid e.g. NM_12345
+     * @param prefix A RefSeq seqid prefix e.g. NM
+     * @return true if "seqid" has prefix "prefix"
      * @throws Nothing
      */
 
-    protected NWDecider() {
-      super ("NW");
+    public boolean isPrefix(String seqid, String prefix ) {
+        int slot = getSlot(seqid, 0);
+        return slot > -1 && slot == getSlot(prefix, 0);
     }
 
     /**
-     * Determines if 'seqid' has prefix 'NW_' Counts total
-     * seqids processed and total for which the predicate is true.
-     * @assumes Nothing
-     * @effects Nothing
-     * @param seqid A RefSeq seqid
-     * @return true if this predicate is true for 'seqid'
-     * @throws MGIException if the sequence interrogator does not support
-     *         this decider.
-     */
-
-    protected boolean is(String seqid) {
-      return ri.isPrefix(seqid, name);
-   }
- }
-
- /**
-  * @is an object that applies this predicate to the ACCESSION line
-  * of a Refseq sequence record "Is the seqid prefix NZ?"
-  * @has A name, see also superclass
-  * @does Returns true if seqid prefix is NZ
-  * @company The Jackson Laboratory
-  * @author sc
-  * @version 1.0
-  */
-
- private class NZDecider extends SeqDecider {
-
-   /**
-    * Constructs a NZDecider object with the name "NZ" which
-    * is controlled vocabulary used by the RefSeqIdPrefixInterrogator
+    * Gets the total records looked at, the total records for which checkPrefix
+    *  returned true and the count of records for each prefix we load.
+    *  Also the total records rejected, their share of records looked at and the
+    *  count of records rejected for each prefix we don't load
     * @assumes Nothing
     * @effects Nothing
-    * @param None
+    * @return Vector of Strings, each String contains the prefix
+    *         and the count of records for which checkPrefix returned true
     * @throws Nothing
     */
+    public Vector getDeciderCounts () {
+      PrefixCounters.Snapshot snapshot = counters.getSnapshot();
+      Vector v = new Vector();
+      v.add("Total records looked at: " + snapshot.getTotal() + SeqloaderConstants.CRT);
+      v.add("Total records processed: " + snapshot.getTotalAccepted() + SeqloaderConstants.CRT);
+      String[] prefixes = registry.getEnabledPrefixes();
+      for (int i = 0; i < prefixes.length; i++) {
+          v.add("Total " + prefixes[i] + " records processed: " +
+              snapshot.getAccepted(getSlot(prefixes[i], 0)) + SeqloaderConstants.CRT);
+      }
+      long total = snapshot.getTotal();
+      v.add("Total records rejected: " + snapshot.getTotalRejected() + " (" +
+          (total == 0 ? 0 : Math.round(snapshot.getTotalRejected() * 1000.0 / total) / 10.0) +
+          "%)" + SeqloaderConstants.CRT);
+      for (int slot = 0; slot < PREFIX_SLOTS; slot++) {
+          if (snapshot.getRejected(slot) > 0) {
+              v.add("Total " + PrefixCounters.getPrefix(slot) +
+                  " records rejected: " + snapshot.getRejected(slot) +
+                  SeqloaderConstants.CRT);
+          }
+      }
+      if (snapshot.getNoPrefix() > 0) {
+          v.add("Total records rejected with no RefSeq prefix: " +
+              snapshot.getNoPrefix() + SeqloaderConstants.CRT);
+      }
+      return v;
+    }
 
-   protected NZDecider() {
-     super ("NZ");
-   }
-
-   /**
-    * Determines if 'seqid' has prefix 'NZ_' Counts total
-    * seqids processed and total for which the predicate is true.
-    * @assumes Nothing
-    * @effects Nothing
-    * @param seqid A RefSeq seqid
-    * @return true if this predicate is true for 'seqid'
-    * @throws MGIException if the sequence interrogator does not support
-    *         this decider.
-    */
+    /**
+     * Gets the number of records looked at so far; may be called while
+     * other threads check prefixes
+     * @assumes Nothing
+     * @effects Nothing
+     * @return the number of records looked at
+     * @throws Nothing
+     */
+    public long getTotalCount() {
+        return counters.getSnapshot().getTotal();
+    }
 
-   protected boolean is(String seqid) {
-     return ri.isPrefix(seqid, name);
-  }
-}
+    /**
+     * Gets the number of records so far for which checkPrefix returned
+     * true; may be called while other threads check prefixes
+     * @assumes Nothing
+     * @effects Nothing
+     * @return the number of records accepted
+     * @throws Nothing
+     */
+    public long getTrueCount() {
+        return counters.getSnapshot().getTotalAccepted();
+    }
 
     /**
-     * @is an object that applies this predicate to the ACCESSION line
-     * of a Refseq sequence record "Is the seqid prefix ZP?"
-     * @has A name, see also superclass
-     * @does Returns true if seqid prefix is ZP
-     * @company The Jackson Laboratory
-     * @author sc
-     * @version 1.0
+     * Gets the prefixes we load
+     * @assumes Nothing
+     * @effects Nothing
+     * @return the prefixes e.g. 'NM'
+     * @throws Nothing
      */
+    public String[] getDeciderNames() {
+        return registry.getEnabledPrefixes();
+    }
 
-    private class ZPDecider extends SeqDecider {
+    /**
+     * Gets the registry of the prefixes we load
+     * @assumes Nothing
+     * @effects Nothing
+     * @return the registry
+     * @throws Nothing
+     */
+    public RefSeqPrefixRegistry getRegistry() {
+        return registry;
+    }
 
-      /**
-       * Constructs a ZPDecider object with the name "ZP" which
-       * is controlled vocabulary used by the RefSeqIdPrefixInterrogator
-       * @assumes Nothing
-       * @effects Nothing
-       * @param None
-       * @throws Nothing
-       */
+    /**
+     * Gets the number of records so far with a prefix for which
+     * checkPrefix returned true; may be called while other threads check
+     * prefixes
+     * @assumes Nothing
+     * @effects Nothing
+     * @param prefix a prefix e.g. 'NM'
+     * @return the number of records accepted with 'prefix', 0 if it is
+     *         not a prefix
+     * @throws Nothing
+     */
+    public long getDeciderCount(String prefix) {
+        int slot = getSlot(prefix, 0);
+        return slot < 0 ? 0 : counters.getAccepted(slot);
+    }
 
-      protected ZPDecider() {
-        super ("ZP");
-      }
+    /**
+     * Takes a snapshot of the counts of records accepted and rejected by
+     * prefix; may be called while other threads check prefixes
+     * @assumes Nothing
+     * @effects Nothing
+     * @return the counts
+     * @throws Nothing
+     */
+    public PrefixCounters.Snapshot getCounts() {
+        return counters.getSnapshot();
+    }
 
-      /**
-       * Determines if 'seqid' has prefix 'ZP_' Counts total
-       * seqids processed and total for which the predicate is true.
-       * @assumes Nothing
-       * @effects Nothing
-       * @param seqid A RefSeq seqid
-       * @return true if this predicate is true for 'seqid'
-       * @throws MGIException if the sequence interrogator does not support
-       *         this decider.
-       */
-
-      protected boolean is(String seqid) {
-        return ri.isPrefix(seqid, name);
-     }
-   }
-
-
-     /**
-      * @is an object that applies this predicate to the ACCESSION line
-      * of a Refseq sequence record "Is the seqid prefix XM?"
-      * @has A name, see also superclass
-      * @does Returns true if seqid prefix is XM
-      * @company The Jackson Laboratory
-      * @author sc
-      * @version 1.0
-      */
-
-      private class XMDecider extends SeqDecider {
-
-        /**
-         * Constructs a XMDecider object with the name "XM" which
-         * is controlled vocabulary used by the RefSeqIdPrefixInterrogator
-         * @assumes Nothing
-         * @effects Nothing
-         * @param None
-         * @throws Nothing
-         */
-
-        protected XMDecider() {
-          super ("XM");
+    /**
+     * Finds the primary seqid in a sequence record. Scans line by line
+     * and stops at the ACCESSION line or the end of the header
+     * @assumes Nothing
+     * @effects Nothing
+     * @param record A GenBank sequence record
+     * @return offset of the primary seqid in 'record', -1 if there is
+     *         no ACCESSION line in the header
+     * @throws Nothing
+     */
+    private static int findPrimarySeqid(String record) {
+        int len = record.length();
+        int lineStart = 0;
+        while (lineStart < len) {
+            if (record.startsWith(ACCESSION, lineStart)) {
+                int i = lineStart + ACCESSION.length();
+                while (i < len && record.charAt(i) == ' ') {
+                    i++;
+                }
+                return i;
+            }
+            if (record.startsWith(FEATURES, lineStart) ||
+                    record.startsWith(ORIGIN, lineStart)) {
+                return -1;
+            }
+            int eol = record.indexOf('\n', lineStart);
+            if (eol < 0) {
+                return -1;
+            }
+            lineStart = eol + 1;
         }
+        return -1;
+    }
 
-        /**
-         * Determines if 'seqid' has prefix 'XM_' Counts total
-   	     * seqids processed and total for which the predicate is true.
-         * @assumes Nothing
-         * @effects Nothing
-         * @param seqid A RefSeq seqid
-         * @return true if this predicate is true for 'seqid'
-         * @throws MGIException if the sequence interrogator does not support
-         *         this decider.
-         */
-
-        protected boolean is(String seqid) {
-          return ri.isPrefix(seqid, name);
-       }
-     }
-       /**
-       * @is an object that applies this predicate to the ACCESSION line
-       * of a Refseq sequence record "Is the seqid prefix XR?"
-       * @has A name, see also superclass
-       * @does Returns true if seqid prefix is XR
-       * @company The Jackson Laboratory
-       * @author sc
-       * @version 1.0
-       */
-
-      private class XRDecider extends SeqDecider {
-
-        /**
-         * Constructs a XRDecider object with the name "XR" which
-         * is controlled vocabulary used by the RefSeqIdPrefixInterrogator
-         * @assumes Nothing
-         * @effects Nothing
-         * @param None
-         * @throws Nothing
-         */
-
-        protected XRDecider() {
-          super ("XR");
+    /**
+     * Gets the prefix slot of a seqid i.e. its two letter prefix as an
+     * index from 0 ('AA') to 675 ('ZZ')
+     * @assumes Nothing
+     * @effects Nothing
+     * @param s a String containing a seqid
+     * @param offset offset of the seqid in 's'
+     * @return the prefix slot, -1 if 's' has no RefSeq prefix e.g. 'NM'
+     *         or 'NM_' at 'offset'
+     * @throws Nothing
+     */
+    static int getSlot(String s, int offset) {
+        if (offset < 0 || offset + 1 >= s.length()) {
+            return -1;
         }
-
-        /**
-         * Determines if 'seqid' has prefix 'XR_' Counts total
-   	 * seqids processed and total for which the predicate is true.
-         * @assumes Nothing
-         * @effects Nothing
-         * @param seqid A RefSeq seqid
-         * @return true if this predicate is true for 'seqid'
-         * @throws MGIException if the sequence interrogator does not support
-         *         this decider.
-         */
-
-        protected boolean is(String seqid) {
-          return ri.isPrefix(seqid, name);
-       }
-     }
-      /**
-      * @is an object that applies this predicate to the ACCESSION line
-      * of a Refseq sequence record "Is the seqid prefix XP?"
-      * @has A name, see also superclass
-      * @does Returns true if seqid prefix is XP
-      * @company The Jackson Laboratory
-      * @author sc
-      * @version 1.0
-      */
-
-     private class XPDecider extends SeqDecider {
-
-        /**
-         * Constructs a XPDecider object with the name "XP" which
-         * is controlled vocabulary used by the RefSeqIdPrefixInterrogator
-         * @assumes Nothing
-         * @effects Nothing
-         * @param None
-         * @throws Nothing
-         */
-
-        protected XPDecider() {
-          super ("XP");
+        char c1 = s.charAt(offset);
+        char c2 = s.charAt(offset + 1);
+        if (c1 < 'A' || c1 > 'Z' || c2 < 'A' || c2 > 'Z') {
+            return -1;
         }
-
-        /**
-         * Determines if 'seqid' has prefix 'XP_' Counts total
-         * seqids processed and total for which the predicate is true.
-         * @assumes Nothing
-         * @effects Nothing
-         * @param seqid A RefSeq seqid
-         * @return true if this predicate is true for 'seqid'
-         * @throws MGIException if the sequence interrogator does not support
-         *         this decider.
-         */
-
-        protected boolean is(String seqid) {
-          return ri.isPrefix(seqid, name);
-       }
-     }
-
-     /**
-        * @is an object that queries a Refseq seqid to determine if
-        *     it has a particular prefix
-        * @has a mapping of controlled vocabulary
-        *       to string expressions e.g. "NM" : "NM_"
-        * @does Given a Refseq seqid string, e.g. NM12345<BR>
-        *      and a controlled vocabulary string, e.g. "NM"<BR>
-        *      determine if the seqid has the prefix represented by "NM"
-        * @company The Jackson Laboratory
-        * @author sc
-        * @version 1.0
-        */
-
-   private class RefSeqIdPrefixInterrogator {
-
-       // a hash map data structure that maps seqid prefix controlled vocab
-       // to a String expression.
-       private String NM;
-       private String NR;
-       private String NP;
-       private String NC;
-       private String NG;
-       private String NT;
-       private String NW;
-       private String NZ;
-       private String ZP;
-       private String XM;
-       private String XR;
-       private String XP;
-
-       // load HashMap with controlled vocab keys and string expression values
-       private HashMap expressions = new HashMap();
-
-       protected RefSeqIdPrefixInterrogator() {
-          NM = "NM_";
-          NR = "NR_";
-          NP = "NP_";
-          NC = "NC_";
-          NG = "NG_";
-          NT = "NT_";
-          NW = "NW_";
-          NZ = "NZ_";
-          ZP = "ZP_";
-          XM = "XM_";
-          XR = "XR_";
-          XP = "XP_";
-          expressions.put("NM", NM);
-          expressions.put("NR", NR);
-          expressions.put("NP", NP);
-          expressions.put("NC", NC);
-          expressions.put("NG", NG);
-          expressions.put("NT", NT);
-          expressions.put("NW", NW);
-          expressions.put("NZ", NZ);
-          expressions.put("ZP", ZP);
-          expressions.put("XM", XM);
-          expressions.put("XR", XR);
-          expressions.put("XP", XP);
-
+        if (offset + 2 < s.length() && s.charAt(offset + 2) != '_' &&
+                !Character.isWhitespace(s.charAt(offset + 2))) {
+            return -1;
         }
-
-       /**
-        * Determines whether a seqid has a particular prefix
-        * @assumes "prefix" is a valid controlled vocabulary for "seqid"
-        * @effects Nothing
-        * @param seqid A GenBank sequence classification string
-        * @param prefix a decider name for determining expression to apply to
-        *        classification
-        * @return true if "seqid" has prefix "prefix"
-        * @throws Nothing
-        */
-
-         private boolean isPrefix (String seqid, String prefix) {
-            // get the string expression that is mapped to 'prefix'
-
-            if(seqid.indexOf(
-                  (String)expressions.get(prefix)) >  -1) {
-                return true;
-            }
-            else {
-               return false;
-            }
-         }
-   }
+        return (c1 - 'A') * 26 + (c2 - 'A');
+    }
 }
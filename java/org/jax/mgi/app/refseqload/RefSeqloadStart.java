@@ -0,0 +1,448 @@
+package org.jax.mgi.app.refseqload;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Vector;
+
+import org.jax.mgi.shr.config.RefSeqloaderCfg;
+import org.jax.mgi.shr.dla.log.DLALogger;
+
+/**
+ * @is The entry point of a refseqload which loads the records it defers to
+ *     the repeat file in the same JVM, see main
+ * @has
+ *   <UL>
+ *   <LI>A RefSeqloader, loaded once for the input, or each segment of it,
+ *       and once for each repeat file
+ *   <LI>A LoadCheckpoint if APP_CHECKPOINT_FILE is configured
+ *   </UL>
+ * @does
+ *   <UL>
+ *   <LI>Loads the configured input
+ *   <LI>If APP_PROCESS_REPEATS is true, while SEQ_REPEAT_FILE is not empty
+ *       renames it to APP_REPEAT_TO_PROCESS and loads it with the same
+ *       RefSeqloader, then saves it as APP_REPEAT_TO_PROCESS.n for the nth
+ *       pass, as bin/refseqload.sh does with one JVM per pass
+ *   <LI>If APP_COPY_MODE is true, copies the BCP files of each pass into
+ *       the database with a BCPCopyLoader before the next pass, dropping
+ *       and rebuilding indexes as decided by a PostLoadStage
+ *   <LI>If APP_CHECKPOINT_FILE is configured and the load reads its input
+ *       files itself, loads them APP_CHECKPOINT_SEGMENT_FILES at a time,
+ *       each segment with its repeat passes, recording each segment, pass
+ *       and BCP file copied in the LoadCheckpoint. Segments require
+ *       SEQ_LOAD_MODE=incremental
+ *   <LI>If APP_RESUME is true, resumes a load which failed from its
+ *       checkpoint: rebuilds the indexes it dropped, finishes the pass it
+ *       failed in if that pass was loaded, or discards the output of that
+ *       pass and loads it again, then loads the segments not loaded
+ *   <LI>Saves the RecordDigestIndex of the loader once the input, or a
+ *       segment of it, and its repeat files are loaded
+ *   <LI>Logs each pass and segment to the process log, and the reports of
+ *       the index and copy stages to the diagnostic log
+ *   </UL>
+ * @notes Each pass is a full DLALoader load i.e. initialize, preprocess, run
+ *        and postprocess, so the BCP files of one pass are loaded before the
+ *        next pass reads the repeat file. The warmed interpreter, the
+ *        FieldInterner cache and the RecordDigestIndex are kept from pass
+ *        to pass. A pass which fails when the bcp of the load has executed
+ *        part of its BCP files, i.e. APP_COPY_MODE is false, cannot be
+ *        resumed
+ * @company The Jackson Laboratory
+ * @author sc
+ * @version 1.0
+ */
+
+public class RefSeqloadStart {
+
+    // the logger of the load
+    private static DLALogger logger = null;
+
+    // the load mode in which the input may be loaded in segments
+    private static final String INCREMENTAL = "incremental";
+
+    /**
+     * Runs the load and its repeat passes
+     * @assumes Nothing
+     * @effects loads the database; renames the repeat files; deletes the
+     *          checkpoint file once the load succeeds; logs the error and
+     *          exits the JVM with status 1 if a pass fails
+     * @param args not used
+     * @throws Nothing
+     */
+
+    public static void main(String[] args) {
+        try {
+            logger = DLALogger.getInstance();
+            RefSeqloaderCfg loaderCfg = new RefSeqloaderCfg();
+            checkCopyMode(loaderCfg);
+            RefSeqloader loader = new RefSeqloader();
+            String checkpointFile = loaderCfg.getCheckpointFile();
+            LoadCheckpoint checkpoint = null;
+            if (checkpointFile.length() > 0 &&
+                    loaderCfg.getInputFromFiles().booleanValue()) {
+                checkSegmentMode(loaderCfg);
+                checkpoint = new LoadCheckpoint(checkpointFile);
+                loadSegments(loader, loaderCfg, checkpoint);
+            }
+            else {
+                loadPass(loader, loaderCfg, null, "input");
+                loadRepeats(loader, loaderCfg, null);
+                loader.saveDigestIndex();
+            }
+            if (checkpoint != null) {
+                checkpoint.delete();
+            }
+        }
+        catch (Exception e) {
+            logError(e);
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Checks the BCP files of the load can be copied: in copy mode every
+     * BCP file of MGD_BCP_PATH is copied into MGD, or deleted when a pass
+     * is discarded on resume, so the RADAR BCP files of the QC stream must
+     * be written elsewhere
+     * @assumes Nothing
+     * @effects Nothing
+     * @param loaderCfg the load configuration
+     * @throws Exception if APP_COPY_MODE is true and RADAR_BCP_PATH is
+     *         MGD_BCP_PATH
+     */
+
+    private static void checkCopyMode(RefSeqloaderCfg loaderCfg)
+        throws Exception {
+        if (!loaderCfg.getCopyMode().booleanValue()) {
+            return;
+        }
+        File mgd = new File(loaderCfg.getBCPPath()).getCanonicalFile();
+        File radar = new File(loaderCfg.getRadarBCPPath()).getCanonicalFile();
+        if (mgd.equals(radar)) {
+            throw new Exception("APP_COPY_MODE requires RADAR_BCP_PATH to " +
+                "differ from MGD_BCP_PATH " + mgd + ", or the RADAR BCP " +
+                "files would be copied into MGD");
+        }
+    }
+
+    /**
+     * Checks the input can be loaded in segments: each segment is a full
+     * DLALoader load, so in a mode other than incremental, e.g.
+     * delete_reload, each segment would delete what the segments before
+     * it loaded
+     * @assumes Nothing
+     * @effects Nothing
+     * @param loaderCfg the load configuration
+     * @throws Exception if SEQ_LOAD_MODE is not incremental
+     */
+
+    private static void checkSegmentMode(RefSeqloaderCfg loaderCfg)
+        throws Exception {
+        String mode = loaderCfg.getLoadMode();
+        if (!INCREMENTAL.equals(mode)) {
+            throw new Exception("APP_CHECKPOINT_FILE requires " +
+                "SEQ_LOAD_MODE=" + INCREMENTAL + ", not " + mode +
+                ", as each segment is a full load");
+        }
+    }
+
+    /**
+     * Loads the input files in segments, resuming from the checkpoint if
+     * APP_RESUME is true
+     * @assumes Nothing
+     * @effects loads the database; renames the repeat files; saves the
+     *          checkpoint
+     * @param loader the loader
+     * @param loaderCfg the load configuration
+     * @param checkpoint the checkpoint
+     * @throws Exception if error loading a segment
+     */
+
+    private static void loadSegments(RefSeqloader loader,
+                                     RefSeqloaderCfg loaderCfg,
+                                     LoadCheckpoint checkpoint)
+        throws Exception {
+        loader.setCheckpoint(checkpoint);
+        if (loaderCfg.getResume().booleanValue()) {
+            print(checkpoint.getReport());
+            resume(loader, loaderCfg, checkpoint);
+        }
+        else {
+            checkpoint.clear();
+        }
+        String[] inputFiles = loaderCfg.getInputFiles();
+        Vector files = new Vector();
+        for (int i = 0; i < inputFiles.length; i++) {
+            if (!checkpoint.isCompleted(inputFiles[i])) {
+                files.add(inputFiles[i]);
+            }
+        }
+        if (files.size() < inputFiles.length) {
+            logger.logpInfo("Skipping " + (inputFiles.length - files.size()) +
+                " input files loaded", false);
+        }
+        int perSegment = Math.max(
+            loaderCfg.getCheckpointSegmentFiles().intValue(), 1);
+        for (int from = 0; from < files.size(); from += perSegment) {
+            List sublist = files.subList(from,
+                Math.min(from + perSegment, files.size()));
+            String[] segment =
+                (String[])sublist.toArray(new String[sublist.size()]);
+            logger.logpInfo("Loading segment " + sublist, false);
+            checkpoint.startSegment(segment);
+            loader.setInputFiles(segment);
+            loadPass(loader, loaderCfg, checkpoint, sublist.toString());
+            loadRepeats(loader, loaderCfg, checkpoint);
+            loader.saveDigestIndex();
+            checkpoint.completeSegment();
+        }
+    }
+
+    /**
+     * Resumes the segment in progress when a load failed: rebuilds the
+     * indexes the load dropped, then finishes the pass it failed in if
+     * that pass was loaded, or else discards the output of that pass and
+     * loads it again, then loads the repeat file of the segment. Refuses to
+     * resume a pass which failed before it was loaded when APP_COPY_MODE is
+     * false, as the bcp of the load may have executed part of its BCP files
+     * @assumes the checkpoint is that of the load which failed
+     * @effects loads the database; deletes the BCP files not copied of a
+     *          pass which was not loaded; renames the repeat files; saves
+     *          the checkpoint
+     * @param loader the loader
+     * @param loaderCfg the load configuration
+     * @param checkpoint the checkpoint
+     * @throws Exception if error loading the segment, or if the pass
+     *         cannot be resumed
+     */
+
+    private static void resume(RefSeqloader loader,
+                               RefSeqloaderCfg loaderCfg,
+                               LoadCheckpoint checkpoint)
+        throws Exception {
+        if (LoadCheckpoint.STARTED.equals(checkpoint.getState()) &&
+                !loaderCfg.getCopyMode().booleanValue()) {
+            throw new Exception("Cannot resume " + checkpoint.getPass() +
+                ": the pass failed before it was loaded and APP_COPY_MODE " +
+                "is false, so the bcp of the load may have executed part " +
+                "of its BCP files. Restore the database and run the load " +
+                "again without APP_RESUME");
+        }
+        if (!checkpoint.getDroppedTables().isEmpty()) {
+            PostLoadStage stage = new PostLoadStage(
+                new BCPCopyLoader(loaderCfg.getCopyCommand(), 1), 0,
+                loaderCfg.getIndexThreads().intValue());
+            stage.setCheckpoint(checkpoint);
+            logger.logpInfo("Rebuilding the indexes of " +
+                stage.restoreDropped(checkpoint) + " tables", false);
+            print(stage.rebuildIndexes());
+        }
+        String[] segment = checkpoint.getSegment();
+        if (segment == null) {
+            return;
+        }
+        String pass = checkpoint.getPass();
+        File repeats = new File(loaderCfg.getRepeatFile());
+        File toProcess = new File(loaderCfg.getRepeatToProcess());
+        boolean repeatPass = toProcess.getPath().equals(pass);
+        if (LoadCheckpoint.LOADED.equals(checkpoint.getState())) {
+            logger.logpInfo("Resuming after " + pass, false);
+            copyBCPFiles(loaderCfg, checkpoint);
+            if (repeatPass) {
+                saveRepeatFile(toProcess);
+            }
+        }
+        else {
+            logger.logpInfo("Discarded " +
+                BCPCopyLoader.deleteBCPFiles(loaderCfg.getBCPPath()) +
+                " BCP files of " + pass, false);
+            repeats.delete();
+            if (repeatPass) {
+                rename(toProcess, repeats);
+            }
+            else {
+                loader.setInputFiles(segment);
+                loadPass(loader, loaderCfg, checkpoint,
+                    Arrays.asList(segment).toString());
+            }
+        }
+        loadRepeats(loader, loaderCfg, checkpoint);
+        loader.saveDigestIndex();
+        checkpoint.completeSegment();
+    }
+
+    /**
+     * Loads a pass and copies its BCP files
+     * @assumes Nothing
+     * @effects loads the database; saves the checkpoint if any
+     * @param loader the loader, set for the input of the pass
+     * @param loaderCfg the load configuration
+     * @param checkpoint the checkpoint, null for none
+     * @param input the input of the pass as recorded in the checkpoint
+     * @throws Exception if error loading the pass
+     */
+
+    private static void loadPass(RefSeqloader loader,
+                                 RefSeqloaderCfg loaderCfg,
+                                 LoadCheckpoint checkpoint, String input)
+        throws Exception {
+        if (checkpoint != null) {
+            checkpoint.startPass(input);
+        }
+        loader.load();
+        if (checkpoint != null) {
+            checkpoint.passLoaded();
+        }
+        copyBCPFiles(loaderCfg, checkpoint);
+    }
+
+    /**
+     * Loads the repeat file, if APP_PROCESS_REPEATS is true, until the load
+     * writes no more repeats
+     * @assumes the input has been loaded
+     * @effects loads the database; renames the repeat files; saves the
+     *          checkpoint if any
+     * @param loader the loader of the input
+     * @param loaderCfg the load configuration
+     * @param checkpoint the checkpoint, null for none
+     * @throws Exception if error loading a repeat file
+     */
+
+    private static void loadRepeats(RefSeqloader loader,
+                                    RefSeqloaderCfg loaderCfg,
+                                    LoadCheckpoint checkpoint)
+        throws Exception {
+        if (!loaderCfg.getProcessRepeats().booleanValue() ||
+                loaderCfg.getRepeatFile().length() == 0) {
+            return;
+        }
+        File repeats = new File(loaderCfg.getRepeatFile());
+        File toProcess = new File(loaderCfg.getRepeatToProcess());
+        while (repeats.length() > 0) {
+            rename(repeats, toProcess);
+            logger.logpInfo("Loading repeat file " + toProcess, false);
+            loader.setRepeatInput(toProcess.getPath());
+            loadPass(loader, loaderCfg, checkpoint, toProcess.getPath());
+            saveRepeatFile(toProcess);
+        }
+        loader.setRepeatInput(null);
+    }
+
+    /**
+     * Saves a repeat file loaded as APP_REPEAT_TO_PROCESS.n for the nth
+     * pass over a repeat file of the run
+     * @assumes Nothing
+     * @effects renames 'toProcess'
+     * @param toProcess the repeat file loaded
+     * @throws Exception if it cannot be renamed
+     */
+
+    private static void saveRepeatFile(File toProcess) throws Exception {
+        int pass = 1;
+        File saved;
+        while ((saved = new File(toProcess.getPath() + "." + pass)).exists()) {
+            pass++;
+        }
+        logger.logpInfo("Saving repeat file " + saved, false);
+        rename(toProcess, saved);
+    }
+
+    /**
+     * Copies the BCP files of a pass into the database if APP_COPY_MODE is
+     * true, dropping and rebuilding the indexes of the tables with many
+     * rows to insert, see PostLoadStage
+     * @assumes the load has closed its BCP files
+     * @effects loads the database; renames the BCP files copied
+     * @param loaderCfg the load configuration
+     * @param checkpoint records the rows copied and indexes dropped, null
+     *        for none
+     * @throws Exception if error copying a BCP file or rebuilding an index
+     */
+
+    private static void copyBCPFiles(RefSeqloaderCfg loaderCfg,
+                                     LoadCheckpoint checkpoint)
+        throws Exception {
+        if (!loaderCfg.getCopyMode().booleanValue()) {
+            return;
+        }
+        BCPCopyLoader copier = new BCPCopyLoader(
+            loaderCfg.getCopyCommand(),
+            loaderCfg.getCopyChunkRows().intValue());
+        PostLoadStage stage = new PostLoadStage(copier,
+            loaderCfg.getIndexDropPercent().intValue(),
+            loaderCfg.getIndexThreads().intValue());
+        copier.setCheckpoint(checkpoint);
+        stage.setCheckpoint(checkpoint);
+        File[] files = BCPCopyLoader.findBCPFiles(loaderCfg.getBCPPath());
+        print(stage.dropIndexes(files));
+        long start = System.currentTimeMillis();
+        try {
+            print(copier.copyAll(files,
+                loaderCfg.getCopyThreads().intValue()));
+        }
+        catch (IOException e) {
+            // restore the indexes of the tables partly copied
+            print(stage.rebuildIndexes());
+            throw e;
+        }
+        logger.logpInfo("Copied " + files.length + " BCP files in " +
+            (System.currentTimeMillis() - start) / 1000.0 + " sec", false);
+        print(stage.rebuildIndexes());
+    }
+
+    /**
+     * Logs the lines of a report to the diagnostic log
+     * @assumes the logger has been got
+     * @effects writes to the diagnostic log
+     * @param lines Vector of Strings
+     * @throws Nothing
+     */
+
+    private static void print(Vector lines) {
+        for (Iterator i = lines.iterator(); i.hasNext();) {
+            logger.logdInfo((String)i.next(), false);
+        }
+    }
+
+    /**
+     * Logs the error which failed the load with its stack trace, to stderr
+     * if the logger could not be got
+     * @assumes Nothing
+     * @effects writes to the diagnostic log, or stderr
+     * @param e the error
+     * @throws Nothing
+     */
+
+    private static void logError(Exception e) {
+        StringWriter trace = new StringWriter();
+        e.printStackTrace(new PrintWriter(trace));
+        if (logger == null) {
+            System.err.print(trace);
+            return;
+        }
+        logger.logdErr("Load failed: " + trace);
+        logger.logpInfo("Load failed: " + e.getMessage(), false);
+    }
+
+    /**
+     * Renames a file, replacing the target
+     * @assumes Nothing
+     * @effects renames 'from'
+     * @param from the file
+     * @param to its new name
+     * @throws Exception if 'from' cannot be renamed
+     */
+
+    private static void rename(File from, File to) throws Exception {
+        to.delete();
+        if (!from.renameTo(to)) {
+            throw new Exception("Cannot rename " + from + " to " + to);
+        }
+    }
+}
@@ -4,7 +4,12 @@ import org.jax.mgi.shr.timing.Stopwatch;
 import org.jax.mgi.shr.dla.input.genbank.GBOrganismChecker;
 import org.jax.mgi.shr.dla.loader.seq.SeqLoader;
 import org.jax.mgi.shr.dla.input.genbank.GBInputFile;
+import org.jax.mgi.shr.config.RefSeqloaderCfg;
 import org.jax.mgi.shr.exception.MGIException;
+import org.jax.mgi.shr.ioutils.RecordDataIterator;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Vector;
 import java.util.Iterator;
 
@@ -20,11 +25,32 @@ import java.util.Iterator;
  * <UL>
  * <LI>implements superclass (Seqloader) getDataIterator to set
  *     OrganismChecker with a GBOrganismChecker and create a RecordDataIterator
- *     on a GBInputFile
- * <LI>It has an empty implementation of the superclass (DLALoader)
- *     preProcess method
+ *     on a GBInputFile. If configured with more than one thread the
+ *     RecordDataIterator is a ParallelRecordIterator which checks seqid
+ *     prefixes and interprets records on a pool of worker threads. If
+ *     configured to filter on record headers, records are read with a
+ *     GBRecordReader instead of a GBInputFile. If configured to read the
+ *     input files itself, records are read with a MultiFileRecordSource
+ * <LI>It implements the superclass (DLALoader) preprocess method to warm
+ *     up the load, see LoadWarmup. Caches are sized from the sizes of the
+ *     input files
+ * <LI>It optionally interns the repeated fields of the sequences, see
+ *     FieldInterner
+ * <LI>It may be loaded again in the same JVM to load its repeat file, or
+ *     the next segment of its input files, keeping its warmed caches, see
+ *     RefSeqloadStart. It optionally records the progress of each pass in
+ *     a LoadCheckpoint
+ * <LI>It times each stage of each record with LoadMetrics, logging
+ *     progress while the load runs
+ * <LI>In incremental mode it optionally drops records unchanged since they
+ *     were last loaded, see RecordDigestIndex, indexing the digests of the
+ *     sequences the loader takes; RefSeqloadStart saves the index once
+ *     they are loaded
+ * <LI>It publishes the progress of the load as a RefSeqLoadStatus MBean
+ *     and optionally from a local HTTP status endpoint
  * <LI>It implements the superclass (Seqloader)appPostProcess method to log
- *     counts of Sequences with each RefSeq prefix
+ *     counts of Sequences with each RefSeq prefix and a summary of the
+ *     LoadMetrics
  * <LI>It overrides the superclass initialize() method to create a
  *     RefSeqidPrefixChecker
  * </UL>
@@ -34,24 +60,171 @@ import java.util.Iterator;
 
 public class RefSeqloader extends SeqLoader {
 
+    // the load mode in which unchanged records are dropped
+    private static final String INCREMENTAL = "incremental";
+
     // we load only a subset of refseq seqid prefixes
     RefSeqidPrefixChecker pc;
 
+    // the live status of the load, null if not published
+    RefSeqLoadStatus status = null;
+
+    // digests of the records last loaded, null if unchanged records are
+    // loaded
+    RecordDigestIndex digestIndex = null;
+
+    // the iterator given to the loader
+    MeteredRecordIterator meteredIterator = null;
+
+    // the organism checker of the load
+    GBOrganismChecker oc;
+
+    // canonical Strings of repeated fields, null if not interned
+    FieldInterner interner = null;
+
+    // the estimated number of records of the input, 0 if unknown
+    int expectedRecords = 0;
+
+    // the repeat file loaded by this pass, null for the configured input
+    String repeatInput = null;
+
+    // the input files loaded by this pass, null for the configured input
+    String[] inputFiles = null;
+
+    // records the progress of each pass, null if not recorded
+    LoadCheckpoint checkpoint = null;
+
+    // true once the interpreter has been warmed
+    boolean warmed = false;
+
+    /**
+     * sets the repeat file to load instead of the configured input, for a
+     * further pass of the load in the same JVM
+     * @assumes nothing
+     * @effects the next load reads 'fileName' and does not drop records
+     *          as unchanged
+     * @param fileName the repeat file, null for the configured input
+     * @throws nothing
+     */
+
+    public void setRepeatInput(String fileName) {
+        repeatInput = fileName;
+    }
+
     /**
-      * This load has no preprocessing
-      * @assumes nothing
-      * @effects noting
+     * sets the input files to load instead of the configured input files,
+     * for a segment of the load
+     * @assumes nothing
+     * @effects the next load reads 'fileNames' unless a repeat file is set
+     * @param fileNames the input files, null for the configured input
+     * @throws nothing
+     */
+
+    public void setInputFiles(String[] fileNames) {
+        inputFiles = fileNames;
+    }
+
+    /**
+     * saves the RecordDigestIndex, if any, with the digests of the
+     * sequences taken by the loader
+     * @assumes the sequences taken by the loader in each pass since the
+     *          index was loaded, repeat passes included, are in the
+     *          database
+     * @effects writes the index file
+     * @throws MGIException if the index cannot be saved
+     */
+
+    public void saveDigestIndex() throws MGIException {
+        if (digestIndex == null) {
+            return;
+        }
+        try {
+            digestIndex.save();
+        }
+        catch (IOException e) {
+            throw new MGIException("Cannot save digest index: " +
+                e.getMessage(), false);
+        }
+        logger.logdInfo("Saved digest index of " + digestIndex.size() +
+            " records", false);
+    }
+
+    /**
+     * sets the LoadCheckpoint in which the progress of each pass is
+     * recorded every APP_CHECKPOINT_INTERVAL seconds
+     * @assumes nothing
+     * @effects nothing
+     * @param checkpoint the checkpoint, null for none
+     * @throws nothing
+     */
+
+    public void setCheckpoint(LoadCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+      * warms up the load before the first record is read: warms the
+      * interpreter on APP_WARMUP_RECORDS synthetic records. Creates a
+      * FieldInterner if APP_INTERN_TABLE_SIZE > 0. Then starts timing the
+      * run and creates the iterator. On a pass over the repeat file the warm-up is skipped
+      * and the caches of the last pass are kept
+      * @assumes getDataIterator has been called
+      * @effects starts the threads of the iterator, the progress thread of
+      *          LoadMetrics if APP_METRICS_INTERVAL > 0 and that of the
+      *          LoadCheckpoint if set and APP_CHECKPOINT_INTERVAL > 0
       * @throws MGIException if errors occur during preprocessing
       */
 
-    protected void preprocess() { }
+    protected void preprocess() throws MGIException {
+        RefSeqloaderCfg loaderCfg = new RefSeqloaderCfg();
+        if (expectedRecords > 0) {
+            logger.logdInfo("Estimated records of the input: " +
+                expectedRecords, false);
+        }
+
+        // each pass over a repeat file or segment is timed on its own
+        if (repeatInput != null || inputFiles != null) {
+            LoadMetrics.getInstance().reset();
+        }
+
+        // warm the JIT compiled interpreter code
+        int warmup = loaderCfg.getWarmupRecords().intValue();
+        if (warmup > 0 && !warmed) {
+            Stopwatch watch = new Stopwatch();
+            watch.start();
+            int n = LoadWarmup.warmInterpreter(warmup);
+            watch.stop();
+            logger.logdInfo("Warmed interpreter on " + n +
+                " sample records in " + watch.time() + " sec", false);
+            warmed = true;
+        }
+
+        // hold one copy of each repeated field value
+        int internTableSize = loaderCfg.getInternTableSize().intValue();
+        if (interner == null && internTableSize > 0) {
+            interner = new FieldInterner(internTableSize);
+        }
+
+        // time the run, and the loader's use of the iterator
+        LoadMetrics.getInstance().start(logger,
+            loaderCfg.getMetricsInterval().intValue());
+        meteredIterator.setIterator(createIterator(oc, loaderCfg));
+
+        // record where the pass is, should it fail
+        if (checkpoint != null) {
+            checkpoint.start(pc, loaderCfg.getBCPPath(),
+                loaderCfg.getCheckpointInterval().intValue());
+        }
+    }
 
     /**
      * creates and sets the superclass OrganismChecker and RecordDataIterator
-     * with a GBOrganismChecker and creates and creates a GBInputFile
-     * with a GBSequenceInterpretor; gets an iterator from the GBInputFile
+     * with a GBOrganismChecker and a MeteredRecordIterator; the iterator it
+     * meters is created by preprocess, after the warm-up, see
+     * createIterator
      * @assumes nothing
-     * @effects nothing
+     * @effects starts the status endpoint if APP_STATUS_PORT > 0; registers
+     *          the RefSeqLoadStatus MBean if APP_STATUS_MBEAN is true
      * @throws MGIException
      */
 
@@ -60,8 +233,7 @@ public class RefSeqloader extends SeqLoader {
         // create an organism checker for the interpreter
         // need to create and pass to interpretor as base class - not as
         // OrganismChecker
-        GBOrganismChecker oc = new GBOrganismChecker();
-
+        oc = new GBOrganismChecker();
         // Cant override initialize to instantiate pc; super.initialize calls
         // this method and pc won't be set yet.
         pc = new RefSeqidPrefixChecker();
@@ -69,18 +241,166 @@ public class RefSeqloader extends SeqLoader {
         // set oc in the superclass for reporting purposes
         super.organismChecker = oc;
 
+        RefSeqloaderCfg loaderCfg = new RefSeqloaderCfg();
+
+        // size caches for the input
+        int meanBytes = loaderCfg.getMeanRecordBytes().intValue();
+        if (repeatInput != null) {
+            expectedRecords = LoadWarmup.estimateRecords(
+                new String[] {repeatInput}, meanBytes);
+        }
+        else if (inputFiles != null) {
+            expectedRecords = LoadWarmup.estimateRecords(inputFiles,
+                meanBytes);
+        }
+        else if (loaderCfg.getInputFromFiles().booleanValue()) {
+            expectedRecords = LoadWarmup.estimateRecords(
+                loaderCfg.getInputFiles(), meanBytes);
+        }
+        else if (!loaderCfg.getInputFileName().equals("STDIN")) {
+            expectedRecords = LoadWarmup.estimateRecords(
+                new String[] {loaderCfg.getInputFileName()}, meanBytes);
+        }
+
+        // in incremental mode drop records unchanged since last loaded
+        String indexFile = loaderCfg.getDigestIndex();
+        if (digestIndex == null &&
+                loaderCfg.getLoadMode().equals(INCREMENTAL) &&
+                indexFile.length() > 0) {
+            try {
+                digestIndex = new RecordDigestIndex(indexFile,
+                    expectedRecords);
+            }
+            catch (IOException e) {
+                throw new MGIException("Cannot read digest index " +
+                    indexFile + ": " + e.getMessage(), false);
+            }
+            logger.logdInfo("Digest index " + indexFile + " has " +
+                digestIndex.size() + " records", false);
+        }
+
+        // the iterator to meter is created after the warm-up
+        meteredIterator = new MeteredRecordIterator(null);
+        meteredIterator.setDigestIndex(digestIndex);
+        super.iterator = meteredIterator;
+
+        // publish the progress of the load
+        if (loaderCfg.getStatusMBean().booleanValue()) {
+            status = new RefSeqLoadStatus(pc);
+            status.start(loaderCfg.getStatusPort().intValue());
+        }
+    }
+
+    /**
+     * creates the RecordDataIterator of SequenceInput objects configured
+     * for the load, or of the records of the repeat file or input files
+     * if set
+     * @assumes nothing
+     * @effects starts the reader and worker threads of a
+     *          ParallelRecordIterator if APP_PARALLEL_THREADS > 1 or
+     *          APP_PIPELINE is true
+     * @param oc the organism checker
+     * @param loaderCfg the load configuration
+     * @return the iterator
+     * @throws MGIException
+     */
+
+    private RecordDataIterator createIterator(GBOrganismChecker oc,
+                                              RefSeqloaderCfg loaderCfg)
+        throws MGIException {
+        // interpretation is pipelined with the loader thread on one worker
+        int threads = loaderCfg.getParallelThreads().intValue();
+        boolean pipelined = threads > 1 ||
+            loaderCfg.getPipeline().booleanValue();
+        threads = Math.max(threads, 1);
+        int queueSize = loaderCfg.getParallelQueueSize().intValue();
+
+        // organism and seqid prefix are checked on the header of each
+        // record as it is read, the rest of records we don't load is
+        // skipped
+        RecordSource source = null;
+
+        // records of a repeat file were deferred by the last pass, which
+        // indexed their digests, so they are never dropped as unchanged
+        RecordDigestIndex index = repeatInput == null ? digestIndex : null;
+        RefSequenceInterpreter interp =
+            new RefSequenceInterpreter(oc, pc, index, interner);
+        int bufferSize = loaderCfg.getInputBufferSize().intValue();
+        boolean skipResidues = loaderCfg.getSkipResidues().booleanValue();
+        if (repeatInput != null || inputFiles != null ||
+                loaderCfg.getInputFromFiles().booleanValue()) {
+            String[] files = repeatInput != null ?
+                new String[] {repeatInput} : inputFiles != null ?
+                inputFiles : loaderCfg.getInputFiles();
+            // with several reader threads the header filter runs on them,
+            // so it must not be the interpreter of the loader thread
+            int inputThreads = loaderCfg.getInputThreads().intValue();
+            RefSequenceInterpreter filter = inputThreads > 1 ?
+                new RefSequenceInterpreter(oc, pc, index, null) : interp;
+            source = new MultiFileRecordSource(files,
+                bufferSize, filter, inputThreads,
+                queueSize, loaderCfg.getInputOrdered().booleanValue(),
+                loaderCfg.getInputMapWindow().intValue(), skipResidues);
+        }
+        else if (loaderCfg.getHeaderPrefilter().booleanValue()) {
+            source = new GBRecordReader(openInput(loaderCfg), bufferSize,
+                interp, skipResidues);
+        }
+        if (source != null) {
+            if (pipelined) {
+                return new ParallelRecordIterator(
+                    new RecordSourceIterator(source, null), oc, pc,
+                    index, interner, threads, queueSize, false);
+            }
+            return new RecordSourceIterator(source, interp);
+        }
+
         // Create a GBInputfile
         //RefSequenceInterpreter interp = new RefSequenceInterpreter(oc, pc);
         GBInputFile inData = new GBInputFile();
 
+        if (pipelined) {
+            // records are split and organism checked on one thread,
+            // prefixes checked and records interpreted on 'threads' threads
+            return new ParallelRecordIterator(
+                inData.getIterator(new OrganismRecordFilter(oc)), oc, pc,
+                index, interner, threads, queueSize, true);
+        }
         // get an iterator for the GBInputFile witha RefSequenceInterpreter
-        super.iterator = inData.getIterator(new RefSequenceInterpreter(oc, pc));
+        return inData.getIterator(interp);
+    }
+
+    /**
+     * opens the configured input file, or stdin if input is piped to the load
+     * @assumes nothing
+     * @effects opens a file
+     * @param loaderCfg the load configuration
+     * @return the input
+     * @throws MGIException if the input file cannot be opened
+     */
+
+    private InputStream openInput(RefSeqloaderCfg loaderCfg)
+        throws MGIException {
+        String fileName = loaderCfg.getInputFileName();
+        if (fileName.equals("STDIN")) {
+            return System.in;
+        }
+        LoadMetrics.getInstance().setInputSize(new File(fileName).length());
+        LoadMetrics.getInstance().setCurrentFile(fileName);
+        try {
+            return MultiFileRecordSource.open(fileName,
+                loaderCfg.getInputBufferSize().intValue());
+        }
+        catch (IOException e) {
+            throw new MGIException("Cannot open input file " + fileName +
+                ": " + e.getMessage(), false);
+        }
     }
 
     /**
-     * reports RefSeq prefix counts
+     * reports RefSeq prefix counts and a summary of the load metrics
      * @assumes nothing
-     * @effects Writes to a log file
+     * @effects Writes to the diagnostic and process logs
      * @throws MGIException
      */
    protected void appPostProcess() throws MGIException {
@@ -90,5 +410,23 @@ public class RefSeqloader extends SeqLoader {
            String line = (String) i.next();
            logger.logdInfo( line, false);
        }
+       if (status != null) {
+           status.stop();
+       }
+       if (interner != null) {
+           Vector stats = interner.getStatistics();
+           for (Iterator i = stats.iterator(); i.hasNext();) {
+               logger.logdInfo((String)i.next(), false);
+           }
+       }
+       if (checkpoint != null) {
+           checkpoint.stop();
+       }
+       LoadMetrics metrics = LoadMetrics.getInstance();
+       metrics.stop();
+       logger.logpInfo("Load metrics:", false);
+       for (Iterator i = metrics.getSummary().iterator(); i.hasNext();) {
+           logger.logpInfo((String)i.next(), false);
+       }
    }
 }
@@ -6,7 +6,6 @@ import java.sql.*;
 
 import org.jax.mgi.shr.dla.input.SequenceInterpreter;
 import org.jax.mgi.shr.dla.input.SequenceInput;
-import org.jax.mgi.shr.dla.loader.seq.SeqloaderConstants;
 import org.jax.mgi.shr.dla.input.DateConverter;
 import org.jax.mgi.dbs.mgd.loads.Acc.AccessionRawAttributes;
 import org.jax.mgi.dbs.mgd.loads.SeqRefAssoc.RefAssocRawAttributes;
@@ -36,27 +35,101 @@ import org.jax.mgi.dbs.mgd.loads.SeqSrc.MSRawAttributes;
      * @does
      *   <UL>
      *   <LI>Determines if a GenBank sequence record is valid
+     *   <LI>Optionally determines that a record is unchanged since it was
+     *       last loaded, from a RecordDigestIndex, and rejects it
      *   <LI>Parses a GenBank sequence record
+     *   <LI>Optionally replaces the low cardinality fields of the
+     *       SequenceInput with their canonical Strings from a FieldInterner
      *   </UL>
+     * @notes An instance is not thread safe; the RefSeqidPrefixChecker may be
+     *        shared by the interpreters of several threads
      * @company The Jackson Laboratory
      * @author sc
      * @version 1.0
      */
 
 public class RefSequenceInterpreter extends GBFormatInterpreter {
-        private SequenceInput seqInput;
         private RefSeqidPrefixChecker prefixChecker;
 
+        // the prefixes we load and their sequence quality
+        private RefSeqPrefixRegistry registry;
+
+        // seqid, version and header end offsets of the last record checked
+        // by isValid, and its prefix slot if valid, so interpret need not
+        // check it again
+        private RecordParseContext context = new RecordParseContext();
+        private int validSlot = -1;
+
+        // digests of the records last loaded and a calculator of digests,
+        // null if unchanged records are not rejected
+        private RecordDigestIndex digestIndex = null;
+        private RecordDigestIndex.Digester digester = null;
+
+        // canonical Strings of repeated fields, null if not interned
+        private FieldInterner interner = null;
+
+        // times organism and prefix checks and interpretation
+        private LoadMetrics metrics = LoadMetrics.getInstance();
+
         public RefSequenceInterpreter(GBOrganismChecker oc, RefSeqidPrefixChecker pc)
             throws ConfigException {
             super(oc);
             prefixChecker = pc;
+            registry = pc.getRegistry();
+        }
+
+        /**
+         * Constructs a RefSequenceInterpreter which rejects records that are
+         * unchanged since they were last loaded
+         * @assumes Nothing
+         * @effects Nothing
+         * @param oc the organism checker
+         * @param pc the prefix checker
+         * @param index the digests of the records last loaded, null to
+         *        accept unchanged records
+         * @throws ConfigException if error creating the interpreter
+         */
+
+        public RefSequenceInterpreter(GBOrganismChecker oc,
+                                      RefSeqidPrefixChecker pc,
+                                      RecordDigestIndex index)
+            throws ConfigException {
+            this(oc, pc);
+            if (index != null) {
+                digestIndex = index;
+                digester = new RecordDigestIndex.Digester();
+            }
+        }
+
+        /**
+         * Constructs a RefSequenceInterpreter which rejects records that are
+         * unchanged since they were last loaded and interns the repeated
+         * fields of the sequences it creates
+         * @assumes Nothing
+         * @effects Nothing
+         * @param oc the organism checker
+         * @param pc the prefix checker
+         * @param index the digests of the records last loaded, null to
+         *        accept unchanged records
+         * @param interner the intern table, null to not intern fields
+         * @throws ConfigException if error creating the interpreter
+         */
+
+        public RefSequenceInterpreter(GBOrganismChecker oc,
+                                      RefSeqidPrefixChecker pc,
+                                      RecordDigestIndex index,
+                                      FieldInterner interner)
+            throws ConfigException {
+            this(oc, pc, index);
+            this.interner = interner;
         }
 
         /**
          * Parses a sequence record and  creates a SequenceInput object from
          * Configuration and parsed values. Sets sequence Quality for RefSeq
-         * sequences by seqid prefix
+         * sequences by seqid prefix, as configured in the
+         * RefSeqPrefixRegistry. The prefix is the one found by isValid or
+         * isValidPrefix if 'rcd' is the record they last found valid
          * @assumes Nothing
          * @effects Nothing
          * @param rcd A sequence record
@@ -67,20 +140,20 @@ public class RefSequenceInterpreter extends GBFormatInterpreter {
          * to the RefSeq accession format
          */
         public Object interpret(String rcd) throws RecordFormatException {
-            seqInput = (SequenceInput)super.interpret(rcd);
-            String seqid = seqInput.getPrimaryAcc().getAccID();
-            if (prefixChecker.isPrefix(seqid, "NM") == true ||
-                prefixChecker.isPrefix(seqid, "NR") == true ||
-                prefixChecker.isPrefix(seqid, "NP") == true) {
-                seqInput.getSeq().setQuality(SeqloaderConstants.HIGH_QUAL);
-            }
-            else if (prefixChecker.isPrefix(seqid, "NZ") == true ||
-                     prefixChecker.isPrefix(seqid, "ZP") == true) {
-                seqInput.getSeq().setQuality(SeqloaderConstants.LOW_QUAL);
+            long start = LoadMetrics.now();
+            SequenceInput seqInput = (SequenceInput)super.interpret(rcd);
+            int slot = validSlot;
+            if (!context.isFor(rcd)) {
+                // checked on its header or on another thread
+                slot = RefSeqidPrefixChecker.getSlot(
+                    seqInput.getPrimaryAcc().getAccID(), 0);
             }
-            else {
-                seqInput.getSeq().setQuality(SeqloaderConstants.MED_QUAL);
+            context.clear();
+            seqInput.getSeq().setQuality(registry.getQuality(slot));
+            if (interner != null) {
+                interner.intern(seqInput);
             }
+            metrics.recordInterpret(slot, rcd.length(), start);
             return seqInput;
         }
 
@@ -96,13 +169,70 @@ public class RefSequenceInterpreter extends GBFormatInterpreter {
          */
 
         public boolean isValid(String record) {
+            long start = LoadMetrics.now();
             boolean isValidOrganism = super.isValid(record);
+            start = metrics.record(LoadMetrics.ORGANISM, start);
             // if it is an organism we are interested in, check seqid prefix
             if (isValidOrganism == true) {
-                return (prefixChecker.checkPrefix(record));
+                return isValidPrefix(record);
             }
             else {
+                context.clear();
                 return isValidOrganism;
             }
         }
+
+        /**
+         * Determines whether this sequence has a seqid prefix we want to
+         * interpret and, if there is a RecordDigestIndex, has changed since
+         * it was last loaded. Finds the seqid, version and header end
+         * offsets of the record with one scan of its header, for both checks
+         * @assumes the organism of 'record' has been checked
+         * @effects holds the digest of a changed record as pending in the
+         *          RecordDigestIndex, if any, see RecordDigestIndex.accept
+         * @param record A GenBank sequence record, or its header
+         * @return true if we want to load this sequence
+         * @throws Nothing
+         */
+
+        public boolean isValidPrefix(String record) {
+            long start = LoadMetrics.now();
+            context.parse(record);
+            int slot = RefSeqidPrefixChecker.getSlot(record,
+                context.getPrimarySeqid());
+            // records dropped as unchanged are counted apart from the
+            // prefix counts, which count the records processed
+            if (digestIndex != null && prefixChecker.isEnabled(slot) &&
+                    isUnchanged(record)) {
+                metrics.addUnchanged();
+                validSlot = -1;
+            }
+            else {
+                validSlot = prefixChecker.countSlot(slot);
+            }
+            if (validSlot < 0) {
+                context.clear();
+            }
+            metrics.record(LoadMetrics.PREFIX, start);
+            return validSlot > -1;
+        }
+
+        /**
+         * Determines whether the record last parsed is unchanged since it
+         * was last loaded
+         * @assumes there is a RecordDigestIndex and the record has been
+         *          parsed
+         * @effects holds the digest of a changed record as pending in the
+         *          RecordDigestIndex
+         * @param record the record
+         * @return true if the digest of its header is that last loaded for
+         *         its accession.version
+         * @throws Nothing
+         */
+
+        private boolean isUnchanged(String record) {
+            String accVersion = context.getAccessionVersion();
+            return accVersion != null && digestIndex.isUnchanged(accVersion,
+                digester.digest(record, context.getHeaderEnd()));
+        }
     }
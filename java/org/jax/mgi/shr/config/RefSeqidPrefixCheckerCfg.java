@@ -37,145 +37,60 @@ public class RefSeqidPrefixCheckerCfg extends Configurator {
     }
 
     /**
-     * Gets whether to load NM prefixes or not
+     * Gets the RefSeq seqid prefixes known to the load. Default is NM NR NP
+     * NC NG NT NW NZ ZP XM XR XP
      * @assumes Nothing
      * @effects Nothing
-     * @return Boolean true if we are loading NM prefix
-     * @throws ConfigException if "NM" not found in configuration file
+     * @return the prefixes e.g. 'NM'
+     * @throws Nothing
      */
 
-    public Boolean getNM() throws ConfigException {
-        return new Boolean(getConfigString("NM"));
+    public String[] getPrefixes() {
+        return getConfigString("APP_PREFIXES",
+            "NM NR NP NC NG NT NW NZ ZP XM XR XP").trim().split("\\s+");
     }
 
     /**
-     * Gets whether to load NR prefixes or not
+     * Gets whether to load a prefix or not. The configuration parameter
+     * is named for the prefix e.g. NM=true. Default is false
      * @assumes Nothing
      * @effects Nothing
-     * @return Boolean true if we are loading NR prefix
-     * @throws ConfigException if "NR" not found in configuration file
+     * @param prefix a prefix from getPrefixes
+     * @return Boolean true if we are loading 'prefix'
+     * @throws ConfigException if the parameter is not a boolean
      */
 
-    public Boolean getNR() throws ConfigException {
-        return new Boolean(getConfigString("NR"));
-    }
-    /**
-     * Gets whether to load NP prefixes or not
-     * @assumes Nothing
-     * @effects Nothing
-     * @return Boolean true if we are loading NP prefix
-     * @throws ConfigException if "NP" not found in configuration file
-     */
-
-    public Boolean getNP() throws ConfigException {
-        return new Boolean(getConfigString("NP"));
-    }
-
-    /**
-     * Gets whether to load NC prefixes or not
-     * @assumes Nothing
-     * @effects Nothing
-     * @return Boolean true if we are loading NC prefix
-     * @throws ConfigException if "NC" not found in configuration file
-     */
-
-    public Boolean getNC() throws ConfigException {
-        return new Boolean(getConfigString("NC"));
-    }
-
-    /**
-     * Gets whether to load NG prefixes or not
-     * @assumes Nothing
-     * @effects Nothing
-     * @return Boolean true if we are loading NG prefix
-     * @throws ConfigException if "NG" not found in configuration file
-     */
-
-    public Boolean getNG() throws ConfigException {
-        return new Boolean(getConfigString("NG"));
-    }
-
-    /**
-     * Gets whether to load NT prefixes or not
-     * @assumes Nothing
-     * @effects Nothing
-     * @return Boolean true if we are loading NT prefix
-     * @throws ConfigException if "NT" not found in configuration file
-     */
-
-    public Boolean getNT() throws ConfigException {
-        return new Boolean(getConfigString("NT"));
+    public Boolean getLoadPrefix(String prefix) throws ConfigException {
+        return getConfigBoolean(prefix, Boolean.FALSE);
     }
 
     /**
-     * Gets whether to load NW prefixes or not
+     * Gets the prefixes whose sequences are given high quality. Default is
+     * NM NR NP
      * @assumes Nothing
      * @effects Nothing
-     * @return Boolean true if we are loading NW prefix
-     * @throws ConfigException if "NW" not found in configuration file
+     * @return the prefixes e.g. 'NM'
+     * @throws Nothing
      */
 
-    public Boolean getNW() throws ConfigException {
-        return new Boolean(getConfigString("NW"));
+    public String[] getHighQualityPrefixes() {
+        return getConfigString("APP_PREFIX_QUALITY_HIGH",
+            "NM NR NP").trim().split("\\s+");
     }
 
     /**
-     * Gets whether to load NZ prefixes or not
-     * @assumes Nothing
-     * @effects Nothing
-     * @return Boolean true if we are loading NZ prefix
-     * @throws ConfigException if "NZ" not found in configuration file
-     */
-
-    public Boolean getNZ() throws ConfigException {
-        return new Boolean(getConfigString("NZ"));
-    }
-
-    /**
-     * Gets whether to load ZP prefixes or not
-     * @assumes Nothing
-     * @effects Nothing
-     * @return Boolean true if we are loading ZP prefix
-     * @throws ConfigException if "ZP" not found in configuration file
-     */
-
-    public Boolean getZP() throws ConfigException {
-        return new Boolean(getConfigString("ZP"));
-    }
-
-    /**
-     * Gets whether to load XM prefixes or not
-     * @assumes Nothing
-     * @effects Nothing
-     * @return Boolean true if we are loading XM prefix
-     * @throws ConfigException if "XM" not found in configuration file
-     */
-
-    public Boolean getXM() throws ConfigException {
-        return new Boolean(getConfigString("XM"));
-    }
-
-    /**
-     * Gets whether to load XR prefixes or not
-     * @assumes Nothing
-     * @effects Nothing
-     * @return Boolean true if we are loading XR prefix
-     * @throws ConfigException if "XR" not found in configuration file
-     */
-
-    public Boolean getXR() throws ConfigException {
-        return new Boolean(getConfigString("XR"));
-    }
-    /**
-     * Gets whether to load XP prefixes or not
+     * Gets the prefixes whose sequences are given low quality. Default is
+     * NZ ZP. Sequences with prefixes neither high nor low quality are given
+     * medium quality
      * @assumes Nothing
      * @effects Nothing
-     * @return Boolean true if we are loading XP prefix
-     * @throws ConfigException if "XP" not found in configuration file
+     * @return the prefixes e.g. 'NZ'
+     * @throws Nothing
      */
 
-    public Boolean getXP() throws ConfigException {
-        return new Boolean(getConfigString("XP"));
+    public String[] getLowQualityPrefixes() {
+        return getConfigString("APP_PREFIX_QUALITY_LOW",
+            "NZ ZP").trim().split("\\s+");
     }
 
 }
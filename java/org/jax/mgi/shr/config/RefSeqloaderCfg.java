@@ -0,0 +1,541 @@
+// $Header
+//  $Name
+
+package org.jax.mgi.shr.config;
+
+import org.jax.mgi.shr.config.Configurator;
+import org.jax.mgi.shr.config.ConfigException;
+
+/**
+ * @is an object that retrieves Configuration pararmeters for a
+ *     RefSeqloader
+ * @has Nothing
+ *   <UL>
+ *   <LI> a configuration manager
+ *   </UL>
+ * @does
+ *   <UL>
+ *   <LI> provides methods to retrieve Configuration parameters
+ *          that are specific to a RefSeqloader
+ *   </UL>
+ * @company The Jackson Laboratory
+ * @author sc
+ * @version 1.0
+ */
+
+
+public class RefSeqloaderCfg extends Configurator {
+    /**
+     * Constructs a configurator for a RefSeqloader object
+     * @assumes Nothing
+     * @effects Nothing
+     * @throws ConfigException if a configuration manager cannot be obtained
+     */
+
+    public RefSeqloaderCfg() throws ConfigException {
+
+    }
+
+    /**
+     * Gets the number of threads used to check seqid prefixes and interpret
+     * sequence records. Default is 1 i.e. records are checked and interpreted
+     * on the loader thread
+     * @assumes Nothing
+     * @effects Nothing
+     * @return Integer number of threads
+     * @throws ConfigException if "APP_PARALLEL_THREADS" is not an integer
+     */
+
+    public Integer getParallelThreads() throws ConfigException {
+        return getConfigInteger("APP_PARALLEL_THREADS", new Integer(1));
+    }
+
+    /**
+     * Gets whether records are interpreted on a worker thread, overlapped
+     * with the loader thread processing sequences and writing BCP files,
+     * when APP_PARALLEL_THREADS is 1. Default is false
+     * @assumes Nothing
+     * @effects Nothing
+     * @return Boolean true if interpretation is pipelined
+     * @throws ConfigException if "APP_PIPELINE" is not a boolean
+     */
+
+    public Boolean getPipeline() throws ConfigException {
+        return getConfigBoolean("APP_PIPELINE", Boolean.FALSE);
+    }
+
+    /**
+     * Gets the maximum number of sequence records read ahead of the loader
+     * when records are interpreted on worker threads. Default is 256
+     * @assumes Nothing
+     * @effects Nothing
+     * @return Integer max number of records read ahead
+     * @throws ConfigException if "APP_PARALLEL_QUEUE_SIZE" is not an integer
+     */
+
+    public Integer getParallelQueueSize() throws ConfigException {
+        return getConfigInteger("APP_PARALLEL_QUEUE_SIZE", new Integer(256));
+    }
+
+    /**
+     * Gets whether to check organism and seqid prefix on the header of each
+     * sequence record as it is read, skipping the rest of records we don't
+     * load. Default is false
+     * @assumes Nothing
+     * @effects Nothing
+     * @return Boolean true if records are filtered on their header
+     * @throws ConfigException if "APP_HEADER_PREFILTER" is not a boolean
+     */
+
+    public Boolean getHeaderPrefilter() throws ConfigException {
+        return getConfigBoolean("APP_HEADER_PREFILTER", Boolean.FALSE);
+    }
+
+    /**
+     * Gets whether the load reads the input files itself rather than from
+     * stdin. Default is false
+     * @assumes Nothing
+     * @effects Nothing
+     * @return Boolean true if the load reads the input files
+     * @throws ConfigException if "APP_INPUT_FROM_FILES" is not a boolean
+     */
+
+    public Boolean getInputFromFiles() throws ConfigException {
+        return getConfigBoolean("APP_INPUT_FROM_FILES", Boolean.FALSE);
+    }
+
+    /**
+     * Gets the input files
+     * @assumes Nothing
+     * @effects Nothing
+     * @return the full paths of the input files
+     * @throws ConfigException if "APP_INFILES" not found in configuration file
+     */
+
+    public String[] getInputFiles() throws ConfigException {
+        String files = getConfigString("APP_INFILES").trim();
+        if (files.equals("")) {
+            return new String[0];
+        }
+        return files.split("\\s+");
+    }
+
+    /**
+     * Gets the number of input files read at once. Default is 1
+     * @assumes Nothing
+     * @effects Nothing
+     * @return Integer number of input files read at once
+     * @throws ConfigException if "APP_INPUT_THREADS" is not an integer
+     */
+
+    public Integer getInputThreads() throws ConfigException {
+        return getConfigInteger("APP_INPUT_THREADS", new Integer(1));
+    }
+
+    /**
+     * Gets whether records from input files read at once are processed in
+     * file order. Default is true
+     * @assumes Nothing
+     * @effects Nothing
+     * @return Boolean true if records are processed in file order
+     * @throws ConfigException if "APP_INPUT_ORDERED" is not a boolean
+     */
+
+    public Boolean getInputOrdered() throws ConfigException {
+        return getConfigBoolean("APP_INPUT_ORDERED", Boolean.TRUE);
+    }
+
+    /**
+     * Gets the size in bytes of the window of an uncompressed input file
+     * that is memory mapped at once. Default is 0 i.e. input files are not
+     * memory mapped
+     * @assumes Nothing
+     * @effects Nothing
+     * @return Integer size of the mapped window, 0 if files are not mapped
+     * @throws ConfigException if "APP_INPUT_MAP_WINDOW" is not an integer
+     */
+
+    public Integer getInputMapWindow() throws ConfigException {
+        return getConfigInteger("APP_INPUT_MAP_WINDOW", new Integer(0));
+    }
+
+    /**
+     * Gets whether the ORIGIN residues of the records we load are counted,
+     * verified against the LOCUS length and dropped as the records are
+     * read, so records are held in memory without them. Applies when
+     * APP_HEADER_PREFILTER or APP_INPUT_FROM_FILES is true. Default is false
+     * @assumes Nothing
+     * @effects Nothing
+     * @return Boolean true if residues are not retained
+     * @throws ConfigException if "APP_SKIP_RESIDUES" is not a boolean
+     */
+
+    public Boolean getSkipResidues() throws ConfigException {
+        return getConfigBoolean("APP_SKIP_RESIDUES", Boolean.FALSE);
+    }
+
+    /**
+     * Gets the load mode e.g. 'incremental'. Default is 'incremental'
+     * @assumes Nothing
+     * @effects Nothing
+     * @return the load mode
+     * @throws Nothing
+     */
+
+    public String getLoadMode() {
+        return getConfigString("SEQ_LOAD_MODE", "incremental");
+    }
+
+    /**
+     * Gets whether to load the records the load defers to the repeat file,
+     * in further passes of the same JVM, see RefSeqloadStart. Default is
+     * false
+     * @assumes Nothing
+     * @effects Nothing
+     * @return Boolean true if repeats are loaded
+     * @throws ConfigException if "APP_PROCESS_REPEATS" is not a boolean
+     */
+
+    public Boolean getProcessRepeats() throws ConfigException {
+        return getConfigBoolean("APP_PROCESS_REPEATS", Boolean.FALSE);
+    }
+
+    /**
+     * Gets the file to which the load writes the records it defers as
+     * repeats. Default is '' i.e. no repeat file
+     * @assumes Nothing
+     * @effects Nothing
+     * @return the file name, '' for none
+     * @throws Nothing
+     */
+
+    public String getRepeatFile() {
+        return getConfigString("SEQ_REPEAT_FILE", "").trim();
+    }
+
+    /**
+     * Gets the name the repeat file is renamed to while its records are
+     * loaded. Default is the repeat file name with '.to.process' appended
+     * @assumes Nothing
+     * @effects Nothing
+     * @return the file name
+     * @throws Nothing
+     */
+
+    public String getRepeatToProcess() {
+        return getConfigString("APP_REPEAT_TO_PROCESS",
+            getRepeatFile() + ".to.process").trim();
+    }
+
+    /**
+     * Gets whether the BCP files of the load are copied into the database
+     * with COPY after each pass, see BCPCopyLoader. Requires
+     * MGD_BCP_PREVENT_EXECUTE=true and a RADAR_BCP_PATH other than
+     * MGD_BCP_PATH. Default is false
+     * @assumes Nothing
+     * @effects Nothing
+     * @return Boolean true if BCP files are copied
+     * @throws ConfigException if "APP_COPY_MODE" is not a boolean
+     */
+
+    public Boolean getCopyMode() throws ConfigException {
+        return getConfigBoolean("APP_COPY_MODE", Boolean.FALSE);
+    }
+
+    /**
+     * Gets the psql command line used to copy BCP files: APP_COPY_COMMAND,
+     * default psql, with the MGD_DBSERVER, MGD_DBNAME and MGD_DBUSER of
+     * the load
+     * @assumes Nothing
+     * @effects Nothing
+     * @return the command and its arguments
+     * @throws ConfigException if the database is not configured
+     */
+
+    public String[] getCopyCommand() throws ConfigException {
+        String psql = getConfigString("APP_COPY_COMMAND", "psql").trim();
+        return new String[] {psql, "-X", "-q", "-v", "ON_ERROR_STOP=1",
+            "-h", getConfigString("MGD_DBSERVER"),
+            "-d", getConfigString("MGD_DBNAME"),
+            "-U", getConfigString("MGD_DBUSER")};
+    }
+
+    /**
+     * Gets the number of rows committed per transaction when copying BCP
+     * files. Default is 100000
+     * @assumes Nothing
+     * @effects Nothing
+     * @return Integer rows per transaction
+     * @throws ConfigException if "APP_COPY_CHUNK_ROWS" is not an integer
+     */
+
+    public Integer getCopyChunkRows() throws ConfigException {
+        return getConfigInteger("APP_COPY_CHUNK_ROWS", new Integer(100000));
+    }
+
+    /**
+     * Gets the max number of tables copied at once. Default is 4
+     * @assumes Nothing
+     * @effects Nothing
+     * @return Integer number of tables
+     * @throws ConfigException if "APP_COPY_THREADS" is not an integer
+     */
+
+    public Integer getCopyThreads() throws ConfigException {
+        return getConfigInteger("APP_COPY_THREADS", new Integer(4));
+    }
+
+    /**
+     * Gets the percent of the rows of a table to be copied at or above
+     * which its indexes are dropped before the copy and rebuilt after it,
+     * see PostLoadStage. Default is 0 i.e. indexes are never dropped
+     * @assumes Nothing
+     * @effects Nothing
+     * @return Integer percent of the rows of a table
+     * @throws ConfigException if "APP_INDEX_DROP_PERCENT" is not an integer
+     */
+
+    public Integer getIndexDropPercent() throws ConfigException {
+        return getConfigInteger("APP_INDEX_DROP_PERCENT", new Integer(0));
+    }
+
+    /**
+     * Gets the max number of indexes rebuilt at once. Default is 4
+     * @assumes Nothing
+     * @effects Nothing
+     * @return Integer number of indexes
+     * @throws ConfigException if "APP_INDEX_THREADS" is not an integer
+     */
+
+    public Integer getIndexThreads() throws ConfigException {
+        return getConfigInteger("APP_INDEX_THREADS", new Integer(4));
+    }
+
+    /**
+     * Gets the checkpoint file of a load which reads its input files
+     * itself, see LoadCheckpoint. Default is '' i.e. the input is loaded
+     * in one segment without a checkpoint
+     * @assumes Nothing
+     * @effects Nothing
+     * @return the file name, '' for none
+     * @throws Nothing
+     */
+
+    public String getCheckpointFile() {
+        return getConfigString("APP_CHECKPOINT_FILE", "").trim();
+    }
+
+    /**
+     * Gets the number of input files loaded per segment when the load is
+     * checkpointed. Default is 10
+     * @assumes Nothing
+     * @effects Nothing
+     * @return Integer number of files
+     * @throws ConfigException if "APP_CHECKPOINT_SEGMENT_FILES" is not an
+     *         integer
+     */
+
+    public Integer getCheckpointSegmentFiles() throws ConfigException {
+        return getConfigInteger("APP_CHECKPOINT_SEGMENT_FILES",
+            new Integer(10));
+    }
+
+    /**
+     * Gets the seconds between checkpoints of the progress of a pass.
+     * Default is 60, 0 for none
+     * @assumes Nothing
+     * @effects Nothing
+     * @return Integer seconds
+     * @throws ConfigException if "APP_CHECKPOINT_INTERVAL" is not an
+     *         integer
+     */
+
+    public Integer getCheckpointInterval() throws ConfigException {
+        return getConfigInteger("APP_CHECKPOINT_INTERVAL", new Integer(60));
+    }
+
+    /**
+     * Gets whether to resume the load from its checkpoint file. Default is
+     * false i.e. the checkpoint file is cleared
+     * @assumes Nothing
+     * @effects Nothing
+     * @return Boolean true to resume
+     * @throws ConfigException if "APP_RESUME" is not a boolean
+     */
+
+    public Boolean getResume() throws ConfigException {
+        return getConfigBoolean("APP_RESUME", Boolean.FALSE);
+    }
+
+    /**
+     * Gets the directory of the BCP files of the load. Default is the
+     * current directory
+     * @assumes Nothing
+     * @effects Nothing
+     * @return the directory
+     * @throws Nothing
+     */
+
+    public String getBCPPath() {
+        return getConfigString("MGD_BCP_PATH", ".").trim();
+    }
+
+    /**
+     * Gets the directory of the BCP files of the QC stream of the load,
+     * for the RADAR database. Default is the current directory
+     * @assumes Nothing
+     * @effects Nothing
+     * @return the directory
+     * @throws Nothing
+     */
+
+    public String getRadarBCPPath() {
+        return getConfigString("RADAR_BCP_PATH", ".").trim();
+    }
+
+    /**
+     * Gets the file of digests of the records last loaded, used in
+     * incremental mode to drop records unchanged since they were last
+     * loaded. Default is '' i.e. no digest file. Only record headers are
+     * digested, so changes to the feature table alone are not detected
+     * @assumes Nothing
+     * @effects Nothing
+     * @return the file name, '' for none
+     * @throws Nothing
+     */
+
+    public String getDigestIndex() {
+        return getConfigString("APP_DIGEST_INDEX", "").trim();
+    }
+
+    /**
+     * Gets the number of synthetic records interpreted to warm up the
+     * interpreter before the load. Default is 0 i.e. no warm-up
+     * @assumes Nothing
+     * @effects Nothing
+     * @return Integer number of records
+     * @throws ConfigException if "APP_WARMUP_RECORDS" is not an integer
+     */
+
+    public Integer getWarmupRecords() throws ConfigException {
+        return getConfigInteger("APP_WARMUP_RECORDS", new Integer(0));
+    }
+
+    /**
+     * Gets the mean uncompressed size in bytes of an input record, used to
+     * estimate the number of records of the input files and size caches.
+     * Default is 5000
+     * @assumes Nothing
+     * @effects Nothing
+     * @return Integer mean record size in bytes
+     * @throws ConfigException if "APP_MEAN_RECORD_BYTES" is not an integer
+     */
+
+    public Integer getMeanRecordBytes() throws ConfigException {
+        return getConfigInteger("APP_MEAN_RECORD_BYTES", new Integer(5000));
+    }
+
+    /**
+     * Gets the max number of distinct field values held by the
+     * FieldInterner. Default is 0 i.e. fields are not interned
+     * @assumes Nothing
+     * @effects Nothing
+     * @return Integer max number of field values held
+     * @throws ConfigException if "APP_INTERN_TABLE_SIZE" is not an integer
+     */
+
+    public Integer getInternTableSize() throws ConfigException {
+        return getConfigInteger("APP_INTERN_TABLE_SIZE", new Integer(0));
+    }
+
+    /**
+     * Gets the number of seconds between progress reports of the load
+     * metrics in the diagnostic log. Default is 0 i.e. no progress reports,
+     * the metrics are summarized in the process log at the end of the load
+     * @assumes Nothing
+     * @effects Nothing
+     * @return Integer seconds between progress reports
+     * @throws ConfigException if "APP_METRICS_INTERVAL" is not an integer
+     */
+
+    public Integer getMetricsInterval() throws ConfigException {
+        return getConfigInteger("APP_METRICS_INTERVAL", new Integer(0));
+    }
+
+    /**
+     * Gets whether to register the RefSeqLoadStatus MBean, which publishes
+     * the progress of the load over JMX. Default is false
+     * @assumes Nothing
+     * @effects Nothing
+     * @return Boolean true if the MBean is registered
+     * @throws ConfigException if "APP_STATUS_MBEAN" is not a boolean
+     */
+
+    public Boolean getStatusMBean() throws ConfigException {
+        return getConfigBoolean("APP_STATUS_MBEAN", Boolean.FALSE);
+    }
+
+    /**
+     * Gets the local port of the HTTP status endpoint, which serves the
+     * progress of the load as text when APP_STATUS_MBEAN is true. Default
+     * is 0 i.e. no endpoint
+     * @assumes Nothing
+     * @effects Nothing
+     * @return Integer port number, 0 for no endpoint
+     * @throws ConfigException if "APP_STATUS_PORT" is not an integer
+     */
+
+    public Integer getStatusPort() throws ConfigException {
+        return getConfigInteger("APP_STATUS_PORT", new Integer(0));
+    }
+
+    /**
+     * Gets the input file name. Default is 'STDIN'
+     * @assumes Nothing
+     * @effects Nothing
+     * @return the input file name, 'STDIN' if input is piped to the load
+     * @throws Nothing
+     */
+
+    public String getInputFileName() {
+        return getConfigString("INFILE_NAME", "STDIN");
+    }
+
+    /**
+     * Gets the input buffer size in bytes. Default is 1,000,000
+     * @assumes Nothing
+     * @effects Nothing
+     * @return Integer input buffer size
+     * @throws ConfigException if "INFILE_BUFFERSIZE" is not an integer
+     */
+
+    public Integer getInputBufferSize() throws ConfigException {
+        return getConfigInteger("INFILE_BUFFERSIZE", new Integer(1000000));
+    }
+
+}
+
+//  $Log
+
+/**************************************************************************
+*
+* Warranty Disclaimer and Copyright Notice
+*
+*  THE JACKSON LABORATORY MAKES NO REPRESENTATION ABOUT THE SUITABILITY OR
+*  ACCURACY OF THIS SOFTWARE OR DATA FOR ANY PURPOSE, AND MAKES NO WARRANTIES,
+*  EITHER EXPRESS OR IMPLIED, INCLUDING MERCHANTABILITY AND FITNESS FOR A
+*  PARTICULAR PURPOSE OR THAT THE USE OF THIS SOFTWARE OR DATA WILL NOT
+*  INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS, OR OTHER RIGHTS.
+*  THE SOFTWARE AND DATA ARE PROVIDED "AS IS".
+*
+*  This software and data are provided to enhance knowledge and encourage
+*  progress in the scientific community and are to be used only for research
+*  and educational purposes.  Any reproduction or use for commercial purpose
+*  is prohibited without the prior express written permission of The Jackson
+*  Laboratory.
+*
+* Copyright \251 1996, 1999, 2002, 2003 by The Jackson Laboratory
+*
+* All Rights Reserved
+*
+**************************************************************************/